@@ -0,0 +1,132 @@
+package todo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic task datasets for the benchmarks. A dataset of a given size is generated
+ * once into {@code target/bench-data/tasks-<rows>.db} and reused by later runs, because
+ * filling a million rows takes longer than most benchmarks.
+ */
+public final class BenchmarkData {
+
+    public static final int CATEGORIES = 20;
+
+    private static final String[] WORDS = {
+            "baza", "danych", "indeks", "zapytanie", "front", "end", "przycisk", "formularz",
+            "backend", "serwer", "testy", "migracja", "raport", "kolejka", "cache", "widok",
+            "tabela", "import", "eksport", "błąd", "wydajność", "przegląd", "kod", "zadanie"
+    };
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private BenchmarkData() {
+    }
+
+    public static String categoryName(int i) {
+        return "Kategoria " + i;
+    }
+
+    /** Opens (creating on first use) the database holding exactly {@code rows} generated tasks. */
+    public static Db open(int rows) throws Exception {
+        Path dir = Path.of(System.getProperty("todo.bench.data", "target/bench-data"));
+        Files.createDirectories(dir);
+        Path file = dir.resolve("tasks-" + rows + ".db");
+        Path ready = dir.resolve("tasks-" + rows + ".ready");
+        if (!Files.exists(ready)) {
+            Files.deleteIfExists(file);
+            try (Db db = new Db(url(file))) {
+                fill(db, rows);
+            }
+            Files.createFile(ready);
+        }
+        return new Db(url(file));
+    }
+
+    /**
+     * A private copy of the dataset for benchmarks that write, so the shared file keeps
+     * exactly {@code rows} tasks. The copy is deleted when the JVM exits.
+     */
+    public static Db openCopy(int rows) throws Exception {
+        open(rows).close();
+        Path source = Path.of(System.getProperty("todo.bench.data", "target/bench-data")).resolve("tasks-" + rows + ".db");
+        Path copy = Files.createTempFile("tasks-" + rows + "-", ".db");
+        Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+        copy.toFile().deleteOnExit();
+        return new Db(url(copy));
+    }
+
+    /**
+     * A private store holding the dataset for benchmarks that compare storage backends:
+     * {@code sqlite} is {@link #openCopy(int)}, {@code memory} a freshly filled {@link MemoryStorage}
+     * and {@code log} a freshly filled {@link LogStorage} in a temporary directory that is
+     * deleted when the JVM exits.
+     */
+    public static Storage openStorage(String storage, int rows) throws Exception {
+        return switch (storage) {
+            case "sqlite" -> openCopy(rows);
+            case "memory" -> {
+                MemoryStorage memory = new MemoryStorage();
+                fill(memory, rows);
+                yield memory;
+            }
+            case "log" -> {
+                Path dir = Files.createTempDirectory("tasks-" + rows + "-log-");
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteTree(dir)));
+                LogStorage log = LogStorage.open(dir);
+                fill(log, rows);
+                yield log;
+            }
+            default -> throw new IllegalArgumentException("Unknown storage: " + storage);
+        };
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String url(Path file) {
+        return "jdbc:sqlite:" + file.toAbsolutePath();
+    }
+
+    private static void fill(Storage db, int rows) throws Exception {
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES; i++) categories.add(new Category(categoryName(i), "opis " + i));
+        db.addCategories(categories);
+        Random random = new Random(42);
+        List<Task> chunk = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            chunk.add(randomTask(random, i));
+            if (chunk.size() == 10_000) {
+                db.createTasks(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) db.createTasks(chunk);
+    }
+
+    public static Task randomTask(Random random, int n) {
+        String name = words(random, 3) + " " + n;
+        String content = words(random, 12);
+        String due = random.nextInt(4) == 0 ? "" : String.format("2026-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28));
+        return new Task(0, name, content, categoryName(random.nextInt(CATEGORIES)), STATUSES[random.nextInt(STATUSES.length)], due);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
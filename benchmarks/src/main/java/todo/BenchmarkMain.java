@@ -0,0 +1,30 @@
+package todo;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line (benchmark regexp,
+ * {@code -p rows=...}, {@code -f}, {@code -wi}, ...) and always writes the results as JSON,
+ * to {@code target/jmh-result.json} or the file named by {@code -Dtodo.bench.result}, so runs
+ * of different releases can be compared.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Path result = Path.of(System.getProperty("todo.bench.result", "target/jmh-result.json"));
+        if (result.getParent() != null) Files.createDirectories(result.getParent());
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,38 @@
+package todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Construction and validation cost of {@link Category}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryBenchmark {
+
+    // fields, not constants, so the JIT cannot fold the validation away
+    public String name = "Baza Danych";
+    public String description = "Zadania związane z bazą danych";
+    public Object untypedName = name;
+
+    @Benchmark
+    public Category construct() {
+        return new Category(name, description);
+    }
+
+    @Benchmark
+    public Category factory() {
+        return Category.of(untypedName, description);
+    }
+}
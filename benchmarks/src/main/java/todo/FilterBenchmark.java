@@ -0,0 +1,90 @@
+package todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search as the table view does it: the original in-memory filter of {@code MainController}
+ * (lowercase "contains" over every loaded task) against the full-text index and the
+ * in-memory refinement used by {@link SearchPipeline}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilterBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"baz", "przegląd kod"})
+    public String query;
+
+    private Db db;
+    private List<Task> all;
+    private List<Task> previous;
+    private String[] terms;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkData.open(rows);
+        all = db.getTasks();
+        terms = SearchPipeline.terms(query);
+        // what the pipeline refines from: the result of the query minus its last letter
+        previous = db.getTasksByIds(db.searchTaskIds(query.substring(0, query.length() - 1), Integer.MAX_VALUE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Task> linearFilter() {
+        String low = query.toLowerCase();
+        List<Task> found = new ArrayList<>();
+        for (Task t : all) {
+            if (t.getName().toLowerCase().contains(low) || t.getContent().toLowerCase().contains(low)
+                    || t.getCategoryName().toLowerCase().contains(low) || t.getStatus().name().toLowerCase().contains(low)) {
+                found.add(t);
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int[] fullTextIds() throws Exception {
+        return db.searchTaskIds(query, 1000);
+    }
+
+    @Benchmark
+    public List<Task> fullTextTasks() throws Exception {
+        return db.getTasksByIds(db.searchTaskIds(query, 1000));
+    }
+
+    @Benchmark
+    public List<Task> refinePrevious() {
+        List<Task> found = new ArrayList<>();
+        for (Task t : previous) {
+            if (SearchPipeline.matches(t, terms)) found.add(t);
+        }
+        return found;
+    }
+}
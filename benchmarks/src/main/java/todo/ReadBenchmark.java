@@ -0,0 +1,76 @@
+package todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Read paths of {@link Db}: full scan, per-category scan and row mapping. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    private static final int PAGE = 1000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private Db db;
+    private Category[] categories;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkData.open(rows);
+        categories = new Category[BenchmarkData.CATEGORIES];
+        for (int i = 0; i < categories.length; i++) categories[i] = new Category(BenchmarkData.categoryName(i), "opis");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Task> getTasks() throws Exception {
+        return db.getTasks();
+    }
+
+    @Benchmark
+    public List<Task> getTasksByCategory() throws Exception {
+        return db.getTasks(categories[ThreadLocalRandom.current().nextInt(categories.length)]);
+    }
+
+    /** One page of rows through {@link TaskRowMapper}; per-row cost is this divided by the page size. */
+    @Benchmark
+    public void mapTaskPage(Blackhole bh) throws Exception {
+        int after = ThreadLocalRandom.current().nextInt(Math.max(1, rows - PAGE));
+        try (ConnectionPool.Lease lease = db.getConnectionPool().read()) {
+            PreparedStatement sttm = lease.prepare("SELECT * FROM Tasks WHERE id > ? ORDER BY id LIMIT " + PAGE);
+            sttm.setInt(1, after);
+            try (ResultSet res = sttm.executeQuery()) {
+                TaskRowMapper mapper = new TaskRowMapper(res);
+                while (res.next()) bh.consume(mapper.map(res));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package todo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-row writes against a table that already holds {@code rows} tasks. Each trial
+ * works on a private copy of the dataset; every call is its own autocommit transaction,
+ * so the result depends heavily on the PRAGMA profile ({@code -Dtodo.db.profile=...}).
+ * {@code storage=log} runs them against the append-only {@link LogStorage}, whose updates
+ * append a record instead of rewriting B-tree pages; {@code storage=memory} against
+ * {@link MemoryStorage} as a baseline without any disk I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"sqlite", "log", "memory"})
+    public String storage;
+
+    private Storage db;
+    private Random random;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkData.openStorage(storage, rows);
+        random = new Random(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public int createTask() throws Exception {
+        return db.createTask(BenchmarkData.randomTask(random, rows + counter++));
+    }
+
+    @Benchmark
+    public void updateTask() throws Exception {
+        Task t = BenchmarkData.randomTask(random, counter++);
+        // ids of the generated dataset are 1..rows
+        db.updateTask(new Task(1 + random.nextInt(rows), t.getName(), t.getContent(), t.getCategoryName(), t.getStatus(), t.getDue()));
+    }
+}
@@ -0,0 +1,120 @@
+package todo;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over {@link TaskDao} and {@link CategoryDao} so that callers such as
+ * the JavaFX thread never wait on SQLite. Every call runs on a virtual thread and returns a
+ * {@link CompletableFuture}; DAO exceptions complete the future exceptionally.
+ * Reads run in parallel. Writes are chained so they reach the database in the order they
+ * were submitted, even though each one runs on its own virtual thread.
+ */
+public class AsyncDao implements AutoCloseable {
+
+    private final TaskDao taskDao;
+    private final CategoryDao categoryDao;
+    private final ExecutorService executor;
+    private CompletableFuture<?> lastWrite = CompletableFuture.completedFuture(null);
+    private boolean closed;
+
+    public AsyncDao(TaskDao taskDao, CategoryDao categoryDao) {
+        this(taskDao, categoryDao, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public AsyncDao(TaskDao taskDao, CategoryDao categoryDao, ExecutorService executor) {
+        this.taskDao = taskDao;
+        this.categoryDao = categoryDao;
+        this.executor = executor;
+    }
+
+    public <T> CompletableFuture<T> read(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, executor);
+    }
+
+    /**
+     * Runs after every previously submitted write has finished, whether it failed or not.
+     * After {@link #close()} the returned future fails with an IllegalStateException.
+     */
+    public synchronized <T> CompletableFuture<T> write(Supplier<T> mutation) {
+        if (closed) return CompletableFuture.failedFuture(new IllegalStateException("AsyncDao is closed"));
+        CompletableFuture<T> next = lastWrite.handle((r, ex) -> null).thenApplyAsync(ignored -> mutation.get(), executor);
+        lastWrite = next;
+        return next;
+    }
+
+    public CompletableFuture<Void> write(Runnable mutation) {
+        return write(() -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<Category>> getAllCategories() {
+        return read(categoryDao::getAllCategories);
+    }
+
+    public CompletableFuture<Void> createCategory(Category c) {
+        return write(() -> categoryDao.createCategory(c));
+    }
+
+    public CompletableFuture<Integer> countTasks() {
+        return read(taskDao::countTasks);
+    }
+
+    public CompletableFuture<List<Task>> getTasksPage(int offset, int limit) {
+        return read(() -> taskDao.getTasksPage(offset, limit));
+    }
+
+    public CompletableFuture<List<Task>> getTasksAfter(int afterId, int limit) {
+        return read(() -> taskDao.getTasksAfter(afterId, limit));
+    }
+
+    public CompletableFuture<Integer> createTask(Task task) {
+        return write(() -> taskDao.createTask(task));
+    }
+
+    public CompletableFuture<Void> updateTask(Task task) {
+        return write(() -> taskDao.updateTask(task));
+    }
+
+    public CompletableFuture<Void> deleteTask(int id) {
+        return write(() -> taskDao.deleteTask(id));
+    }
+
+    public TaskDao getTaskDao() {
+        return taskDao;
+    }
+
+    public CategoryDao getCategoryDao() {
+        return categoryDao;
+    }
+
+    /**
+     * Stops accepting writes, waits up to five seconds for the queued ones to finish, then
+     * shuts the executor down. Writes still queued after that fail.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<?> pending;
+        synchronized (this) {
+            closed = true;
+            pending = lastWrite;
+        }
+        try {
+            // the writes are chained, so the last one finishing means all of them did
+            pending.handle((r, ex) -> null).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+            // handle() never fails; after a timeout the writes still queued are rejected
+        }
+        executor.shutdown();
+    }
+}
@@ -1,11 +1,34 @@
 
 package todo;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Categories are few and rarely change but are looked up all the time, so reads are served
+ * from an immutable snapshot of the whole table. Readers only do a volatile read, never
+ * lock. A name that is not in the snapshot is known not to exist, so lookups of missing
+ * names do not reach the storage either (negative caching). Every write through this DAO drops
+ * the snapshot and the next read loads a fresh one.
+ */
 public class CategoryDao {
-	private final Db db;
+	private final Storage db;
+	private final ChangeFeed changeFeed;
+
+	private record Snapshot(List<Category> all, Map<String, Category> byName) {
+	}
+
+	private volatile Snapshot snapshot;
+	// bumped by every write; a snapshot loaded across a write is not published
+	private final AtomicLong version = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+	private final LongAdder loads = new LongAdder();
 
 	public CategoryDao() {
 		try {
@@ -13,21 +36,76 @@ public class CategoryDao {
 		} catch (SQLException ex) {
 			throw new RuntimeException("Failed to open database", ex);
 		}
+		this.changeFeed = new ChangeFeed(db, ChangeEvent.Entity.CATEGORY);
 	}
 
 	/**
-	 * Constructor for tests: inject a custom Db instance (e.g. using a temp file).
+	 * Works on the given storage backend, e.g. a {@link Db} on a temp file in tests or a
+	 * {@link MemoryStorage}.
 	 */
-	public CategoryDao(Db db) {
+	public CategoryDao(Storage db) {
 		this.db = db;
+		this.changeFeed = new ChangeFeed(db, ChangeEvent.Entity.CATEGORY);
+	}
+
+	/** Created/updated/deleted events of all category writes, see {@link ChangeFeed}. */
+	public ChangeFeed getChangeFeed() {
+		return changeFeed;
 	}
 
+	/** All categories in table order, as an immutable list. */
 	public List<Category> getAllCategories() {
+		return snapshot().all();
+	}
+
+	/** The category with this name, or null if there is none. */
+	public Category getCategory(String name) {
+		Category c = snapshot().byName().get(name);
+		if (c == null) negativeHits.increment();
+		else hits.increment();
+		return c;
+	}
+
+	public boolean exists(String name) {
+		return getCategory(name) != null;
+	}
+
+	private Snapshot snapshot() {
+		Snapshot s = snapshot;
+		if (s != null) return s;
+		long v = version.get();
+		List<Category> all;
 		try {
-			return db.getCategories();
+			all = List.copyOf(db.getCategories());
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
 		}
+		loads.increment();
+		Map<String, Category> byName = new LinkedHashMap<>();
+		for (Category c : all) byName.put(c.getName(), c);
+		s = new Snapshot(all, Map.copyOf(byName));
+		// publish, then check: if a write landed meanwhile the snapshot may predate it
+		snapshot = s;
+		if (version.get() != v) snapshot = null;
+		return s;
+	}
+
+	/** Drops the snapshot, e.g. after categories were changed outside this DAO. */
+	public void invalidate() {
+		version.incrementAndGet();
+		snapshot = null;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getNegativeHits() {
+		return negativeHits.sum();
+	}
+
+	public long getLoads() {
+		return loads.sum();
 	}
 
 	public void createCategory(Category c) {
@@ -35,6 +113,9 @@ public class CategoryDao {
 			db.addCategory(c);
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			invalidate();
+			changeFeed.signal();
 		}
 	}
 
@@ -43,6 +124,9 @@ public class CategoryDao {
 			db.deleteCategory(name);
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			invalidate();
+			changeFeed.signal();
 		}
 	}
 
@@ -51,6 +135,45 @@ public class CategoryDao {
 			db.updateCategory(c);
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			invalidate();
+			changeFeed.signal();
+		}
+	}
+
+	/**
+	 * Inserts all categories in a single transaction.
+	 */
+	public void createCategories(Collection<Category> categories) {
+		try {
+			db.addCategories(categories);
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
+		} finally {
+			invalidate();
+			changeFeed.signal();
+		}
+	}
+
+	public void updateCategories(Collection<Category> categories) {
+		try {
+			db.updateCategories(categories);
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
+		} finally {
+			invalidate();
+			changeFeed.signal();
+		}
+	}
+
+	public void deleteCategories(Collection<String> names) {
+		try {
+			db.deleteCategories(names);
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
+		} finally {
+			invalidate();
+			changeFeed.signal();
 		}
 	}
 }
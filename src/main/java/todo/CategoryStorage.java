@@ -0,0 +1,33 @@
+package todo;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The category half of the storage SPI behind {@link CategoryDao}. Category names are
+ * unique; adding an existing name fails with an {@link SQLException}. Listings are in
+ * insertion order.
+ */
+public interface CategoryStorage {
+
+    List<Category> getCategories() throws SQLException;
+
+    /** The category with this name, or null. */
+    Category getCategory(String categoryName) throws SQLException;
+
+    void addCategory(Category category) throws SQLException;
+
+    /** Deletes the category; tasks in it keep their category name. */
+    void deleteCategory(String categoryName) throws SQLException;
+
+    /** Updates the description of the category with the same name. */
+    void updateCategory(Category category) throws SQLException;
+
+    /** Adds all categories atomically. */
+    void addCategories(Collection<Category> categories) throws SQLException;
+
+    void updateCategories(Collection<Category> categories) throws SQLException;
+
+    void deleteCategories(Collection<String> names) throws SQLException;
+}
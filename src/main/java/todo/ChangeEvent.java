@@ -0,0 +1,48 @@
+package todo;
+
+/**
+ * One committed write to the task or category table, as recorded in the ChangeLog table.
+ * Sequence numbers increase with every write and are never reused. {@code task} is set for
+ * task events and {@code category} for category events: the row after the write, or for
+ * {@link Type#DELETED} the row as it was before.
+ */
+public record ChangeEvent(long sequence, long timestampMillis, Entity entity, Type type, Task task, Category category) {
+
+    public enum Entity {
+        TASK("task"),
+        CATEGORY("category");
+
+        private final String code;
+
+        Entity(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    public enum Type {
+        CREATED("created"),
+        UPDATED("updated"),
+        DELETED("deleted");
+
+        private final String code;
+
+        Type(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public static Type fromCode(String code) {
+            for (Type t : values()) {
+                if (t.code.equals(code)) return t;
+            }
+            throw new IllegalArgumentException("Unknown change type: " + code);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package todo;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Publish/subscribe feed of the changes to one entity (tasks or categories), read from the
+ * storage's change log (with SQLite, the ChangeLog table that triggers fill in the same
+ * transaction as every write).
+ * <p>
+ * Each subscription has its own virtual thread that pulls at most {@code batchSize} events
+ * after its current position, hands them to the consumer one by one, and pulls again. That
+ * bounds the memory per subscriber and gives natural backpressure: a slow consumer never
+ * blocks writers and never makes events pile up in memory, it just falls behind in the
+ * persisted log and catches up at its own pace. Writes through the owning DAO wake the
+ * subscriptions right away ({@link #signal()}); writes by other processes are picked up by
+ * polling every {@code pollMillis}.
+ * <p>
+ * Delivery is at-least-once from a consumer's point of view: to resume after a restart,
+ * store {@link ChangeEvent#sequence()} of the last processed event and subscribe after it.
+ * <p>
+ * The feed also keeps the log from growing without bound: at most once per poll interval a
+ * signal starts a background {@link #trim()}, which drops this entity's events older than the
+ * newest {@code retainSequences} sequence numbers, but never one a live subscription has not
+ * read yet. A consumer that resumes after a restart therefore finds its events as long as it
+ * is back within the retention window.
+ */
+public class ChangeFeed implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+    public static final long DEFAULT_RETAIN_SEQUENCES = 100_000;
+
+    private final ChangeLogStorage db;
+    private final ChangeEvent.Entity entity;
+    private final long pollNanos;
+    private final long retainSequences;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    private volatile long lastTrimNanos = System.nanoTime();
+    private volatile long trimmedUpTo;
+    private volatile Throwable trimFailure;
+
+    public ChangeFeed(ChangeLogStorage db, ChangeEvent.Entity entity) {
+        this(db, entity, DEFAULT_POLL_MILLIS);
+    }
+
+    public ChangeFeed(ChangeLogStorage db, ChangeEvent.Entity entity, long pollMillis) {
+        this(db, entity, pollMillis, DEFAULT_RETAIN_SEQUENCES);
+    }
+
+    /**
+     * @param retainSequences how far behind the newest sequence number events are kept even
+     *                        with no subscriber to read them; {@link Long#MAX_VALUE} keeps all
+     */
+    public ChangeFeed(ChangeLogStorage db, ChangeEvent.Entity entity, long pollMillis, long retainSequences) {
+        if (pollMillis < 1) throw new IllegalArgumentException("Poll interval must be at least 1 ms");
+        if (retainSequences < 0) throw new IllegalArgumentException("Retention must not be negative");
+        this.db = db;
+        this.entity = entity;
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(pollMillis);
+        this.retainSequences = retainSequences;
+    }
+
+    /** Sequence number of the newest logged change of any entity, 0 if none. */
+    public long latestSequence() {
+        try {
+            return db.latestChangeSequence();
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /** Subscribes to changes made from now on. */
+    public Subscription subscribe(Consumer<ChangeEvent> consumer) {
+        return subscribe(latestSequence(), DEFAULT_BATCH_SIZE, consumer);
+    }
+
+    /**
+     * Subscribes to every change with a sequence number greater than {@code afterSequence}
+     * that is still in the log (0 replays the whole log). A consumer that throws ends the
+     * subscription; the exception is kept in {@link Subscription#getFailure()}.
+     */
+    public Subscription subscribe(long afterSequence, int batchSize, Consumer<ChangeEvent> consumer) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        Subscription s = new Subscription(afterSequence, batchSize, consumer);
+        subscriptions.add(s);
+        s.thread = Thread.ofVirtual().name("change-feed-" + entity.getCode()).start(s::run);
+        return s;
+    }
+
+    /** Wakes every subscription to read new changes; called by the DAO after each write. */
+    public void signal() {
+        for (Subscription s : subscriptions) s.wake();
+        if (System.nanoTime() - lastTrimNanos >= pollNanos && trimming.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("change-feed-trim-" + entity.getCode()).start(() -> {
+                try {
+                    trim();
+                    trimFailure = null;
+                } catch (SQLException | RuntimeException ex) {
+                    // the log only grows until the next round succeeds
+                    trimFailure = ex;
+                } finally {
+                    lastTrimNanos = System.nanoTime();
+                    trimming.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops this entity's events that are outside the retention window and already read by
+     * every live subscription; returns how many. Runs on its own after writes, see the class
+     * comment.
+     */
+    public int trim() throws SQLException {
+        long latest = db.latestChangeSequence();
+        long upTo = retainSequences >= latest ? 0 : latest - retainSequences;
+        for (Subscription s : subscriptions) upTo = Math.min(upTo, s.getPosition());
+        if (upTo <= trimmedUpTo) return 0;
+        int trimmed = db.trimChangeLog(entity, upTo);
+        trimmedUpTo = upTo;
+        return trimmed;
+    }
+
+    /** Why the last background trim failed, or null if it succeeded. */
+    public Throwable getTrimFailure() {
+        return trimFailure;
+    }
+
+    /** Ends all subscriptions. */
+    @Override
+    public void close() {
+        for (Subscription s : subscriptions) s.close();
+    }
+
+    public class Subscription implements AutoCloseable {
+        private final int batchSize;
+        private final Consumer<ChangeEvent> consumer;
+        private volatile Thread thread;
+        private volatile long position;
+        private volatile boolean closed;
+        private volatile Throwable failure;
+
+        private Subscription(long afterSequence, int batchSize, Consumer<ChangeEvent> consumer) {
+            this.position = afterSequence;
+            this.batchSize = batchSize;
+            this.consumer = consumer;
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    List<ChangeEvent> batch = db.getChanges(entity, position, batchSize);
+                    for (ChangeEvent event : batch) {
+                        if (closed) return;
+                        consumer.accept(event);
+                        position = event.sequence();
+                    }
+                    // a full batch means there may be more; otherwise wait for a signal or the poll
+                    if (batch.size() < batchSize && !closed) LockSupport.parkNanos(this, pollNanos);
+                }
+            } catch (SQLException | RuntimeException ex) {
+                failure = ex;
+            } finally {
+                closed = true;
+                subscriptions.remove(this);
+            }
+        }
+
+        private void wake() {
+            Thread t = thread;
+            if (t != null) LockSupport.unpark(t);
+        }
+
+        /** Sequence number of the last event handed to the consumer. */
+        public long getPosition() {
+            return position;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /** Why the subscription ended on its own, or null. */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /** Stops delivery; an event being delivered right now still completes. */
+        @Override
+        public void close() {
+            closed = true;
+            wake();
+        }
+    }
+}
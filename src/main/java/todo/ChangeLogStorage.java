@@ -0,0 +1,27 @@
+package todo;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The change log a storage backend keeps for {@link ChangeFeed}: one {@link ChangeEvent} per
+ * committed task or category write, with increasing sequence numbers that are never reused.
+ */
+public interface ChangeLogStorage {
+
+    /** Up to {@code limit} events of {@code entity} after {@code afterSequence}, oldest first. */
+    List<ChangeEvent> getChanges(ChangeEvent.Entity entity, long afterSequence, int limit) throws SQLException;
+
+    /** The sequence number of the newest event ever logged, 0 if none. */
+    long latestChangeSequence() throws SQLException;
+
+    /** Drops events of {@code entity} up to and including {@code upToSequence}; returns how many. */
+    int trimChangeLog(ChangeEvent.Entity entity, long upToSequence) throws SQLException;
+
+    /** Drops events of every entity up to and including {@code upToSequence}; returns how many. */
+    default int trimChangeLog(long upToSequence) throws SQLException {
+        int trimmed = 0;
+        for (ChangeEvent.Entity entity : ChangeEvent.Entity.values()) trimmed += trimChangeLog(entity, upToSequence);
+        return trimmed;
+    }
+}
@@ -0,0 +1,311 @@
+package todo;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded pool of long-lived SQLite connections: a single writer connection
+ * (SQLite only allows one writer at a time anyway) and up to N read-only reader connections
+ * ({@code PRAGMA query_only}).
+ * Connections are leased with try-with-resources and returned on {@link Lease#close()}.
+ * Connections idle for longer than the configured timeout are closed when the next
+ * lease is returned. Every new connection gets the configured {@link PragmaProfile}.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final String connectionString;
+    private final long idleTimeoutNanos;
+    private final long leaseTimeoutMillis;
+    private final int statementCacheSize;
+    private final PragmaProfile pragmas;
+
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private final Semaphore readerPermits;
+
+    // guarded by "this"
+    private PooledConnection idleWriter;
+    private final ArrayDeque<PooledConnection> idleReaders = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    private final LongAdder leaseCount = new LongAdder();
+    private final LongAdder leaseWaitNanos = new LongAdder();
+    private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+    private final LongAdder openedCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LatencyHistogram leaseWaits;
+
+    public ConnectionPool(String connectionString, DbConfig config) {
+        this(connectionString, config, new LatencyHistogram());
+    }
+
+    /** Records every lease wait (including uncontended ones) into {@code leaseWaits}. */
+    public ConnectionPool(String connectionString, DbConfig config, LatencyHistogram leaseWaits) {
+        this.leaseWaits = leaseWaits;
+        this.connectionString = connectionString;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        this.leaseTimeoutMillis = config.getLeaseTimeoutMillis();
+        this.statementCacheSize = config.getStatementCacheSize();
+        this.pragmas = config.getPragmas();
+        this.readerPermits = new Semaphore(config.getReaderPoolSize(), true);
+    }
+
+    /** Leases the writer connection. Blocks while another caller holds it. */
+    public Lease write() throws SQLException {
+        return lease(true);
+    }
+
+    /** Leases one of the reader connections. Blocks while all of them are in use. */
+    public Lease read() throws SQLException {
+        return lease(false);
+    }
+
+    private Lease lease(boolean writer) throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        Semaphore permits = writer ? writerPermit : readerPermits;
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(leaseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + leaseTimeoutMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", ex);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc = takeIdle(writer);
+            if (pc == null) pc = open(writer);
+            return new Lease(pc, writer);
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private synchronized PooledConnection takeIdle(boolean writer) throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        if (writer) {
+            PooledConnection pc = idleWriter;
+            idleWriter = null;
+            return pc;
+        }
+        return idleReaders.pollFirst();
+    }
+
+    private PooledConnection open(boolean writer) throws SQLException {
+        Connection connection = DriverManager.getConnection(connectionString);
+        try {
+            pragmas.apply(connection);
+            if (!writer) {
+                // readers never write, so they cannot take or wait for the write lock by mistake
+                try (Statement st = connection.createStatement()) {
+                    st.execute("PRAGMA query_only = ON");
+                }
+            }
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+        openedCount.increment();
+        return new PooledConnection(connection,
+                new StatementCache(connection, statementCacheSize, statementCacheHits, statementCacheMisses));
+    }
+
+    private void release(Lease lease) {
+        PooledConnection pc = lease.pooled;
+        boolean reusable = resetState(pc);
+        pc.lastUsedNanos = System.nanoTime();
+        synchronized (this) {
+            if (closed || !reusable) {
+                pc.closeQuietly();
+            } else if (lease.writer) {
+                idleWriter = pc;
+            } else {
+                // LIFO: the most recently used reader is handed out first so the rest can age out
+                idleReaders.addFirst(pc);
+            }
+            evictIdle(pc.lastUsedNanos);
+        }
+        (lease.writer ? writerPermit : readerPermits).release();
+    }
+
+    /** Rolls back a transaction a caller may have left open; returns false when the connection is unusable. */
+    private static boolean resetState(PooledConnection pc) {
+        try {
+            if (pc.connection.isClosed()) return false;
+            if (!pc.connection.getAutoCommit()) {
+                pc.connection.rollback();
+                pc.connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void evictIdle(long now) {
+        if (idleTimeoutNanos <= 0) return;
+        if (idleWriter != null && now - idleWriter.lastUsedNanos > idleTimeoutNanos) {
+            idleWriter.closeQuietly();
+            idleWriter = null;
+            evictedCount.increment();
+        }
+        Iterator<PooledConnection> it = idleReaders.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pc = it.next();
+            if (now - pc.lastUsedNanos <= idleTimeoutNanos) break;
+            it.remove();
+            pc.closeQuietly();
+            evictedCount.increment();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        leaseCount.increment();
+        leaseWaitNanos.add(nanos);
+        maxLeaseWaitNanos.accumulateAndGet(nanos, Math::max);
+        leaseWaits.record(nanos);
+    }
+
+    /** Closes all idle connections. Connections currently leased are closed when returned. */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (idleWriter != null) {
+            idleWriter.closeQuietly();
+            idleWriter = null;
+        }
+        for (PooledConnection pc : idleReaders) pc.closeQuietly();
+        idleReaders.clear();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public long getLeaseCount() {
+        return leaseCount.sum();
+    }
+
+    public long getTotalLeaseWaitNanos() {
+        return leaseWaitNanos.sum();
+    }
+
+    public long getMaxLeaseWaitNanos() {
+        return maxLeaseWaitNanos.get();
+    }
+
+    public LatencyHistogram getLeaseWaitHistogram() {
+        return leaseWaits;
+    }
+
+    public long getOpenedCount() {
+        return openedCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public synchronized int getIdleCount() {
+        return idleReaders.size() + (idleWriter == null ? 0 : 1);
+    }
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+        private long lastUsedNanos;
+
+        private PooledConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+            this.lastUsedNanos = System.nanoTime();
+        }
+
+        private void closeQuietly() {
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    /**
+     * A connection borrowed from the pool. Do not close the connection itself,
+     * close the lease to hand it back.
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledConnection pooled;
+        private final boolean writer;
+        // a borrowed view of another lease: closing it does not return the connection
+        private final boolean borrowed;
+        private boolean released;
+
+        private Lease(PooledConnection pooled, boolean writer) {
+            this(pooled, writer, false);
+        }
+
+        private Lease(PooledConnection pooled, boolean writer, boolean borrowed) {
+            this.pooled = pooled;
+            this.writer = writer;
+            this.borrowed = borrowed;
+        }
+
+        /**
+         * A second handle on this lease's connection for code that closes what it leases;
+         * closing the handle leaves this lease alone.
+         */
+        public Lease borrow() {
+            connection();
+            return new Lease(pooled, writer, true);
+        }
+
+        public Connection connection() {
+            if (released) throw new IllegalStateException("Lease already returned to the pool");
+            return pooled.connection;
+        }
+
+        /**
+         * Returns a cached prepared statement for {@code sql}, preparing it on first use.
+         * The statement belongs to the connection's cache and must not be closed.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            connection();
+            return pooled.statements.prepare(sql);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            connection();
+            return pooled.statements.prepare(sql, autoGeneratedKeys);
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            if (!borrowed) release(this);
+        }
+    }
+}
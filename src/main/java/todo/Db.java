@@ -1,40 +1,175 @@
 package todo;
 import java.nio.file.Path;
 import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Db {
-    private String connectionString;
+/**
+ * The SQLite {@link Storage} backend. Writes are queued to one {@link DbWriter} thread;
+ * reads run in parallel on the pool's read-only connections, or on the writer connection
+ * when they are part of a transaction.
+ */
+public class Db implements Storage {
+    private static final String INSERT_TASK_SQL = """
+            INSERT INTO Tasks (name, content, categoryName, status, dueDate)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+    private static final String UPDATE_TASK_SQL = """
+            UPDATE Tasks
+            SET name = ?,
+                content = ?,
+                categoryName = ?,
+                status = ?,
+                dueDate = ?
+            WHERE id = ?
+            """;
+    private static final String DELETE_TASK_SQL = """
+            DELETE FROM Tasks
+            WHERE id = ?
+            """;
+    private static final String INSERT_CATEGORY_SQL = "INSERT INTO Categories (name, description) VALUES (?, ?)";
+    private static final String UPDATE_CATEGORY_SQL = "UPDATE Categories SET description = ? WHERE name = ?";
+    private static final String DELETE_CATEGORY_SQL = "DELETE FROM Categories WHERE name = ?";
+
+    private final ConnectionPool pool;
+    // every write goes through here; reads lease reader connections directly
+    private final DbWriter writer;
+    private final int batchSize;
+
+    // one timing slot per public method; field initializers run before the constructor body
+    private final DbMetrics metrics = new DbMetrics();
+    private final DbMetrics.Operation getCategoriesOp = metrics.read("getCategories");
+    private final DbMetrics.Operation getCategoryOp = metrics.read("getCategory");
+    private final DbMetrics.Operation addCategoryOp = metrics.write("addCategory");
+    private final DbMetrics.Operation deleteCategoryOp = metrics.write("deleteCategory");
+    private final DbMetrics.Operation updateCategoryOp = metrics.write("updateCategory");
+    private final DbMetrics.Operation getTasksOp = metrics.read("getTasks");
+    private final DbMetrics.Operation getTasksAfterOp = metrics.read("getTasksAfter");
+    private final DbMetrics.Operation getTasksPageOp = metrics.read("getTasksPage");
+    private final DbMetrics.Operation countTasksOp = metrics.read("countTasks");
+    private final DbMetrics.Operation searchTaskIdsOp = metrics.read("searchTaskIds");
+    private final DbMetrics.Operation getTasksByIdsOp = metrics.read("getTasksByIds");
+    private final DbMetrics.Operation getTaskOp = metrics.read("getTask");
+    private final DbMetrics.Operation getTasksByCategoryOp = metrics.read("getTasksByCategory");
+    private final DbMetrics.Operation getTasksDueBetweenOp = metrics.read("getTasksDueBetween");
+    private final DbMetrics.Operation loadDueDaysOp = metrics.read("loadDueDays");
+    private final DbMetrics.Operation loadTaskCountsOp = metrics.read("loadTaskCounts");
+    private final DbMetrics.Operation getChangesOp = metrics.read("getChanges");
+    private final DbMetrics.Operation latestChangeSequenceOp = metrics.read("latestChangeSequence");
+    private final DbMetrics.Operation trimChangeLogOp = metrics.write("trimChangeLog");
+    private final DbMetrics.Operation updateTaskOp = metrics.write("updateTask");
+    private final DbMetrics.Operation deleteTaskOp = metrics.write("deleteTask");
+    private final DbMetrics.Operation createTaskOp = metrics.write("createTask");
+    private final DbMetrics.Operation createTasksOp = metrics.write("createTasks");
+    private final DbMetrics.Operation updateTasksOp = metrics.write("updateTasks");
+    private final DbMetrics.Operation deleteTasksOp = metrics.write("deleteTasks");
+    private final DbMetrics.Operation writeTasksOp = metrics.write("writeTasks");
+    private final DbMetrics.Operation addCategoriesOp = metrics.write("addCategories");
+    private final DbMetrics.Operation updateCategoriesOp = metrics.write("updateCategories");
+    private final DbMetrics.Operation deleteCategoriesOp = metrics.write("deleteCategories");
+
+    private List<SchemaMigrations.AppliedMigration> appliedMigrations = List.of();
 
     private void ensureExists(Connection connection) throws SQLException {
-        try (Statement stat = connection.createStatement()) {
-            String sql1 = "CREATE TABLE IF NOT EXISTS Categories (name TEXT PRIMARY KEY, description TEXT)";
-            stat.execute(sql1);
+        appliedMigrations = SchemaMigrations.migrate(connection);
+    }
+
+    public Db() throws SQLException {
+        this(defaultConnectionString(), DbConfig.fromSystemProperties());
+    }
+
+    public Db(String connectionString) throws SQLException {
+        this(connectionString, DbConfig.fromSystemProperties());
+    }
 
-            String sql2 = "CREATE TABLE IF NOT EXISTS Tasks (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, content TEXT, categoryName TEXT, status TEXT, dueDate TEXT, FOREIGN KEY(categoryName) REFERENCES Categories(name))";
-            stat.execute(sql2);
+    public Db(String connectionString, DbConfig config) throws SQLException {
+        this.pool = new ConnectionPool(connectionString, config, metrics.getConnectionWaits());
+        this.batchSize = config.getBatchSize();
+        try (ConnectionPool.Lease lease = pool.write()) {
+            ensureExists(lease.connection());
+        } catch (SQLException ex) {
+            pool.close();
+            throw ex;
+        }
+        this.writer = DbWriter.start(pool, connectionString);
+        try {
+            if (config.isMetricsJmx()) metrics.registerMBean(connectionString);
+            if (config.getMetricsFile() != null) {
+                metrics.startDump(Path.of(config.getMetricsFile()), Duration.ofSeconds(config.getMetricsIntervalSeconds()));
+            }
+        } catch (RuntimeException ex) {
+            // nobody gets a Db to close, so stop the writer thread and the rest here
+            writer.close();
+            metrics.close();
+            pool.close();
+            throw ex;
         }
     }
-    public Db() throws SQLException {
+
+    // inside a transaction reads go to the writer connection, so they see its uncommitted writes
+    private ConnectionPool.Lease readLease() throws SQLException {
+        ConnectionPool.Lease current = writer.currentLease();
+        return current != null ? current.borrow() : pool.read();
+    }
+
+    private static String defaultConnectionString() {
         Path userHome = Path.of(System.getProperty("user.home"));
         Path dbFile = userHome.resolve("testy-crud.db");
-        this.connectionString = "jdbc:sqlite:" + dbFile;
-        try (Connection conn = DriverManager.getConnection(connectionString)) {
-            ensureExists(conn);
-        }
+        return "jdbc:sqlite:" + dbFile;
     }
 
-    public Db(String connectionString) throws SQLException {
-        this.connectionString = connectionString;
-        try (Connection conn = DriverManager.getConnection(connectionString)) {
-            ensureExists(conn);
-        }
+    /**
+     * Migrations this instance applied when it opened the database, with their timings.
+     */
+    public List<SchemaMigrations.AppliedMigration> getAppliedMigrations() {
+        return appliedMigrations;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * The single writer thread all mutations are queued to, with its queue and throughput counters.
+     */
+    public DbWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Latency histograms and row/error counters of every public method, see {@link DbMetrics}.
+     */
+    public DbMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Finishes the queued writes and closes the pooled connections. The instance must not be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        writer.close();
+        metrics.close();
+        pool.close();
     }
 
     public ArrayList<Category> getCategories() throws SQLException {
-        try (Connection connection = DriverManager.getConnection(connectionString);
-             Statement stat = connection.createStatement();
-             ResultSet res = stat.executeQuery("SELECT * FROM Categories")) {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease();
+             ResultSet res = lease.prepare("SELECT * FROM Categories").executeQuery()) {
 
             ArrayList<Category> categories = new ArrayList<>();
             while (res.next()) {
@@ -44,198 +179,782 @@ public class Db {
                 if (name == null || name.isBlank()) name = "-";
                 categories.add(new Category(name, description));
             }
+            rows = categories.size();
             return categories;
+        } finally {
+            getCategoriesOp.record(start, rows);
         }
     }
 
     public Category getCategory(String categoryName) throws SQLException {
-        try(Connection connection = DriverManager.getConnection(connectionString)) {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
             String sql = """
                    SELECT * FROM Categories
                    WHERE name = ?
             """;
-            try (PreparedStatement smt = connection.prepareStatement(sql)) {
-                smt.setString(1, categoryName);
-                try (ResultSet results = smt.executeQuery()) {
-                    while (results.next()) {
-                        String name = results.getString("name");
-                        String description = results.getString("description");
-                        if (description == null || description.isBlank()) description = "-";
-                        if (name == null || name.isBlank()) name = "-";
-                        return new Category(name, description);
-                    }
-                    return null;
+            PreparedStatement smt = lease.prepare(sql);
+            smt.setString(1, categoryName);
+            try (ResultSet results = smt.executeQuery()) {
+                while (results.next()) {
+                    String name = results.getString("name");
+                    String description = results.getString("description");
+                    if (description == null || description.isBlank()) description = "-";
+                    if (name == null || name.isBlank()) name = "-";
+                    rows = 1;
+                    return new Category(name, description);
                 }
+                rows = 0;
+                return null;
             }
+        } finally {
+            getCategoryOp.record(start, rows);
         }
     }
 
     public void addCategory(Category category) throws SQLException {
-        try(Connection connection = DriverManager.getConnection(connectionString)) {
-            String sql = """
-                   INSERT INTO Categories (name, description) VALUES (?, ?)
-            """;
-            try (PreparedStatement smt = connection.prepareStatement(sql)) {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement smt = lease.prepare(INSERT_CATEGORY_SQL);
                 smt.setString(1, category.getName());
                 smt.setString(2, category.getDescription());
-                smt.execute();
-            }
+                return smt.executeUpdate();
+            });
+        } finally {
+            addCategoryOp.record(start, rows);
         }
     }
 
     public void deleteCategory(String categoryName) throws SQLException {
-        try(Connection connection = DriverManager.getConnection(connectionString)) {
-            String sql = """
-                   DELETE FROM Categories
-                   WHERE name = ?;
-            """;
-            try (PreparedStatement smt = connection.prepareStatement(sql)) {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement smt = lease.prepare(DELETE_CATEGORY_SQL);
                 smt.setString(1, categoryName);
-                smt.execute();
-            }
+                return smt.executeUpdate();
+            });
+        } finally {
+            deleteCategoryOp.record(start, rows);
         }
     }
 
     public void updateCategory(Category category) throws SQLException {
-        try(Connection connection = DriverManager.getConnection(connectionString)) {
-            String sql = """
-                   UPDATE Categories
-                   SET description = ?
-                   WHERE name = ?;
-            """;
-            try (PreparedStatement smt = connection.prepareStatement(sql)) {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement smt = lease.prepare(UPDATE_CATEGORY_SQL);
                 smt.setString(1, category.getDescription());
                 smt.setString(2, category.getName());
-                smt.execute();
+                return smt.executeUpdate();
+            });
+        } finally {
+            updateCategoryOp.record(start, rows);
+        }
+    }
+
+    public ArrayList<Task> getTasks() throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease();
+             ResultSet res = lease.prepare("SELECT * FROM Tasks").executeQuery()) {
+
+            ArrayList<Task> tasks = new ArrayList<>();
+            TaskRowMapper mapper = new TaskRowMapper(res);
+            while (res.next()) {
+                Task t = mapper.map(res);
+                tasks.add(t);
             }
+            rows = tasks.size();
+            return tasks;
+        } finally {
+            getTasksOp.record(start, rows);
         }
     }
 
+    /**
+     * Keyset pagination: up to {@code limit} tasks with id greater than {@code afterId},
+     * in id order. Pass 0 for the first page and the last id of a page for the next one.
+     */
+    public ArrayList<Task> getTasksAfter(int afterId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            PreparedStatement sttm = lease.prepare("SELECT * FROM Tasks WHERE id > ? ORDER BY id LIMIT ?");
+            sttm.setInt(1, afterId);
+            sttm.setInt(2, limit);
+            try (ResultSet res = sttm.executeQuery()) {
+                ArrayList<Task> tasks = new ArrayList<>(Math.min(limit, 1024));
+                TaskRowMapper mapper = new TaskRowMapper(res);
+                while (res.next()) {
+                    tasks.add(mapper.map(res));
+                }
+                rows = tasks.size();
+                return tasks;
+            }
+        } finally {
+            getTasksAfterOp.record(start, rows);
+        }
+    }
 
-    private Task parseTask(ResultSet res) throws SQLException {
-        int id = res.getInt("id");
-        String name = res.getString("name");
-        String content = res.getString("content");
-        String categoryName = res.getString("categoryName");
-        String due = res.getString("dueDate");
-        String _status = res.getString("status");
-        TaskStatus taskStatus = null;
-        if (_status != null) {
-            // try mapping by enum code first
-            try {
-                taskStatus = TaskStatus.fromCode(_status);
-            } catch (Exception ex) {
-                try {
-                    taskStatus = TaskStatus.valueOf(_status);
-                } catch (Exception ex2) {
-                    taskStatus = TaskStatus.NOT_STARTED;
+    /**
+     * Up to {@code limit} tasks starting at row {@code offset} of the id-ordered task list.
+     * Prefer {@link #getTasksAfter(int, int)} when the previous page's last id is known.
+     */
+    public ArrayList<Task> getTasksPage(int offset, int limit) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            PreparedStatement sttm = lease.prepare("SELECT * FROM Tasks ORDER BY id LIMIT ? OFFSET ?");
+            sttm.setInt(1, limit);
+            sttm.setInt(2, offset);
+            try (ResultSet res = sttm.executeQuery()) {
+                ArrayList<Task> tasks = new ArrayList<>(Math.min(limit, 1024));
+                TaskRowMapper mapper = new TaskRowMapper(res);
+                while (res.next()) {
+                    tasks.add(mapper.map(res));
                 }
+                rows = tasks.size();
+                return tasks;
             }
-        } else {
-            taskStatus = TaskStatus.NOT_STARTED;
+        } finally {
+            getTasksPageOp.record(start, rows);
         }
-        return new Task(
-                id,
-                name,
-                content,
-                categoryName,
-                taskStatus,
-                due
-        );
     }
 
-    public ArrayList<Task> getTasks() throws SQLException {
-        try (Connection connection = DriverManager.getConnection(connectionString);
-             Statement st = connection.createStatement();
-             ResultSet res = st.executeQuery("SELECT * FROM Tasks")) {
+    public int countTasks() throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease();
+             ResultSet res = lease.prepare("SELECT count(*) FROM Tasks").executeQuery()) {
+            int count = res.next() ? res.getInt(1) : 0;
+            rows = 1;
+            return count;
+        } finally {
+            countTasksOp.record(start, rows);
+        }
+    }
 
-            ArrayList<Task> tasks = new ArrayList<>();
-            while (res.next()) {
-                Task t = parseTask(res);
-                tasks.add(t);
+    /**
+     * Forward-only stream over all tasks in id order. Only one page of {@code pageSize}
+     * tasks is held in memory and no connection is kept leased between pages. A failing
+     * page read surfaces as a RuntimeException wrapping the SQLException.
+     */
+    public Stream<Task> streamTasks(int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be at least 1");
+        Spliterator<Task> pages = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            private List<Task> page = List.of();
+            private int index;
+            private int lastId;
+            private boolean exhausted;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Task> action) {
+                if (index == page.size()) {
+                    if (exhausted) return false;
+                    try {
+                        page = getTasksAfter(lastId, pageSize);
+                    } catch (SQLException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    index = 0;
+                    exhausted = page.size() < pageSize;
+                    if (page.isEmpty()) return false;
+                    lastId = page.get(page.size() - 1).getId();
+                }
+                action.accept(page.get(index++));
+                return true;
             }
-            return tasks;
+        };
+        return StreamSupport.stream(pages, false);
+    }
+
+    /**
+     * Full-text search over task name, content and category. Every word of {@code text} must
+     * match the start of a word in the task (so partially typed words already match),
+     * case- and accent-insensitively. Returns up to {@code limit} ids, best match first.
+     */
+    public int[] searchTaskIds(String text, int limit) throws SQLException {
+        String match = toMatchExpression(text);
+        if (match.isEmpty()) return new int[0];
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            PreparedStatement sttm = lease.prepare("SELECT rowid FROM TasksFts WHERE TasksFts MATCH ? ORDER BY rank LIMIT ?");
+            sttm.setString(1, match);
+            sttm.setInt(2, limit);
+            try (ResultSet res = sttm.executeQuery()) {
+                int[] ids = new int[Math.min(limit, 1024)];
+                int n = 0;
+                while (res.next()) {
+                    if (n == ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+                    ids[n++] = res.getInt(1);
+                }
+                rows = n;
+                return Arrays.copyOf(ids, n);
+            }
+        } finally {
+            searchTaskIdsOp.record(start, rows);
+        }
+    }
+
+    /**
+     * Turns free text into an FTS5 query: each word becomes a quoted prefix term, so
+     * FTS syntax characters typed by the user are matched literally instead of parsed.
+     */
+    static String toMatchExpression(String text) {
+        if (text == null) return "";
+        StringBuilder match = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (!match.isEmpty()) match.append(' ');
+            match.append('"').append(word).append("\"*");
+        }
+        return match.toString();
+    }
+
+    /**
+     * Loads the tasks with the given ids, in the order the ids are given. Unknown ids are skipped.
+     */
+    public ArrayList<Task> getTasksByIds(int[] ids) throws SQLException {
+        ArrayList<Task> tasks = new ArrayList<>(ids.length);
+        if (ids.length == 0) return tasks;
+        Map<Integer, Task> byId = new HashMap<>(ids.length * 2);
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            for (int from = 0; from < ids.length; from += batchSize) {
+                int to = Math.min(ids.length, from + batchSize);
+                // full chunks share one cached statement; only the last chunk has its own text
+                String sql = "SELECT * FROM Tasks WHERE id IN (" + "?,".repeat(to - from - 1) + "?)";
+                PreparedStatement sttm = lease.prepare(sql);
+                for (int i = from; i < to; i++) sttm.setInt(i - from + 1, ids[i]);
+                try (ResultSet res = sttm.executeQuery()) {
+                    TaskRowMapper mapper = new TaskRowMapper(res);
+                    while (res.next()) {
+                        Task t = mapper.map(res);
+                        byId.put(t.getId(), t);
+                    }
+                }
+            }
+            rows = byId.size();
+        } finally {
+            getTasksByIdsOp.record(start, rows);
+        }
+        for (int id : ids) {
+            Task t = byId.get(id);
+            if (t != null) tasks.add(t);
+        }
+        return tasks;
+    }
+
+    public Task getTask(int id) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            Task t = selectTask(lease, id);
+            rows = t == null ? 0 : 1;
+            return t;
+        } finally {
+            getTaskOp.record(start, rows);
         }
     }
 
     public ArrayList<Task> getTasks(Category category) throws SQLException {
-        try (Connection connection = DriverManager.getConnection(connectionString)) {
+        return getTasks(category.getName());
+    }
+
+    public ArrayList<Task> getTasks(String categoryName) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
             String sql = """
                     SELECT * FROM Tasks
                     WHERE categoryName = ?;
                     """;
 
-            try (PreparedStatement sttm = connection.prepareStatement(sql)) {
-                sttm.setString(1, category.getName());
-                try (ResultSet res = sttm.executeQuery()) {
+            PreparedStatement sttm = lease.prepare(sql);
+            sttm.setString(1, categoryName);
+            try (ResultSet res = sttm.executeQuery()) {
 
-                    ArrayList<Task> tasks = new ArrayList<>();
+                ArrayList<Task> tasks = new ArrayList<>();
+                TaskRowMapper mapper = new TaskRowMapper(res);
 
-                    while (res.next()) {
-                        Task t = parseTask(res);
-                        tasks.add(t);
-                    }
-                    return tasks;
+                while (res.next()) {
+                    Task t = mapper.map(res);
+                    tasks.add(t);
                 }
+                rows = tasks.size();
+                return tasks;
             }
+        } finally {
+            getTasksByCategoryOp.record(start, rows);
         }
     }
 
-    public void updateTask(Task task) throws SQLException {
-        try (Connection con = DriverManager.getConnection(connectionString)) {
-            String sql = """
-                    UPDATE Tasks
-                    SET name = ?,
-                        content = ?,
-                        categoryName = ?,
-                        status = ?,
-                        dueDate = ?
-                    WHERE id = ?
-                    """;
-            try (PreparedStatement sttm = con.prepareStatement(sql)) {
-                sttm.setString(1, task.getName());
-                sttm.setString(2, task.getContent());
-                sttm.setString(3, task.getCategoryName());
-                sttm.setString(4, task.getStatus() == null ? null : task.getStatus().getCode());
-                sttm.setString(5, task.getDue());
-                sttm.setInt(6, task.getId());
-                sttm.execute();
+    /**
+     * Up to {@code limit} tasks due between {@code from} and {@code to} (both inclusive),
+     * earliest first, read through the dueDay index. Tasks without an ISO due date never match.
+     */
+    public ArrayList<Task> getTasksDueBetween(LocalDate from, LocalDate to, int limit) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            PreparedStatement sttm = lease.prepare("SELECT * FROM Tasks WHERE dueDay BETWEEN ? AND ? ORDER BY dueDay, id LIMIT ?");
+            sttm.setLong(1, from.toEpochDay());
+            sttm.setLong(2, to.toEpochDay());
+            sttm.setInt(3, limit);
+            try (ResultSet res = sttm.executeQuery()) {
+                ArrayList<Task> tasks = new ArrayList<>(Math.min(limit, 1024));
+                TaskRowMapper mapper = new TaskRowMapper(res);
+                while (res.next()) {
+                    tasks.add(mapper.map(res));
+                }
+                rows = tasks.size();
+                return tasks;
             }
+        } finally {
+            getTasksDueBetweenOp.record(start, rows);
         }
     }
 
-    public void deleteTask(Task task) throws SQLException {
-        try (Connection con = DriverManager.getConnection(connectionString)) {
-            String sql = """
-                    DELETE FROM Tasks
-                    WHERE id = ?
-                    """;
-            PreparedStatement sttm = con.prepareStatement(sql);
-            sttm.setInt(1, task.getId());
-            sttm.execute();
+    /**
+     * Adds the id, due day and status of every task with an ISO due date to {@code index}.
+     * Reads only the indexed columns, not the task text.
+     */
+    public void loadDueDays(DueIndex index) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease();
+             ResultSet res = lease.prepare("SELECT id, dueDay, status FROM Tasks WHERE dueDay IS NOT NULL").executeQuery()) {
+            int n = 0;
+            while (res.next()) {
+                index.add(res.getInt(1), res.getInt(2), TaskStatus.fromCode(res.getString(3)));
+                n++;
+            }
+            rows = n;
+        } finally {
+            loadDueDaysOp.record(start, rows);
+        }
+    }
+
+    /**
+     * Fills {@code stats} with the number of tasks per category and status, in one
+     * GROUP BY over the (categoryName, status) index.
+     */
+    public void loadTaskCounts(TaskStats stats) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease();
+             ResultSet res = lease.prepare("SELECT categoryName, status, count(*) FROM Tasks GROUP BY categoryName, status").executeQuery()) {
+            int n = 0;
+            while (res.next()) {
+                stats.add(res.getString(1), TaskStatus.fromCode(res.getString(2)), res.getLong(3));
+                n++;
+            }
+            rows = n;
+        } finally {
+            loadTaskCountsOp.record(start, rows);
+        }
+    }
+
+    private static Task selectTask(ConnectionPool.Lease lease, int id) throws SQLException {
+        PreparedStatement sttm = lease.prepare("SELECT * FROM Tasks WHERE id = ?");
+        sttm.setInt(1, id);
+        try (ResultSet res = sttm.executeQuery()) {
+            return res.next() ? new TaskRowMapper(res).map(res) : null;
+        }
+    }
+
+    public boolean updateTask(Task task) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement sttm = lease.prepare(UPDATE_TASK_SQL);
+                bindTask(sttm, task);
+                sttm.setInt(6, task.getId());
+                return sttm.executeUpdate();
+            });
+            return rows > 0;
+        } finally {
+            updateTaskOp.record(start, rows);
+        }
+    }
+
+    public boolean deleteTask(Task task) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement sttm = lease.prepare(DELETE_TASK_SQL);
+                sttm.setInt(1, task.getId());
+                return sttm.executeUpdate();
+            });
+            return rows > 0;
+        } finally {
+            deleteTaskOp.record(start, rows);
         }
     }
 
     public int createTask(Task task) throws SQLException {
-        try (Connection con = DriverManager.getConnection(connectionString)) {
-            String sql = """
-                    INSERT INTO Tasks (name, content, categoryName, status, dueDate)
-                    VALUES (?, ?, ?, ?, ?)
-                    """;
-            try (PreparedStatement sttm = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                sttm.setString(1, task.getName());
-                sttm.setString(2, task.getContent());
-                sttm.setString(3, task.getCategoryName());
-                sttm.setString(4, task.getStatus() == null ? null : task.getStatus().getCode());
-                sttm.setString(5, task.getDue());
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            int id = writer.execute(lease -> {
+                PreparedStatement sttm = lease.prepare(INSERT_TASK_SQL, Statement.RETURN_GENERATED_KEYS);
+                bindTask(sttm, task);
                 sttm.executeUpdate();
                 try (ResultSet keys = sttm.getGeneratedKeys()) {
-                    if (keys.next()) {
-                        return keys.getInt(1);
+                    return keys.next() ? keys.getInt(1) : -1;
+                }
+            });
+            rows = 1;
+            return id;
+        } finally {
+            createTaskOp.record(start, rows);
+        }
+    }
+
+    private static void bindTask(PreparedStatement sttm, Task task) throws SQLException {
+        sttm.setString(1, task.getName());
+        sttm.setString(2, task.getContent());
+        sttm.setString(3, task.getCategoryName());
+        sttm.setString(4, task.getStatus() == null ? null : task.getStatus().getCode());
+        sttm.setString(5, task.getDue());
+    }
+
+    /**
+     * Inserts all tasks in one transaction using JDBC batches and returns the generated
+     * ids in iteration order. Either every task is inserted or none is.
+     */
+    public int[] createTasks(Collection<Task> tasks) throws SQLException {
+        int[] ids = new int[tasks.size()];
+        if (ids.length == 0) return ids;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            int[] result = inWriteTransaction(lease -> {
+                PreparedStatement sttm = lease.prepare(INSERT_TASK_SQL);
+                PreparedStatement lastId = lease.prepare("SELECT last_insert_rowid()");
+                int done = 0;
+                int pending = 0;
+                for (Task task : tasks) {
+                    bindTask(sttm, task);
+                    sttm.addBatch();
+                    if (++pending == batchSize || done + pending == ids.length) {
+                        sttm.executeBatch();
+                        // The writer holds the write lock for the whole transaction and Tasks uses
+                        // AUTOINCREMENT, so the rows of one batch get consecutive ids ending at last_insert_rowid().
+                        int last;
+                        try (ResultSet res = lastId.executeQuery()) {
+                            res.next();
+                            last = res.getInt(1);
+                        }
+                        for (int i = 0; i < pending; i++) ids[done + i] = last - pending + 1 + i;
+                        done += pending;
+                        pending = 0;
+                    }
+                }
+                return ids;
+            });
+            rows = ids.length;
+            return result;
+        } finally {
+            createTasksOp.record(start, rows);
+        }
+    }
+
+    /** Updates all tasks (matched by id) in one transaction. */
+    public void updateTasks(Collection<Task> tasks) throws SQLException {
+        if (tasks.isEmpty()) return;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            inWriteTransaction(lease -> {
+                PreparedStatement sttm = lease.prepare(UPDATE_TASK_SQL);
+                int pending = 0;
+                for (Task task : tasks) {
+                    bindTask(sttm, task);
+                    sttm.setInt(6, task.getId());
+                    sttm.addBatch();
+                    if (++pending == batchSize) {
+                        sttm.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) sttm.executeBatch();
+                return null;
+            });
+            rows = tasks.size();
+        } finally {
+            updateTasksOp.record(start, rows);
+        }
+    }
+
+    /** Deletes the tasks with the given ids in one transaction. Unknown ids are ignored. */
+    public void deleteTasks(int[] ids) throws SQLException {
+        if (ids.length == 0) return;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            inWriteTransaction(lease -> {
+                PreparedStatement sttm = lease.prepare(DELETE_TASK_SQL);
+                for (int i = 0; i < ids.length; i++) {
+                    sttm.setInt(1, ids[i]);
+                    sttm.addBatch();
+                    if ((i + 1) % batchSize == 0 || i == ids.length - 1) sttm.executeBatch();
+                }
+                return null;
+            });
+            rows = ids.length;
+        } finally {
+            deleteTasksOp.record(start, rows);
+        }
+    }
+
+    /**
+     * Updates {@code updates} (matched by id) and deletes {@code deleteIds} in one transaction,
+     * e.g. one group of a {@link WriteBehindQueue}. Either all of it is written or none.
+     */
+    public void writeTasks(Collection<Task> updates, int[] deleteIds) throws SQLException {
+        if (updates.isEmpty() && deleteIds.length == 0) return;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            inWriteTransaction(lease -> {
+                PreparedStatement update = lease.prepare(UPDATE_TASK_SQL);
+                int pending = 0;
+                for (Task task : updates) {
+                    bindTask(update, task);
+                    update.setInt(6, task.getId());
+                    update.addBatch();
+                    if (++pending == batchSize) {
+                        update.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) update.executeBatch();
+                PreparedStatement delete = lease.prepare(DELETE_TASK_SQL);
+                for (int i = 0; i < deleteIds.length; i++) {
+                    delete.setInt(1, deleteIds[i]);
+                    delete.addBatch();
+                    if ((i + 1) % batchSize == 0 || i == deleteIds.length - 1) delete.executeBatch();
+                }
+                return null;
+            });
+            rows = updates.size() + deleteIds.length;
+        } finally {
+            writeTasksOp.record(start, rows);
+        }
+    }
+
+    /** Inserts all categories in one transaction. */
+    public void addCategories(Collection<Category> categories) throws SQLException {
+        if (categories.isEmpty()) return;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            inWriteTransaction(lease -> {
+                PreparedStatement smt = lease.prepare(INSERT_CATEGORY_SQL);
+                int pending = 0;
+                for (Category category : categories) {
+                    smt.setString(1, category.getName());
+                    smt.setString(2, category.getDescription());
+                    smt.addBatch();
+                    if (++pending == batchSize) {
+                        smt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) smt.executeBatch();
+                return null;
+            });
+            rows = categories.size();
+        } finally {
+            addCategoriesOp.record(start, rows);
+        }
+    }
+
+    /** Updates the descriptions of all categories in one transaction. */
+    public void updateCategories(Collection<Category> categories) throws SQLException {
+        if (categories.isEmpty()) return;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            inWriteTransaction(lease -> {
+                PreparedStatement smt = lease.prepare(UPDATE_CATEGORY_SQL);
+                int pending = 0;
+                for (Category category : categories) {
+                    smt.setString(1, category.getDescription());
+                    smt.setString(2, category.getName());
+                    smt.addBatch();
+                    if (++pending == batchSize) {
+                        smt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) smt.executeBatch();
+                return null;
+            });
+            rows = categories.size();
+        } finally {
+            updateCategoriesOp.record(start, rows);
+        }
+    }
+
+    /** Deletes the named categories in one transaction. */
+    public void deleteCategories(Collection<String> names) throws SQLException {
+        if (names.isEmpty()) return;
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            inWriteTransaction(lease -> {
+                PreparedStatement smt = lease.prepare(DELETE_CATEGORY_SQL);
+                int pending = 0;
+                for (String name : names) {
+                    smt.setString(1, name);
+                    smt.addBatch();
+                    if (++pending == batchSize) {
+                        smt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) smt.executeBatch();
+                return null;
+            });
+            rows = names.size();
+        } finally {
+            deleteCategoriesOp.record(start, rows);
+        }
+    }
+
+    /**
+     * Up to {@code limit} changes of one entity with a sequence number greater than
+     * {@code afterSequence}, oldest first. Pass 0 to read from the start of the log.
+     */
+    public ArrayList<ChangeEvent> getChanges(ChangeEvent.Entity entity, long afterSequence, int limit) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease()) {
+            PreparedStatement sttm = lease.prepare("SELECT * FROM ChangeLog WHERE entity = ? AND seq > ? ORDER BY seq LIMIT ?");
+            sttm.setString(1, entity.getCode());
+            sttm.setLong(2, afterSequence);
+            sttm.setInt(3, limit);
+            try (ResultSet res = sttm.executeQuery()) {
+                ArrayList<ChangeEvent> changes = new ArrayList<>(Math.min(limit, 1024));
+                TaskRowMapper tasks = entity == ChangeEvent.Entity.TASK ? new TaskRowMapper(res) : null;
+                while (res.next()) {
+                    Task task = null;
+                    Category category = null;
+                    if (tasks != null) {
+                        task = tasks.map(res);
+                    } else {
+                        String name = res.getString("name");
+                        String description = res.getString("description");
+                        if (description == null || description.isBlank()) description = "-";
+                        if (name == null || name.isBlank()) name = "-";
+                        category = new Category(name, description);
                     }
+                    changes.add(new ChangeEvent(res.getLong("seq"), res.getLong("at"), entity,
+                            ChangeEvent.Type.fromCode(res.getString("op")), task, category));
                 }
+                rows = changes.size();
+                return changes;
             }
+        } finally {
+            getChangesOp.record(start, rows);
+        }
+    }
+
+    /** Sequence number of the newest change in the log, or 0 if nothing was ever logged. */
+    public long latestChangeSequence() throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try (ConnectionPool.Lease lease = readLease();
+             ResultSet res = lease.prepare("SELECT seq FROM sqlite_sequence WHERE name = 'ChangeLog'").executeQuery()) {
+            boolean found = res.next();
+            rows = found ? 1 : 0;
+            return found ? res.getLong(1) : 0;
+        } finally {
+            latestChangeSequenceOp.record(start, rows);
+        }
+    }
+
+    /**
+     * Deletes logged changes up to and including {@code upToSequence}, once every consumer
+     * has read past them. Returns the number of deleted entries.
+     */
+    @Override
+    public int trimChangeLog(long upToSequence) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement sttm = lease.prepare("DELETE FROM ChangeLog WHERE seq <= ?");
+                sttm.setLong(1, upToSequence);
+                return sttm.executeUpdate();
+            });
+            return rows;
+        } finally {
+            trimChangeLogOp.record(start, rows);
         }
-        return -1;
+    }
+
+    /**
+     * Deletes logged changes of {@code entity} up to and including {@code upToSequence},
+     * through the (entity, seq) index. Returns the number of deleted entries.
+     */
+    @Override
+    public int trimChangeLog(ChangeEvent.Entity entity, long upToSequence) throws SQLException {
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            rows = writer.execute(lease -> {
+                PreparedStatement sttm = lease.prepare("DELETE FROM ChangeLog WHERE entity = ? AND seq <= ?");
+                sttm.setString(1, entity.getCode());
+                sttm.setLong(2, upToSequence);
+                return sttm.executeUpdate();
+            });
+            return rows;
+        } finally {
+            trimChangeLogOp.record(start, rows);
+        }
+    }
+
+    @Override
+    public <T> T inTransaction(Storage.Work<T> work) throws SQLException {
+        return inWriteTransaction(lease -> work.run(this));
+    }
+
+    /**
+     * Runs {@code work} on the writer thread inside a single transaction, or as part of the
+     * transaction already open there.
+     */
+    private <T> T inWriteTransaction(DbWriter.Work<T> work) throws SQLException {
+        return writer.execute(lease -> {
+            Connection con = lease.connection();
+            if (!con.getAutoCommit()) return work.run(lease);
+            con.setAutoCommit(false);
+            try {
+                T result = work.run(lease);
+                con.commit();
+                return result;
+            } catch (SQLException | RuntimeException ex) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackEx) {
+                    ex.addSuppressed(rollbackEx);
+                }
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        });
     }
 }
@@ -0,0 +1,113 @@
+package todo;
+
+/**
+ * Tunables for {@link Db}. Defaults can be overridden with system properties
+ * (e.g. {@code -Dtodo.db.readers=8}) through {@link #fromSystemProperties()}.
+ */
+public class DbConfig {
+
+    private int readerPoolSize = 4;
+    private long idleTimeoutMillis = 60_000;
+    private long leaseTimeoutMillis = 30_000;
+    private int statementCacheSize = 32;
+    private int batchSize = 500;
+    private PragmaProfile pragmas = PragmaProfile.balanced();
+    private boolean metricsJmx;
+    private String metricsFile;
+    private long metricsIntervalSeconds = 60;
+
+    public static DbConfig fromSystemProperties() {
+        DbConfig config = new DbConfig();
+        config.setReaderPoolSize(Integer.getInteger("todo.db.readers", config.getReaderPoolSize()));
+        config.setIdleTimeoutMillis(Long.getLong("todo.db.idleTimeoutMillis", config.getIdleTimeoutMillis()));
+        config.setLeaseTimeoutMillis(Long.getLong("todo.db.leaseTimeoutMillis", config.getLeaseTimeoutMillis()));
+        config.setStatementCacheSize(Integer.getInteger("todo.db.statementCacheSize", config.getStatementCacheSize()));
+        config.setBatchSize(Integer.getInteger("todo.db.batchSize", config.getBatchSize()));
+        config.setPragmas(PragmaProfile.fromSystemProperties());
+        config.setMetricsJmx(Boolean.getBoolean("todo.db.jmx"));
+        config.setMetricsFile(System.getProperty("todo.db.metricsFile"));
+        config.setMetricsIntervalSeconds(Long.getLong("todo.db.metricsIntervalSeconds", config.getMetricsIntervalSeconds()));
+        return config;
+    }
+
+    public int getReaderPoolSize() {
+        return readerPoolSize;
+    }
+
+    public void setReaderPoolSize(int readerPoolSize) {
+        if (readerPoolSize < 1) throw new IllegalArgumentException("Reader pool size must be at least 1");
+        this.readerPoolSize = readerPoolSize;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getLeaseTimeoutMillis() {
+        return leaseTimeoutMillis;
+    }
+
+    public void setLeaseTimeoutMillis(long leaseTimeoutMillis) {
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /** Maximum number of prepared statements kept open per connection. */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 1) throw new IllegalArgumentException("Statement cache size must be at least 1");
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /** Number of rows sent per executeBatch() call by the bulk write methods. */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.batchSize = batchSize;
+    }
+
+    public PragmaProfile getPragmas() {
+        return pragmas;
+    }
+
+    /** SQLite settings applied to every pooled connection, see {@link PragmaProfile}. */
+    public void setPragmas(PragmaProfile pragmas) {
+        this.pragmas = pragmas;
+    }
+
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    /** Publish {@link DbMetrics} as a JMX MXBean. */
+    public void setMetricsJmx(boolean metricsJmx) {
+        this.metricsJmx = metricsJmx;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    /** File the metrics snapshot is appended to every {@link #getMetricsIntervalSeconds()}; null for none. */
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public long getMetricsIntervalSeconds() {
+        return metricsIntervalSeconds;
+    }
+
+    public void setMetricsIntervalSeconds(long metricsIntervalSeconds) {
+        if (metricsIntervalSeconds < 1) throw new IllegalArgumentException("Metrics interval must be at least 1 second");
+        this.metricsIntervalSeconds = metricsIntervalSeconds;
+    }
+}
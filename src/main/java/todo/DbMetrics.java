@@ -0,0 +1,314 @@
+package todo;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-operation timings and counters for one {@link Db}. Every public Db method has an
+ * {@link Operation} that records its latency into a {@link LatencyHistogram} together with
+ * the rows it read or wrote, or an error. The pool's connection waits go into their own
+ * histogram. Recording is allocation-free; {@link #snapshot()} copies everything out.
+ * The metrics can also be published as a JMX MXBean and appended to a file periodically.
+ */
+public class DbMetrics implements AutoCloseable {
+
+    public record OperationSnapshot(String name, boolean write, long calls, long errors, long rows,
+                                    LatencyHistogram.Snapshot latency) {
+    }
+
+    /** Calls and rows per second over {@code seconds}, split into reads and writes. */
+    public record Throughput(double seconds, double readsPerSecond, double writesPerSecond,
+                             double rowsReadPerSecond, double rowsWrittenPerSecond) {
+
+        public String format() {
+            return String.format("  %-20s reads/s=%.1f writes/s=%.1f rowsRead/s=%.1f rowsWritten/s=%.1f over %.1f s%n",
+                    "throughput", readsPerSecond, writesPerSecond, rowsReadPerSecond, rowsWrittenPerSecond, seconds);
+        }
+    }
+
+    public record Snapshot(Instant takenAt, List<OperationSnapshot> operations, LatencyHistogram.Snapshot connectionWaits,
+                           long rowsRead, long rowsWritten, long errors) {
+
+        public long readCalls() {
+            return calls(false);
+        }
+
+        public long writeCalls() {
+            return calls(true);
+        }
+
+        private long calls(boolean write) {
+            long calls = 0;
+            for (OperationSnapshot op : operations) {
+                if (op.write() == write) calls += op.calls();
+            }
+            return calls;
+        }
+
+        /** Rates between {@code earlier} and this snapshot of the same metrics. */
+        public Throughput throughputSince(Snapshot earlier) {
+            double seconds = Math.max(Duration.between(earlier.takenAt(), takenAt).toNanos(), 1) / 1e9;
+            return new Throughput(seconds,
+                    (readCalls() - earlier.readCalls()) / seconds,
+                    (writeCalls() - earlier.writeCalls()) / seconds,
+                    (rowsRead - earlier.rowsRead()) / seconds,
+                    (rowsWritten - earlier.rowsWritten()) / seconds);
+        }
+
+        /** One line per operation that was called at least once, latencies in microseconds. */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(takenAt).append(" rowsRead=").append(rowsRead).append(" rowsWritten=").append(rowsWritten)
+                    .append(" errors=").append(errors).append('\n');
+            appendLine(sb, "connectionWait", connectionWaits.count(), 0, -1, connectionWaits);
+            for (OperationSnapshot op : operations) {
+                if (op.calls() > 0) appendLine(sb, op.name(), op.calls(), op.errors(), op.rows(), op.latency());
+            }
+            return sb.toString();
+        }
+
+        private static void appendLine(StringBuilder sb, String name, long calls, long errors, long rows, LatencyHistogram.Snapshot l) {
+            sb.append(String.format("  %-20s calls=%d errors=%d", name, calls, errors));
+            if (rows >= 0) sb.append(" rows=").append(rows);
+            sb.append(String.format(" mean=%.1f p50=%.1f p99=%.1f p999=%.1f max=%.1f us%n",
+                    l.mean() / 1000, l.p50() / 1000.0, l.p99() / 1000.0, l.p999() / 1000.0, l.max() / 1000.0));
+        }
+    }
+
+    /** Timing slot of one Db method. */
+    public static class Operation {
+        private final String name;
+        private final boolean write;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+
+        private Operation(String name, boolean write) {
+            this.name = name;
+            this.write = write;
+        }
+
+        /**
+         * Records one call that started at {@code startNanos} ({@link System#nanoTime()}).
+         * {@code rows} is the number of rows read or written, or negative if the call failed.
+         */
+        public void record(long startNanos, long rows) {
+            latency.record(System.nanoTime() - startNanos);
+            if (rows < 0) errors.incrementAndGet();
+            else this.rows.addAndGet(rows);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        OperationSnapshot snapshot() {
+            return new OperationSnapshot(name, write, latency.getCount(), errors.get(), rows.get(), latency.snapshot());
+        }
+    }
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final List<Operation> operations = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram connectionWaits = new LatencyHistogram();
+    private ObjectName mbeanName;
+    private ScheduledExecutorService dumper;
+    // no operations yet: the baseline for rates since creation
+    private final Snapshot initial = new Snapshot(Instant.now(), List.of(), new LatencyHistogram().snapshot(), 0, 0, 0);
+    // the previous periodic dump, so each dump also shows the rates since the last one
+    private Snapshot lastDumped = initial;
+
+    public Operation read(String name) {
+        return add(new Operation(name, false));
+    }
+
+    public Operation write(String name) {
+        return add(new Operation(name, true));
+    }
+
+    private Operation add(Operation op) {
+        operations.add(op);
+        return op;
+    }
+
+    /** Histogram the connection pool records lease waits into. */
+    public LatencyHistogram getConnectionWaits() {
+        return connectionWaits;
+    }
+
+    public Snapshot snapshot() {
+        List<OperationSnapshot> ops = new ArrayList<>(operations.size());
+        long read = 0, written = 0, errors = 0;
+        for (Operation op : operations) {
+            OperationSnapshot s = op.snapshot();
+            ops.add(s);
+            if (s.write()) written += s.rows();
+            else read += s.rows();
+            errors += s.errors();
+        }
+        return new Snapshot(Instant.now(), List.copyOf(ops), connectionWaits.snapshot(), read, written, errors);
+    }
+
+    /** Average read and write rates since these metrics were created. */
+    public Throughput throughput() {
+        return snapshot().throughputSince(initial);
+    }
+
+    /** Registers these metrics with the platform MBean server as {@code todo:type=DbMetrics,name=<name>}. */
+    public synchronized ObjectName registerMBean(String name) {
+        if (mbeanName != null) return mbeanName;
+        try {
+            ObjectName objectName = new ObjectName("todo:type=DbMetrics,name=" + ObjectName.quote(name + "#" + INSTANCES.incrementAndGet()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBeanImpl(), objectName);
+            mbeanName = objectName;
+            return objectName;
+        } catch (JMException ex) {
+            throw new IllegalStateException("Failed to register metrics MBean", ex);
+        }
+    }
+
+    /** Appends {@link Snapshot#format()} to {@code file} every {@code interval}, on a daemon thread. */
+    public synchronized void startDump(Path file, Duration interval) {
+        if (dumper != null) throw new IllegalStateException("Metrics dump already running");
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = interval.toMillis();
+        dumper.scheduleAtFixedRate(() -> dump(file), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void dump(Path file) {
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Snapshot now = snapshot();
+            Snapshot previous;
+            synchronized (this) {
+                previous = lastDumped;
+                lastDumped = now;
+            }
+            Files.writeString(file, now.format() + now.throughputSince(previous).format(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            // monitoring must never take the application down; try again next round
+            System.err.println("Failed to write DB metrics to " + file + ": " + ex.getMessage());
+        }
+    }
+
+    /** Stops the periodic dump and unregisters the MBean, if any. */
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException ignored) {
+            }
+            mbeanName = null;
+        }
+    }
+
+    private Map<String, Long> perOperation(ToLongFunction<OperationSnapshot> value) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (OperationSnapshot op : snapshot().operations()) map.put(op.name(), value.applyAsLong(op));
+        return map;
+    }
+
+    private Map<String, Double> perOperationMicros(ToDoubleFunction<LatencyHistogram.Snapshot> value) {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (OperationSnapshot op : snapshot().operations()) map.put(op.name(), value.applyAsDouble(op.latency()) / 1000);
+        return map;
+    }
+
+    private class MXBeanImpl implements DbMetricsMXBean {
+        @Override
+        public Map<String, Long> getCalls() {
+            return perOperation(OperationSnapshot::calls);
+        }
+
+        @Override
+        public Map<String, Long> getErrors() {
+            return perOperation(OperationSnapshot::errors);
+        }
+
+        @Override
+        public Map<String, Long> getRows() {
+            return perOperation(OperationSnapshot::rows);
+        }
+
+        @Override
+        public Map<String, Double> getMeanMicros() {
+            return perOperationMicros(LatencyHistogram.Snapshot::mean);
+        }
+
+        @Override
+        public Map<String, Double> getP99Micros() {
+            return perOperationMicros(LatencyHistogram.Snapshot::p99);
+        }
+
+        @Override
+        public Map<String, Double> getMaxMicros() {
+            return perOperationMicros(LatencyHistogram.Snapshot::max);
+        }
+
+        @Override
+        public long getRowsRead() {
+            return snapshot().rowsRead();
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return snapshot().rowsWritten();
+        }
+
+        @Override
+        public double getReadsPerSecond() {
+            return throughput().readsPerSecond();
+        }
+
+        @Override
+        public double getWritesPerSecond() {
+            return throughput().writesPerSecond();
+        }
+
+        @Override
+        public long getConnectionWaits() {
+            return connectionWaits.getCount();
+        }
+
+        @Override
+        public double getConnectionWaitP99Micros() {
+            return connectionWaits.snapshot().p99() / 1000.0;
+        }
+
+        @Override
+        public String dump() {
+            return snapshot().format();
+        }
+    }
+}
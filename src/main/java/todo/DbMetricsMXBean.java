@@ -0,0 +1,38 @@
+package todo;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link DbMetrics}. Maps are keyed by Db method name; latencies are in microseconds.
+ */
+public interface DbMetricsMXBean {
+
+    Map<String, Long> getCalls();
+
+    Map<String, Long> getErrors();
+
+    Map<String, Long> getRows();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    long getRowsRead();
+
+    long getRowsWritten();
+
+    /** Average rate since the metrics were created. */
+    double getReadsPerSecond();
+
+    /** Average rate since the metrics were created. */
+    double getWritesPerSecond();
+
+    long getConnectionWaits();
+
+    double getConnectionWaitP99Micros();
+
+    /** The current snapshot as text, one line per operation. */
+    String dump();
+}
@@ -0,0 +1,219 @@
+package todo;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The single writer of a {@link Db}: every mutation is queued here and run, in submission
+ * order, by one dedicated thread on the pool's writer connection. Callers never compete for
+ * SQLite's write lock, so writes from many threads cannot run into SQLITE_BUSY against each
+ * other; they wait in the queue instead, and a burst of writes reuses one writer lease.
+ * <p>
+ * The queue is a lock-free multi-producer single-consumer linked list: producers swap
+ * themselves in as the tail with one atomic exchange, and only the writer thread moves the
+ * head. The writer parks when the queue is empty and producers unpark it.
+ * <p>
+ * Work submitted from the writer thread itself (a write issued inside another write) runs
+ * at once on the current lease instead of deadlocking on the queue.
+ */
+public class DbWriter implements AutoCloseable {
+
+    /** One unit of write work, run on the writer connection. */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(ConnectionPool.Lease lease) throws SQLException;
+    }
+
+    private static final class Node {
+        final Work<?> work;
+        final CompletableFuture<Object> result;
+        volatile Node next;
+
+        Node(Work<?> work) {
+            this.work = work;
+            this.result = work == null ? null : new CompletableFuture<>();
+        }
+    }
+
+    // at most this many queued writes share one writer lease before it is returned
+    private static final int MAX_WRITES_PER_LEASE = 1024;
+
+    private final ConnectionPool pool;
+    private final Thread thread;
+    private final AtomicReference<Node> tail;
+    // consumer side only: the node before the next one to run
+    private Node head;
+    private volatile boolean waiting;
+    private volatile boolean closed;
+    // set on the writer thread while it holds the lease
+    private ConnectionPool.Lease current;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    private DbWriter(ConnectionPool pool, String name) {
+        this.pool = pool;
+        Node stub = new Node(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+        this.thread = new Thread(this::run, "db-writer-" + name);
+        thread.setDaemon(true);
+    }
+
+    /** Creates a writer on {@code pool} and starts its thread; {@link #close()} stops it. */
+    public static DbWriter start(ConnectionPool pool, String name) {
+        DbWriter writer = new DbWriter(pool, name);
+        // started only once the writer is fully constructed
+        writer.thread.start();
+        return writer;
+    }
+
+    /**
+     * Runs {@code work} on the writer thread and waits for its result. SQL and runtime errors
+     * of the work are rethrown to the caller as they are.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Work<T> work) throws SQLException {
+        if (Thread.currentThread() == thread) return work.run(current);
+        // counted before the closed check, so close() waits for a write that got past it
+        submitted.incrementAndGet();
+        if (closed) {
+            submitted.decrementAndGet();
+            throw new SQLException("Database writer is closed");
+        }
+        Node node = new Node(work);
+        Node prev = tail.getAndSet(node);
+        prev.next = node;
+        maxQueueDepth.accumulateAndGet(getQueueDepth(), Math::max);
+        if (waiting) LockSupport.unpark(thread);
+        try {
+            return (T) node.result.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException rt) throw rt;
+            if (cause instanceof Error err) throw err;
+            throw ex;
+        }
+    }
+
+    private Node poll() {
+        Node next = head.next;
+        if (next != null) head = next;
+        return next;
+    }
+
+    private void run() {
+        while (true) {
+            Node node = poll();
+            if (node == null) {
+                if (closed) {
+                    if (getQueueDepth() == 0) return;
+                    // a producer is between counting its write and linking it
+                    Thread.onSpinWait();
+                    continue;
+                }
+                waiting = true;
+                // recheck after publishing "waiting" so a producer that linked meanwhile is not missed
+                if (head.next == null && !closed) LockSupport.park(this);
+                waiting = false;
+                continue;
+            }
+            long start = System.nanoTime();
+            try (ConnectionPool.Lease lease = pool.write()) {
+                leases.incrementAndGet();
+                current = lease;
+                int n = 0;
+                do {
+                    runOne(node, lease);
+                } while (++n < MAX_WRITES_PER_LEASE && (node = poll()) != null);
+            } catch (SQLException | RuntimeException ex) {
+                // no lease: fail the write that was waiting for it, the next ones try again
+                if (!node.result.isDone()) fail(node, ex);
+            } finally {
+                current = null;
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void runOne(Node node, ConnectionPool.Lease lease) {
+        try {
+            Object value = node.work.run(lease);
+            completed.incrementAndGet();
+            node.result.complete(value);
+        } catch (SQLException | RuntimeException | Error ex) {
+            fail(node, ex);
+        }
+    }
+
+    private void fail(Node node, Throwable ex) {
+        failed.incrementAndGet();
+        node.result.completeExceptionally(ex);
+    }
+
+    /** The writer lease when called on the writer thread while it runs a write, otherwise null. */
+    public ConnectionPool.Lease currentLease() {
+        return Thread.currentThread() == thread ? current : null;
+    }
+
+    /** Writes queued or running right now. */
+    public long getQueueDepth() {
+        return submitted.get() - completed.get() - failed.get();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /** Writer leases taken; fewer than completed writes when writes queued up behind each other. */
+    public long getLeases() {
+        return leases.get();
+    }
+
+    /** Share of wall time since start the writer spent running writes, 0 to 1. */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : Math.min(1.0, (double) busyNanos.get() / elapsed);
+    }
+
+    /** Completed writes per second since start. */
+    public double getWritesPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : completed.get() * 1e9 / elapsed;
+    }
+
+    /** Runs the writes already queued, then stops the writer thread. Later writes fail. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == thread) return;
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
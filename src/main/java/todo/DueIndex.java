@@ -0,0 +1,123 @@
+package todo;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Sorted in-memory index of task due dates, used by {@link TaskDao} for range queries.
+ * Every task with an ISO due date is kept as one {@code long} key, due epoch day in the high
+ * 32 bits and id in the low 32, so the keys sort by date and then id. Open tasks (not DONE
+ * and not ABANDONED) are also kept in a second set, so "overdue" and "next due" never step
+ * over finished tasks. Lookups and updates are O(log n), a range query O(log n + results).
+ * <p>
+ * The index starts empty and unloaded; {@link #ensureLoaded(Runnable)} fills it once and until
+ * then {@link #put} and {@link #remove} are ignored, since the load will see those writes.
+ * All methods are thread-safe.
+ */
+public class DueIndex {
+
+    private final TreeSet<Long> all = new TreeSet<>();
+    private final TreeSet<Long> open = new TreeSet<>();
+    // current key of each indexed id
+    private final HashMap<Integer, Long> keys = new HashMap<>();
+    private boolean loaded;
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Runs {@code loader} unless the index is already loaded. The loader calls {@link #add}
+     * for every task; writes reported while it runs wait for it and are applied afterwards.
+     */
+    public synchronized void ensureLoaded(Runnable loader) {
+        if (loaded) return;
+        clearEntries();
+        loader.run();
+        loaded = true;
+    }
+
+    /** Drops every entry; the next {@link #ensureLoaded(Runnable)} loads again. */
+    public synchronized void invalidate() {
+        loaded = false;
+        clearEntries();
+    }
+
+    /** Called by the loader for one task. */
+    public synchronized void add(int id, int epochDay, TaskStatus status) {
+        index(id, epochDay, status);
+    }
+
+    /** Reports a created or updated task; a task without an ISO due date leaves the index. */
+    public synchronized void put(Task task) {
+        if (!loaded) return;
+        LocalDate due = task.getDueDate();
+        if (due == null) unindex(task.getId());
+        else index(task.getId(), (int) due.toEpochDay(), task.getStatus());
+    }
+
+    public synchronized void remove(int id) {
+        if (loaded) unindex(id);
+    }
+
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    /** Ids of up to {@code limit} tasks due from {@code from} to {@code to}, both inclusive, earliest first. */
+    public synchronized int[] between(LocalDate from, LocalDate to, int limit) {
+        if (from.isAfter(to)) return new int[0];
+        return ids(all.subSet(key(from.toEpochDay(), 0), true, key(to.toEpochDay(), -1), true), limit);
+    }
+
+    /** Ids of up to {@code limit} open tasks due before {@code day}, earliest first. */
+    public synchronized int[] openBefore(LocalDate day, int limit) {
+        return ids(open.headSet(key(day.toEpochDay(), 0), false), limit);
+    }
+
+    /** Ids of up to {@code limit} open tasks due on or after {@code day}, earliest first. */
+    public synchronized int[] openFrom(LocalDate day, int limit) {
+        return ids(open.tailSet(key(day.toEpochDay(), 0), true), limit);
+    }
+
+    private void index(int id, long epochDay, TaskStatus status) {
+        unindex(id);
+        long key = key(epochDay, id);
+        keys.put(id, key);
+        all.add(key);
+        if (status != TaskStatus.DONE && status != TaskStatus.ABANDONED) open.add(key);
+    }
+
+    private void unindex(int id) {
+        Long key = keys.remove(id);
+        if (key != null) {
+            all.remove(key);
+            open.remove(key);
+        }
+    }
+
+    private void clearEntries() {
+        all.clear();
+        open.clear();
+        keys.clear();
+    }
+
+    // ids are compared as unsigned in the low half, so id -1 is the largest key of a day
+    private static long key(long epochDay, int id) {
+        return (epochDay << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int[] ids(NavigableSet<Long> range, int limit) {
+        int[] ids = new int[Math.min(limit, 1024)];
+        int n = 0;
+        for (long key : range) {
+            if (n == limit) break;
+            if (n == ids.length) ids = Arrays.copyOf(ids, Math.min(limit, ids.length * 2));
+            ids[n++] = (int) key;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+}
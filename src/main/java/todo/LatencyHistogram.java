@@ -0,0 +1,92 @@
+package todo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in the spirit of HdrHistogram: values (nanoseconds) fall into
+ * log-linear buckets, 32 per power of two, so any recorded value is reported with at most
+ * ~3% error from 1ns up to hours, in a fixed array of 1888 counters. {@link #record(long)}
+ * does not allocate and never blocks; snapshots may be taken concurrently with recording
+ * (they are then not exactly point-in-time, which is fine for monitoring).
+ */
+public class LatencyHistogram {
+
+    public record Snapshot(long count, long min, long max, double mean, long p50, long p90, long p99, long p999) {
+
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // values below 2 * SUB_BUCKETS get an exact bucket each
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+        }
+        while (nanos < (m = min.get()) && !min.compareAndSet(m, nanos)) {
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    // highest value that falls into the bucket, so percentiles never under-report
+    static long bucketUpperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public Snapshot snapshot() {
+        long[] c = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            c[i] = counts.get(i);
+            total += c[i];
+        }
+        if (total == 0) return Snapshot.EMPTY;
+        long maxValue = max.get();
+        return new Snapshot(total, min.get(), maxValue, (double) sum.get() / count.get(),
+                percentile(c, total, 0.50, maxValue), percentile(c, total, 0.90, maxValue),
+                percentile(c, total, 0.99, maxValue), percentile(c, total, 0.999, maxValue));
+    }
+
+    private static long percentile(long[] c, long total, double p, long maxValue) {
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < c.length; i++) {
+            seen += c[i];
+            if (seen >= rank) return Math.min(bucketUpperBound(i), maxValue);
+        }
+        return maxValue;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+}
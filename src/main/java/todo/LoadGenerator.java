@@ -0,0 +1,429 @@
+package todo;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Load generator and soak harness for {@link TaskDao} and {@link CategoryDao}. Operations are
+ * issued open-loop at a target rate, each on its own virtual thread, drawn from a weighted mix
+ * of creates, reads, updates, deletes, searches and category reads. Latency is measured from
+ * the moment an operation was due, not when it actually started, so a stalled database shows
+ * up as latency instead of silently lowering the rate. At most {@code concurrency} operations
+ * are in flight; beyond that the schedule falls behind and the lag is reported.
+ * <p>
+ * Per operation it counts calls, errors and busy errors (SQLITE_BUSY / SQLITE_LOCKED, or a
+ * timed-out connection lease) and keeps latency percentiles, both per report interval and for
+ * the whole run. Run from the command line with {@code key=value} arguments, e.g.
+ * {@code LoadGenerator rate=500 duration=600 mix=create:10,read:60,update:20,delete:5,search:5};
+ * the exit code is 1 when the error rate ends above {@code maxErrorRate}.
+ */
+public class LoadGenerator {
+
+    public enum Op {
+        CREATE, READ, UPDATE, DELETE, SEARCH, CATEGORIES
+    }
+
+    public static final String CATEGORY = "Load";
+
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    // ids of tasks this run knows about; random picks may hit deleted ones, like racing clients do
+    private static final int ID_RING = 1 << 16;
+
+    public static class Config {
+        private double rate = 200;
+        private int concurrency = 64;
+        private Duration duration = Duration.ofSeconds(60);
+        private Duration reportInterval = Duration.ofSeconds(10);
+        private final EnumMap<Op, Integer> mix = new EnumMap<>(Map.of(
+                Op.CREATE, 10, Op.READ, 55, Op.UPDATE, 20, Op.DELETE, 5, Op.SEARCH, 5, Op.CATEGORIES, 5));
+        private long seed = System.nanoTime();
+        private double maxErrorRate = 0.01;
+        private String connectionString;
+
+        /** Parses {@code key=value} arguments; unknown keys are an error. */
+        public static Config parse(String... args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) throw new IllegalArgumentException("Expected key=value: " + arg);
+                String key = arg.substring(0, eq);
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "rate" -> config.setRate(Double.parseDouble(value));
+                    case "concurrency" -> config.setConcurrency(Integer.parseInt(value));
+                    case "duration" -> config.setDuration(Duration.ofSeconds(Long.parseLong(value)));
+                    case "report" -> config.setReportInterval(Duration.ofSeconds(Long.parseLong(value)));
+                    case "mix" -> config.setMix(value);
+                    case "seed" -> config.setSeed(Long.parseLong(value));
+                    case "maxErrorRate" -> config.setMaxErrorRate(Double.parseDouble(value));
+                    case "db" -> config.setConnectionString(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + key);
+                }
+            }
+            return config;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            if (rate <= 0) throw new IllegalArgumentException("Rate must be positive");
+            // the schedule advances in whole nanoseconds
+            if (rate > 1e9) throw new IllegalArgumentException("Rate must be at most 1e9 ops/s");
+            this.rate = rate;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be at least 1");
+            this.concurrency = concurrency;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public void setDuration(Duration duration) {
+            this.duration = duration;
+        }
+
+        public Duration getReportInterval() {
+            return reportInterval;
+        }
+
+        public void setReportInterval(Duration reportInterval) {
+            this.reportInterval = reportInterval;
+        }
+
+        public Map<Op, Integer> getMix() {
+            return mix;
+        }
+
+        /** Weights like {@code create:10,read:60}; operations left out get weight 0. */
+        public void setMix(String spec) {
+            EnumMap<Op, Integer> parsed = new EnumMap<>(Op.class);
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split(":");
+                if (kv.length != 2) throw new IllegalArgumentException("Expected op:weight: " + part);
+                int weight = Integer.parseInt(kv[1].trim());
+                if (weight < 0) throw new IllegalArgumentException("Negative weight: " + part);
+                parsed.put(Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+            if (parsed.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+                throw new IllegalArgumentException("Mix has no operations: " + spec);
+            }
+            mix.clear();
+            for (Op op : Op.values()) mix.put(op, parsed.getOrDefault(op, 0));
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        public double getMaxErrorRate() {
+            return maxErrorRate;
+        }
+
+        public void setMaxErrorRate(double maxErrorRate) {
+            this.maxErrorRate = maxErrorRate;
+        }
+
+        /** Database to load; null for the application's default database. */
+        public String getConnectionString() {
+            return connectionString;
+        }
+
+        public void setConnectionString(String connectionString) {
+            this.connectionString = connectionString;
+        }
+    }
+
+    /** Results of one operation type over an interval or the whole run. */
+    public record OpReport(Op op, long calls, long errors, long busy, double perSecond, LatencyHistogram.Snapshot latency) {
+
+        public double errorRate() {
+            return calls == 0 ? 0 : (double) errors / calls;
+        }
+    }
+
+    public record Report(Duration elapsed, List<OpReport> operations, long maxLagMillis) {
+
+        public long calls() {
+            return operations.stream().mapToLong(OpReport::calls).sum();
+        }
+
+        public long errors() {
+            return operations.stream().mapToLong(OpReport::errors).sum();
+        }
+
+        public long busy() {
+            return operations.stream().mapToLong(OpReport::busy).sum();
+        }
+
+        public double errorRate() {
+            long calls = calls();
+            return calls == 0 ? 0 : (double) errors() / calls;
+        }
+
+        /** One line per operation with calls, latencies in milliseconds; busy and error counts are flagged with "!". */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            double seconds = elapsed.toNanos() / 1e9;
+            sb.append(String.format("%.1fs calls=%d ops/s=%.1f errors=%d busy=%d lag=%dms%n",
+                    seconds, calls(), calls() / Math.max(seconds, 1e-9), errors(), busy(), maxLagMillis));
+            for (OpReport r : operations) {
+                if (r.calls() == 0) continue;
+                LatencyHistogram.Snapshot l = r.latency();
+                sb.append(String.format("  %-10s calls=%d ops/s=%.1f p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f ms",
+                        r.op(), r.calls(), r.perSecond(), l.p50() / 1e6, l.p90() / 1e6, l.p99() / 1e6, l.p999() / 1e6, l.max() / 1e6));
+                if (r.errors() > 0) sb.append(String.format(" ! errors=%d (%.2f%%)", r.errors(), r.errorRate() * 100));
+                if (r.busy() > 0) sb.append(" ! busy=").append(r.busy());
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    // counters of one operation type; the interval histogram is swapped out on every report
+    private static final class Stats {
+        final LatencyHistogram total = new LatencyHistogram();
+        final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong busy = new AtomicLong();
+        long reportedCalls, reportedErrors, reportedBusy;
+
+        void record(long nanos, Throwable error) {
+            total.record(nanos);
+            interval.get().record(nanos);
+            if (error != null) {
+                errors.incrementAndGet();
+                if (isBusy(error)) busy.incrementAndGet();
+            }
+        }
+    }
+
+    private final TaskDao taskDao;
+    private final CategoryDao categoryDao;
+    private final Config config;
+    private final EnumMap<Op, Stats> stats = new EnumMap<>(Op.class);
+    private final Op[] choices;
+    private final AtomicIntegerArray ids = new AtomicIntegerArray(ID_RING);
+    private final AtomicLong knownIds = new AtomicLong();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    public LoadGenerator(TaskDao taskDao, CategoryDao categoryDao, Config config) {
+        this.taskDao = taskDao;
+        this.categoryDao = categoryDao;
+        this.config = config;
+        for (Op op : Op.values()) stats.put(op, new Stats());
+        // one slot per unit of weight, so a uniform pick follows the mix
+        List<Op> slots = new ArrayList<>();
+        config.getMix().forEach((op, weight) -> {
+            for (int i = 0; i < weight; i++) slots.add(op);
+        });
+        this.choices = slots.toArray(new Op[0]);
+    }
+
+    /**
+     * Runs the configured load for the configured duration, handing a report of every
+     * interval to {@code onInterval}, and returns the report of the whole run.
+     */
+    public Report run(Consumer<Report> onInterval) throws InterruptedException {
+        prepare();
+        SplittableRandom random = new SplittableRandom(config.getSeed());
+        Semaphore inFlight = new Semaphore(config.getConcurrency());
+        long periodNanos = (long) (1e9 / config.getRate());
+        long start = System.nanoTime();
+        long end = start + config.getDuration().toNanos();
+        long reportNanos = config.getReportInterval().toNanos();
+        long nextReport = start + reportNanos;
+        long lastReport = start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long due = start; due < end; due += periodNanos) {
+                long now;
+                while ((now = System.nanoTime()) < due) LockSupport.parkNanos(due - now);
+                if (now >= nextReport) {
+                    onInterval.accept(intervalReport(now - lastReport));
+                    lastReport = now;
+                    nextReport += reportNanos;
+                }
+                inFlight.acquire();
+                long lag = System.nanoTime() - due;
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+                Op op = choices[random.nextInt(choices.length)];
+                SplittableRandom opRandom = random.split();
+                long scheduled = due;
+                executor.execute(() -> {
+                    Throwable error = null;
+                    try {
+                        execute(op, opRandom);
+                    } catch (RuntimeException ex) {
+                        error = ex;
+                    } finally {
+                        stats.get(op).record(System.nanoTime() - scheduled, error);
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long now = System.nanoTime();
+        if (now - lastReport > 0 && reportNanos < config.getDuration().toNanos()) {
+            onInterval.accept(intervalReport(now - lastReport));
+        }
+        return totalReport(now - start);
+    }
+
+    // the category the created tasks go into, and the ids already in the table
+    private void prepare() {
+        if (!categoryDao.exists(CATEGORY)) {
+            try {
+                categoryDao.createCategory(new Category(CATEGORY, "load generator"));
+            } catch (RuntimeException ex) {
+                // another generator may have created it meanwhile
+                if (!categoryDao.exists(CATEGORY)) throw ex;
+            }
+        }
+        int after = 0;
+        List<Task> page;
+        while (knownIds.get() < ID_RING && !(page = taskDao.getTasksAfter(after, TaskDao.DEFAULT_PAGE_SIZE)).isEmpty()) {
+            for (Task t : page) remember(t.getId());
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private void execute(Op op, SplittableRandom random) {
+        switch (op) {
+            case CREATE -> remember(taskDao.createTask(randomTask(0, random)));
+            case READ -> taskDao.getTask(randomId(random));
+            case UPDATE -> {
+                int id = randomId(random);
+                if (id > 0) taskDao.updateTask(randomTask(id, random));
+            }
+            case DELETE -> {
+                int id = randomId(random);
+                if (id > 0) taskDao.deleteTask(id);
+            }
+            case SEARCH -> taskDao.searchTasks(WORDS[random.nextInt(WORDS.length)], 20);
+            case CATEGORIES -> categoryDao.getAllCategories();
+        }
+    }
+
+    private Task randomTask(int id, SplittableRandom random) {
+        String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + created.incrementAndGet();
+        String due = random.nextInt(4) == 0 ? "" : LocalDate.now().plusDays(random.nextInt(-30, 60)).toString();
+        return new Task(id, name, "load test task", CATEGORY, STATUSES[random.nextInt(STATUSES.length)], due);
+    }
+
+    private void remember(int id) {
+        long n = knownIds.getAndIncrement();
+        ids.set((int) (n % ID_RING), id);
+    }
+
+    private int randomId(SplittableRandom random) {
+        long n = Math.min(knownIds.get(), ID_RING);
+        return n == 0 ? 0 : ids.get(random.nextInt((int) n));
+    }
+
+    private Report intervalReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        List<OpReport> reports = new ArrayList<>();
+        for (Op op : Op.values()) {
+            Stats s = stats.get(op);
+            LatencyHistogram.Snapshot latency = s.interval.getAndSet(new LatencyHistogram()).snapshot();
+            long calls = s.total.getCount(), errors = s.errors.get(), busy = s.busy.get();
+            reports.add(new OpReport(op, calls - s.reportedCalls, errors - s.reportedErrors, busy - s.reportedBusy,
+                    (calls - s.reportedCalls) / seconds, latency));
+            s.reportedCalls = calls;
+            s.reportedErrors = errors;
+            s.reportedBusy = busy;
+        }
+        return new Report(Duration.ofNanos(elapsedNanos), reports, TimeUnit.NANOSECONDS.toMillis(maxLagNanos.getAndSet(0)));
+    }
+
+    private Report totalReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        List<OpReport> reports = new ArrayList<>();
+        for (Op op : Op.values()) {
+            Stats s = stats.get(op);
+            LatencyHistogram.Snapshot latency = s.total.snapshot();
+            reports.add(new OpReport(op, latency.count(), s.errors.get(), s.busy.get(), latency.count() / seconds, latency));
+        }
+        return new Report(Duration.ofNanos(elapsedNanos), reports, TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+    }
+
+    /**
+     * True for lock contention: SQLITE_BUSY (5) or SQLITE_LOCKED (6) anywhere in the cause
+     * chain, or the pool giving up waiting for a connection.
+     */
+    static boolean isBusy(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                int code = sql.getErrorCode() & 0xFF;
+                if (code == 5 || code == 6) return true;
+                String message = String.valueOf(sql.getMessage());
+                if (message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED")
+                        || message.contains("waiting for a database connection")) return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = Config.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: LoadGenerator [rate=ops/s] [concurrency=N] [duration=s] [report=s]"
+                    + " [mix=create:10,read:55,update:20,delete:5,search:5,categories:5] [seed=N] [maxErrorRate=0.01] [db=jdbc:sqlite:...]");
+            System.exit(2);
+            return;
+        }
+        int exitCode = 0;
+        try (Db db = config.getConnectionString() == null ? new Db() : new Db(config.getConnectionString())) {
+            LoadGenerator generator = new LoadGenerator(new TaskDao(db), new CategoryDao(db), config);
+            Report total = generator.run(r -> System.out.print(r.format()));
+            System.out.println("Total");
+            System.out.print(total.format());
+            DbWriter writer = db.getWriter();
+            System.out.printf("writer: completed=%d failed=%d leases=%d maxQueue=%d utilization=%.1f%%%n",
+                    writer.getCompleted(), writer.getFailed(), writer.getLeases(), writer.getMaxQueueDepth(), writer.getUtilization() * 100);
+            if (total.errorRate() > config.getMaxErrorRate()) {
+                System.err.printf("Error rate %.2f%% is above %.2f%%%n", total.errorRate() * 100, config.getMaxErrorRate() * 100);
+                exitCode = 1;
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            exitCode = 1;
+        }
+        // only once the database is closed
+        if (exitCode != 0) System.exit(exitCode);
+    }
+}
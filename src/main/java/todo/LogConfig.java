@@ -0,0 +1,82 @@
+package todo;
+
+import java.nio.file.Path;
+
+/**
+ * Tunables for {@link LogStorage}. Defaults can be overridden with system properties
+ * (e.g. {@code -Dtodo.log.sync=true}) through {@link #fromSystemProperties()}.
+ */
+public class LogConfig {
+
+    private Path directory = Path.of(System.getProperty("user.home"), "testy-crud-log");
+    private int segmentBytes = 64 << 20;
+    private boolean sync;
+    private long compactionIntervalSeconds = 60;
+    private double compactionGarbageRatio = 0.5;
+
+    public static LogConfig fromSystemProperties() {
+        LogConfig config = new LogConfig();
+        String dir = System.getProperty("todo.log.dir");
+        if (dir != null) config.setDirectory(Path.of(dir));
+        config.setSegmentBytes(Integer.getInteger("todo.log.segmentBytes", config.getSegmentBytes()));
+        config.setSync(Boolean.parseBoolean(System.getProperty("todo.log.sync", String.valueOf(config.isSync()))));
+        config.setCompactionIntervalSeconds(Long.getLong("todo.log.compactionIntervalSeconds", config.getCompactionIntervalSeconds()));
+        String ratio = System.getProperty("todo.log.compactionGarbageRatio");
+        if (ratio != null) config.setCompactionGarbageRatio(Double.parseDouble(ratio));
+        return config;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** Directory holding the segment files; created on open. */
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /** Size of one memory-mapped segment file; also the largest transaction that can be written. */
+    public void setSegmentBytes(int segmentBytes) {
+        if (segmentBytes < 4096) throw new IllegalArgumentException("Segment size must be at least 4096 bytes");
+        if (segmentBytes > 1 << 30) throw new IllegalArgumentException("Segment size must be at most 1 GiB");
+        this.segmentBytes = segmentBytes;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Force every commit to disk before it returns. Off by default, like the {@code balanced}
+     * SQLite profile: a process crash loses nothing, a power loss may drop the last commits.
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    public long getCompactionIntervalSeconds() {
+        return compactionIntervalSeconds;
+    }
+
+    /** How often the background compactor checks the garbage ratio; 0 turns it off. */
+    public void setCompactionIntervalSeconds(long compactionIntervalSeconds) {
+        if (compactionIntervalSeconds < 0) throw new IllegalArgumentException("Compaction interval must not be negative");
+        this.compactionIntervalSeconds = compactionIntervalSeconds;
+    }
+
+    public double getCompactionGarbageRatio() {
+        return compactionGarbageRatio;
+    }
+
+    /** Share of dead bytes in the sealed segments at which the background compactor rewrites them. */
+    public void setCompactionGarbageRatio(double compactionGarbageRatio) {
+        if (compactionGarbageRatio <= 0 || compactionGarbageRatio > 1) {
+            throw new IllegalArgumentException("Compaction garbage ratio must be in (0, 1]");
+        }
+        this.compactionGarbageRatio = compactionGarbageRatio;
+    }
+}
@@ -0,0 +1,194 @@
+package todo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * One entry of the {@link LogStorage} segment log: a task or category write, which is also
+ * the {@link ChangeEvent} it publishes. For deletes {@code task}/{@code category} hold the row
+ * as it was. {@code createdSequence} is the sequence number of the category's CREATED event,
+ * so categories can be listed in insertion order after the older records are compacted away.
+ * <p>
+ * On disk a record is
+ * <pre>
+ *   int  length of the body, the high bit set on the last record of a transaction
+ *   int  CRC32C of the body
+ *   body: byte kind, long sequence, long timestampMillis, then
+ *         task:     int id, str name, str content, str categoryName, str status, str due
+ *         category: str name, str description, long createdSequence
+ * </pre>
+ * where {@code str} is an int byte count (-1 for null) followed by UTF-8 bytes. The reads
+ * work on absolute positions of a shared buffer, so they are safe from any thread.
+ */
+record LogRecord(byte kind, long sequence, long timestampMillis, Task task, Category category, long createdSequence) {
+
+    static final byte TASK_CREATED = 1;
+    static final byte TASK_UPDATED = 2;
+    static final byte TASK_DELETED = 3;
+    static final byte CATEGORY_CREATED = 4;
+    static final byte CATEGORY_UPDATED = 5;
+    static final byte CATEGORY_DELETED = 6;
+
+    static final int HEADER_BYTES = 8;
+    private static final int COMMIT = 0x8000_0000;
+    private static final int MIN_BODY = 1 + 8 + 8;
+
+    static LogRecord task(byte kind, long sequence, Task task) {
+        return new LogRecord(kind, sequence, System.currentTimeMillis(), task, null, 0);
+    }
+
+    static LogRecord category(byte kind, long sequence, Category category, long createdSequence) {
+        return new LogRecord(kind, sequence, System.currentTimeMillis(), null, category, createdSequence);
+    }
+
+    boolean isTask() {
+        return isTask(kind);
+    }
+
+    static boolean isTask(byte kind) {
+        return kind <= TASK_DELETED;
+    }
+
+    static boolean isDelete(byte kind) {
+        return kind == TASK_DELETED || kind == CATEGORY_DELETED;
+    }
+
+    ChangeEvent toEvent() {
+        ChangeEvent.Type type = switch (kind) {
+            case TASK_CREATED, CATEGORY_CREATED -> ChangeEvent.Type.CREATED;
+            case TASK_UPDATED, CATEGORY_UPDATED -> ChangeEvent.Type.UPDATED;
+            default -> ChangeEvent.Type.DELETED;
+        };
+        return new ChangeEvent(sequence, timestampMillis, isTask() ? ChangeEvent.Entity.TASK : ChangeEvent.Entity.CATEGORY,
+                type, task, category);
+    }
+
+    /** The record with its header; {@code commit} marks it as the last one of its transaction. */
+    byte[] encode(boolean commit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(0); // room for the header
+            out.writeByte(kind);
+            out.writeLong(sequence);
+            out.writeLong(timestampMillis);
+            if (isTask()) {
+                out.writeInt(task.getId());
+                writeString(out, task.getName());
+                writeString(out, task.getContent());
+                writeString(out, task.getCategoryName());
+                writeString(out, task.getStatus() == null ? null : task.getStatus().getCode());
+                writeString(out, task.getDue());
+            } else {
+                writeString(out, category.getName());
+                writeString(out, category.getDescription());
+                out.writeLong(createdSequence);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // cannot happen in memory
+        }
+        byte[] record = bytes.toByteArray();
+        int bodyLength = record.length - HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(record, HEADER_BYTES, bodyLength);
+        ByteBuffer.wrap(record).putInt(commit ? bodyLength | COMMIT : bodyLength).putInt((int) crc.getValue());
+        return record;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /** True if nothing was ever written at {@code pos}: the clean end of a segment. */
+    static boolean isEmpty(ByteBuffer buf, int pos, int limit) {
+        return pos + HEADER_BYTES > limit || buf.getInt(pos) == 0;
+    }
+
+    /**
+     * Total length of the record at {@code pos} if it lies within {@code limit} and its
+     * checksum matches, otherwise -1 (a torn or corrupt write).
+     */
+    static int validLength(ByteBuffer buf, int pos, int limit) {
+        if (pos + HEADER_BYTES > limit) return -1;
+        int body = buf.getInt(pos) & ~COMMIT;
+        if (body < MIN_BODY || body > limit - pos - HEADER_BYTES) return -1;
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(pos + HEADER_BYTES, body));
+        return (int) crc.getValue() == buf.getInt(pos + 4) ? HEADER_BYTES + body : -1;
+    }
+
+    /** Total length of the record at {@code pos}, unchecked. */
+    static int length(ByteBuffer buf, int pos) {
+        return HEADER_BYTES + (buf.getInt(pos) & ~COMMIT);
+    }
+
+    static boolean isCommit(ByteBuffer buf, int pos) {
+        return (buf.getInt(pos) & COMMIT) != 0;
+    }
+
+    /** Marks a copied record (as from {@link #copy}) as a transaction of its own. */
+    static void setCommit(byte[] record) {
+        ByteBuffer b = ByteBuffer.wrap(record);
+        b.putInt(0, b.getInt(0) | COMMIT);
+    }
+
+    static byte kind(ByteBuffer buf, int pos) {
+        return buf.get(pos + HEADER_BYTES);
+    }
+
+    static long sequence(ByteBuffer buf, int pos) {
+        return buf.getLong(pos + HEADER_BYTES + 1);
+    }
+
+    /** Id of the task record at {@code pos}. */
+    static int taskId(ByteBuffer buf, int pos) {
+        return buf.getInt(pos + HEADER_BYTES + 17);
+    }
+
+    static byte[] copy(ByteBuffer buf, int pos) {
+        byte[] record = new byte[length(buf, pos)];
+        buf.get(pos, record);
+        return record;
+    }
+
+    static LogRecord read(ByteBuffer buf, int pos) {
+        int[] at = {pos + HEADER_BYTES};
+        byte kind = buf.get(at[0]++);
+        long sequence = buf.getLong(at[0]);
+        long timestamp = buf.getLong(at[0] + 8);
+        at[0] += 16;
+        if (isTask(kind)) {
+            int id = buf.getInt(at[0]);
+            at[0] += 4;
+            String name = readString(buf, at);
+            String content = readString(buf, at);
+            String categoryName = readString(buf, at);
+            TaskStatus status = TaskStatus.fromCode(readString(buf, at));
+            String due = readString(buf, at);
+            return new LogRecord(kind, sequence, timestamp, new Task(id, name, content, categoryName, status, due), null, 0);
+        }
+        String name = readString(buf, at);
+        String description = readString(buf, at);
+        return new LogRecord(kind, sequence, timestamp, null, new Category(name, description), buf.getLong(at[0]));
+    }
+
+    private static String readString(ByteBuffer buf, int[] at) {
+        int n = buf.getInt(at[0]);
+        at[0] += 4;
+        if (n < 0) return null;
+        byte[] b = new byte[n];
+        buf.get(at[0], b);
+        at[0] += n;
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
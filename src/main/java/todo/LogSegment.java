@@ -0,0 +1,228 @@
+package todo;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One memory-mapped file of the {@link LogStorage} log. The file starts with a header
+ * <pre>
+ *   int magic, int version, int sealedEnd, int reserved,
+ *   long lastTaskId, long lastSequence, long trimmedTaskSequence, long trimmedCategorySequence
+ * </pre>
+ * followed by {@link LogRecord}s. The counters are the engine's high-water marks when the
+ * segment was created (the trim points, one per change-log entity, are also updated in
+ * place), so ids and sequence numbers are never reused even after every record carrying
+ * them is compacted away.
+ * {@code sealedEnd} is 0 while records are appended and is set, and forced to disk, once the
+ * segment is full: records up to it are complete and must pass their checksums.
+ * <p>
+ * Records only go in at {@link #getEnd()} by the single writer, and readers only look below
+ * it, so the mapped buffer is shared without locking. Records within a segment are in
+ * increasing sequence order; a sparse map from sequence to position lets change-log reads
+ * start near the first record they need.
+ */
+final class LogSegment {
+
+    static final int HEADER_BYTES = 48;
+    private static final int MAGIC = 0x544C_4F47; // "TLOG"
+    private static final int VERSION = 1;
+    private static final int CHECKPOINT_EVERY = 64;
+
+    private final int number;
+    private volatile Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private volatile int end = HEADER_BYTES;
+    private volatile long lastSequence;
+    // bytes of the records the engine still needs; the rest is garbage for compaction
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, Integer> checkpoints = new ConcurrentSkipListMap<>();
+    private int sinceCheckpoint;
+
+    private LogSegment(int number, Path path, FileChannel channel, MappedByteBuffer buf) {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.buf = buf;
+    }
+
+    static String fileName(int number) {
+        return String.format("segment-%08d.log", number);
+    }
+
+    /** The segment number of {@code file}, or -1 if it is not a segment file. */
+    static int parseNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.matches("segment-\\d{8,}\\.log")) return -1;
+        return Integer.parseInt(name.substring(8, name.length() - 4));
+    }
+
+    /** Creates a new segment file of {@code capacity} bytes and forces its header to disk. */
+    static LogSegment create(Path file, int number, int capacity, long lastTaskId, long lastSequence,
+                             long trimmedTaskSequence, long trimmedCategorySequence) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buf.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, 0).putInt(12, 0)
+                    .putLong(16, lastTaskId).putLong(24, lastSequence)
+                    .putLong(32, trimmedTaskSequence).putLong(40, trimmedCategorySequence);
+            buf.force(0, HEADER_BYTES);
+            LogSegment segment = new LogSegment(number, file, channel, buf);
+            segment.lastSequence = lastSequence;
+            return segment;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Maps an existing segment file. Returns null if the file never got a header (the process
+     * died while creating it); throws if it is not a segment of this version.
+     */
+    static LogSegment open(Path file, int number) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Segment too large: " + file);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (size < HEADER_BYTES || buf.getInt(0) == 0) {
+                channel.close();
+                return null;
+            }
+            if (buf.getInt(0) != MAGIC) throw new IOException("Not a task log segment: " + file);
+            if (buf.getInt(4) != VERSION) throw new IOException("Unsupported task log version " + buf.getInt(4) + ": " + file);
+            return new LogSegment(number, file, channel, buf);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** The mapped file; read it with absolute gets only. */
+    MappedByteBuffer buffer() {
+        return buf;
+    }
+
+    int getCapacity() {
+        return buf.capacity();
+    }
+
+    /** End of the committed records: the next record goes here. */
+    int getEnd() {
+        return end;
+    }
+
+    /** Bytes of records, committed or not needed any more. */
+    int getRecordBytes() {
+        return end - HEADER_BYTES;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    AtomicLong liveBytes() {
+        return liveBytes;
+    }
+
+    /** Where the segment's records stop, 0 while it is still being appended to. */
+    int getSealedEnd() {
+        return buf.getInt(8);
+    }
+
+    long getHeaderLastTaskId() {
+        return buf.getLong(16);
+    }
+
+    long getHeaderLastSequence() {
+        return buf.getLong(24);
+    }
+
+    long getHeaderTrimmedSequence(ChangeEvent.Entity entity) {
+        return buf.getLong(trimmedOffset(entity));
+    }
+
+    void writeTrimmedSequence(ChangeEvent.Entity entity, long trimmedSequence, boolean sync) {
+        int offset = trimmedOffset(entity);
+        buf.putLong(offset, trimmedSequence);
+        if (sync) buf.force(offset, 8);
+    }
+
+    private static int trimmedOffset(ChangeEvent.Entity entity) {
+        return entity == ChangeEvent.Entity.TASK ? 32 : 40;
+    }
+
+    void write(int pos, byte[] record) {
+        buf.put(pos, record);
+    }
+
+    void force(int from, int to) {
+        buf.force(from, to - from);
+    }
+
+    /**
+     * Makes a transaction of {@code records} records written at {@code start} up to
+     * {@code newEnd} visible to readers.
+     */
+    void publish(int start, long firstSequence, int newEnd, long lastSequence, int records) {
+        if (checkpoints.isEmpty() || sinceCheckpoint >= CHECKPOINT_EVERY) {
+            checkpoints.put(firstSequence, start);
+            sinceCheckpoint = 0;
+        }
+        sinceCheckpoint += records;
+        this.lastSequence = Math.max(this.lastSequence, lastSequence);
+        end = newEnd;
+    }
+
+    /** Position to start scanning from for records with a sequence number above {@code afterSequence}. */
+    int scanStart(long afterSequence) {
+        Map.Entry<Long, Integer> e = checkpoints.floorEntry(afterSequence);
+        return e == null ? HEADER_BYTES : e.getValue();
+    }
+
+    /** Ends the segment at the current end and forces it, header included, to disk. */
+    void seal() {
+        buf.force();
+        buf.putInt(8, end);
+        buf.force(0, HEADER_BYTES);
+    }
+
+    /** Moves the file, e.g. a finished compaction output to its final name; the mapping stays valid. */
+    void moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+        path = target;
+    }
+
+    /**
+     * Closes the file. The mapping stays readable until it is garbage collected, so a reader
+     * that still holds a position in this segment is not affected.
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName() + "[end=" + end + ", live=" + liveBytes.get() + "]";
+    }
+}
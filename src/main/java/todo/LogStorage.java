@@ -0,0 +1,1126 @@
+package todo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link Storage} that keeps tasks and categories in an append-only log of memory-mapped
+ * {@link LogSegment} files instead of SQLite's B-trees: every write appends one checksummed
+ * {@link LogRecord} and never rewrites older data, which makes update-heavy churn cheap.
+ * <ul>
+ *     <li>Index: an in-memory map from task id to the position of its newest record; reads
+ *     decode the record straight from the mapped file. Category and search lookups go
+ *     through {@link TaskIndex}; categories themselves are few and kept in memory.</li>
+ *     <li>Transactions: writes are serialized by one lock, as in SQLite. A transaction is
+ *     buffered and appended as one run of records whose last one carries a commit flag;
+ *     only then does it become visible, so a failing {@link #inTransaction} writes nothing.</li>
+ *     <li>Change log: the records are the change log. Compaction folds superseded versions
+ *     away, so a feed that falls behind it may skip intermediate versions of a task, but
+ *     deletes are kept until {@link #trimChangeLog} passes them.</li>
+ *     <li>Compaction: when {@link LogConfig#getCompactionGarbageRatio()} of the sealed
+ *     segments is dead, a background thread copies the records still needed into new
+ *     segments and deletes the old ones. Writers keep going meanwhile; only the final index
+ *     switch takes the write lock. A failed compaction leaves the log as it was and shows in
+ *     {@link #getCompactionFailures()}; an old segment that cannot be deleted afterwards
+ *     shows in {@link #getIoFailures()}.</li>
+ *     <li>Recovery: on open the index is rebuilt by scanning every segment. Where segments
+ *     disagree the record with the higher sequence number wins, so a crash in the middle of
+ *     a compaction is harmless. A torn write at the end of the segment that was being
+ *     appended to is dropped ({@link #getDroppedWrites()}); a bad checksum anywhere else
+ *     fails the open.</li>
+ * </ul>
+ * Durability follows {@link LogConfig#isSync()}. Reads never lock; like
+ * {@link MemoryStorage} there is no snapshot isolation across a multi-row commit. Inside a
+ * transaction reads by id, listings and counts see its own writes; search, the due-date and
+ * status loaders, {@link #streamTasks} and the change log see committed data only.
+ */
+public class LogStorage implements Storage {
+
+    private record CategoryEntry(Category category, long createdSequence, long location) {
+    }
+
+    private record CategoryTable(List<Category> all, Map<String, CategoryEntry> byName) {
+        static CategoryTable of(LinkedHashMap<String, CategoryEntry> byName) {
+            List<Category> all = new ArrayList<>(byName.size());
+            for (CategoryEntry e : byName.values()) all.add(e.category());
+            return new CategoryTable(List.copyOf(all), Collections.unmodifiableMap(byName));
+        }
+    }
+
+    /** The writes of the running transaction, appended to the log as one unit on commit. */
+    private static final class Transaction {
+        final List<LogRecord> records = new ArrayList<>();
+        // for each record the task it replaces, to update the search index
+        final List<Task> previous = new ArrayList<>();
+        // tasks written so far; a null value is a delete
+        final Map<Integer, Task> tasks = new HashMap<>();
+        // the categories as this transaction sees them, copied on its first category write
+        LinkedHashMap<String, CategoryEntry> categories;
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /** Returns false to stop the scan. */
+        boolean visit(ByteBuffer buf, int pos, long sequence, byte kind);
+    }
+
+    private final LogConfig config;
+    private final Path dir;
+    private final ConcurrentSkipListMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private volatile LogSegment active;
+    private final AtomicInteger nextSegment = new AtomicInteger(1);
+
+    // task id -> location of its newest record, see location()
+    private final ConcurrentSkipListMap<Integer, Long> index = new ConcurrentSkipListMap<>();
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final TaskIndex taskIndex = new TaskIndex();
+    private volatile CategoryTable categories = CategoryTable.of(new LinkedHashMap<>());
+    // deletes still in the change log: sequence -> location
+    private final ConcurrentSkipListMap<Long, Long> tombstones = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    // guarded by writeLock
+    private Transaction tx;
+    private int lastTaskId;
+    private long lastSequence;
+    private volatile long committedSequence;
+    // change-log trim points, one per entity since each ChangeFeed trims its own
+    private volatile long trimmedTaskSequence;
+    private volatile long trimmedCategorySequence;
+    private volatile boolean closed;
+
+    private final ScheduledExecutorService compactor;
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong compactionFailures = new AtomicLong();
+    private volatile Exception lastCompactionError;
+    private final AtomicLong ioFailures = new AtomicLong();
+    private volatile Exception lastIoError;
+    private int droppedWrites;
+
+    /** Opens the log configured by the {@code todo.log.*} system properties. */
+    public static LogStorage open() throws SQLException {
+        return open(LogConfig.fromSystemProperties());
+    }
+
+    /** Opens the log in {@code directory} with the default settings. */
+    public static LogStorage open(Path directory) throws SQLException {
+        return open(withDirectory(directory));
+    }
+
+    /**
+     * Opens (or creates) the log in {@link LogConfig#getDirectory()}, recovering it as described
+     * above, and starts background compaction.
+     */
+    public static LogStorage open(LogConfig config) throws SQLException {
+        LogStorage storage = new LogStorage(config);
+        // scheduled only once the storage is fully constructed
+        storage.startCompactor();
+        return storage;
+    }
+
+    private LogStorage(LogConfig config) throws SQLException {
+        this.config = config;
+        this.dir = config.getDirectory();
+        try {
+            Files.createDirectories(dir);
+            recover();
+            roll();
+        } catch (IOException | UncheckedIOException ex) {
+            for (LogSegment s : segments.values()) s.close();
+            throw new SQLException("Failed to open task log in " + dir, ex);
+        } catch (SQLException ex) {
+            for (LogSegment s : segments.values()) s.close();
+            throw ex;
+        }
+        if (config.getCompactionIntervalSeconds() > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "task-log-compaction");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            compactor = null;
+        }
+    }
+
+    private void startCompactor() {
+        long interval = config.getCompactionIntervalSeconds();
+        if (compactor != null) compactor.scheduleWithFixedDelay(this::compactInBackground, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static LogConfig withDirectory(Path directory) {
+        LogConfig config = new LogConfig();
+        config.setDirectory(directory);
+        return config;
+    }
+
+    // a position in the log: segment number in the high half, offset in the low half
+    private static long location(int segment, int pos) {
+        return (long) segment << 32 | pos;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int positionOf(long location) {
+        return (int) location;
+    }
+
+    // ---- recovery ----
+
+    private void recover() throws IOException, SQLException {
+        List<LogSegment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                // an unfinished compaction output; the segments it copied from are still there
+                if (file.getFileName().toString().endsWith(".log.tmp")) {
+                    Files.delete(file);
+                    continue;
+                }
+                int number = LogSegment.parseNumber(file);
+                if (number < 0) continue;
+                nextSegment.accumulateAndGet(number + 1, Math::max);
+                LogSegment segment = LogSegment.open(file, number);
+                if (segment == null) {
+                    Files.delete(file); // created, but the process died before it got a header
+                    continue;
+                }
+                found.add(segment);
+                segments.put(number, segment);
+            }
+        }
+        found.sort(Comparator.comparingInt(LogSegment::getNumber));
+        for (LogSegment s : found) {
+            lastTaskId = (int) Math.max(lastTaskId, s.getHeaderLastTaskId());
+            lastSequence = Math.max(lastSequence, s.getHeaderLastSequence());
+            trimmedTaskSequence = Math.max(trimmedTaskSequence, s.getHeaderTrimmedSequence(ChangeEvent.Entity.TASK));
+            trimmedCategorySequence = Math.max(trimmedCategorySequence, s.getHeaderTrimmedSequence(ChangeEvent.Entity.CATEGORY));
+        }
+        // id or name -> {sequence, location, 1 if deleted} of the newest record seen so far
+        Map<Integer, long[]> taskState = new HashMap<>();
+        Map<String, long[]> categoryState = new HashMap<>();
+        for (LogSegment s : found) scan(s, taskState, categoryState);
+
+        for (Map.Entry<Integer, long[]> e : taskState.entrySet()) {
+            long[] state = e.getValue();
+            if (state[2] != 0) continue;
+            index.put(e.getKey(), state[1]);
+            taskIndex.add(record(state[1]).task());
+            taskCount.incrementAndGet();
+            live(state[1]);
+        }
+        List<long[]> liveCategories = new ArrayList<>();
+        for (long[] state : categoryState.values()) {
+            if (state[2] == 0) liveCategories.add(state);
+        }
+        LinkedHashMap<String, CategoryEntry> table = new LinkedHashMap<>();
+        liveCategories.stream()
+                .map(state -> new CategoryEntry(record(state[1]).category(), record(state[1]).createdSequence(), state[1]))
+                .sorted(Comparator.comparingLong(CategoryEntry::createdSequence))
+                .forEach(entry -> {
+                    table.put(entry.category().getName(), entry);
+                    live(entry.location());
+                });
+        categories = CategoryTable.of(table);
+        for (long loc : tombstones.values()) live(loc);
+        committedSequence = lastSequence;
+    }
+
+    /**
+     * Reads the committed transactions of one segment into the recovery state and seals the
+     * segment if it was still being appended to, dropping a torn write at its end.
+     */
+    private void scan(LogSegment s, Map<Integer, long[]> taskState, Map<String, long[]> categoryState) throws SQLException {
+        ByteBuffer buf = s.buffer();
+        int sealedEnd = s.getSealedEnd();
+        int limit = sealedEnd != 0 ? sealedEnd : s.getCapacity();
+        int pos = LogSegment.HEADER_BYTES;
+        int start = pos;
+        int records = 0;
+        while (!LogRecord.isEmpty(buf, pos, limit)) {
+            int length = LogRecord.validLength(buf, pos, limit);
+            if (length < 0) break;
+            boolean commit = LogRecord.isCommit(buf, pos);
+            pos += length;
+            records++;
+            if (commit) {
+                long first = LogRecord.sequence(buf, start);
+                for (int p = start; p < pos; p += LogRecord.length(buf, p)) recover(s, p, taskState, categoryState);
+                s.publish(start, first, pos, LogRecord.sequence(buf, pos - length), records);
+                start = pos;
+                records = 0;
+            }
+        }
+        if (sealedEnd != 0) {
+            if (start != sealedEnd) throw new SQLException("Corrupt task log record at " + s.getPath() + ":" + start);
+            return;
+        }
+        if (start != pos || !LogRecord.isEmpty(buf, pos, limit)) {
+            droppedWrites++;
+        }
+        // appends go to a new segment, so whatever lies past the valid end is never read again
+        s.seal();
+    }
+
+    private void recover(LogSegment s, int pos, Map<Integer, long[]> taskState, Map<String, long[]> categoryState) {
+        ByteBuffer buf = s.buffer();
+        long sequence = LogRecord.sequence(buf, pos);
+        byte kind = LogRecord.kind(buf, pos);
+        long loc = location(s.getNumber(), pos);
+        long[] state = {sequence, loc, LogRecord.isDelete(kind) ? 1 : 0};
+        lastSequence = Math.max(lastSequence, sequence);
+        if (LogRecord.isTask(kind)) {
+            int id = LogRecord.taskId(buf, pos);
+            lastTaskId = Math.max(lastTaskId, id);
+            taskState.merge(id, state, (a, b) -> b[0] > a[0] ? b : a);
+        } else {
+            categoryState.merge(LogRecord.read(buf, pos).category().getName(), state, (a, b) -> b[0] > a[0] ? b : a);
+        }
+        if (LogRecord.isDelete(kind) && sequence > trimmedSequence(entityOf(kind))) tombstones.put(sequence, loc);
+    }
+
+    private static ChangeEvent.Entity entityOf(byte kind) {
+        return LogRecord.isTask(kind) ? ChangeEvent.Entity.TASK : ChangeEvent.Entity.CATEGORY;
+    }
+
+    private long trimmedSequence(ChangeEvent.Entity entity) {
+        return entity == ChangeEvent.Entity.TASK ? trimmedTaskSequence : trimmedCategorySequence;
+    }
+
+    // ---- segments ----
+
+    private LogRecord record(long loc) {
+        return LogRecord.read(segments.get(segmentOf(loc)).buffer(), positionOf(loc));
+    }
+
+    private void live(long loc) {
+        LogSegment s = segments.get(segmentOf(loc));
+        s.liveBytes().addAndGet(LogRecord.length(s.buffer(), positionOf(loc)));
+    }
+
+    /** The record at {@code loc} is superseded; its bytes are garbage for compaction. */
+    private void dead(long loc) {
+        LogSegment s = segments.get(segmentOf(loc));
+        if (s != null) s.liveBytes().addAndGet(-LogRecord.length(s.buffer(), positionOf(loc)));
+    }
+
+    /** Seals the active segment and starts a new one; called with the write lock held. */
+    private LogSegment roll() throws IOException {
+        LogSegment previous = active;
+        if (previous != null) previous.seal();
+        int number = nextSegment.getAndIncrement();
+        LogSegment next = LogSegment.create(dir.resolve(LogSegment.fileName(number)), number, config.getSegmentBytes(),
+                lastTaskId, lastSequence, trimmedTaskSequence, trimmedCategorySequence);
+        segments.put(number, next);
+        active = next;
+        return next;
+    }
+
+    // ---- transactions ----
+
+    @Override
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        if (writeLock.isHeldByCurrentThread()) return work.run(this);
+        writeLock.lock();
+        try {
+            checkOpen();
+            tx = new Transaction();
+            T result = work.run(this);
+            commit(tx);
+            return result;
+        } finally {
+            // on an exception the buffered records are simply dropped
+            tx = null;
+            writeLock.unlock();
+        }
+    }
+
+    private Transaction ownTransaction() {
+        return writeLock.isHeldByCurrentThread() ? tx : null;
+    }
+
+    private void add(LogRecord record, Task previous) {
+        tx.records.add(record);
+        tx.previous.add(previous);
+        if (record.isTask()) tx.tasks.put(record.task().getId(), record.kind() == LogRecord.TASK_DELETED ? null : record.task());
+    }
+
+    private void commit(Transaction t) throws SQLException {
+        int n = t.records.size();
+        if (n == 0) return;
+        byte[][] encoded = new byte[n][];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            encoded[i] = t.records.get(i).encode(i == n - 1);
+            total += encoded[i].length;
+        }
+        if (total > config.getSegmentBytes() - LogSegment.HEADER_BYTES) {
+            throw new SQLException("Transaction of " + total + " bytes does not fit in a log segment of "
+                    + config.getSegmentBytes() + " bytes");
+        }
+        try {
+            LogSegment segment = active;
+            if (segment.getEnd() + total > segment.getCapacity()) segment = roll();
+            int start = segment.getEnd();
+            int[] positions = new int[n];
+            int pos = start;
+            for (int i = 0; i < n; i++) {
+                positions[i] = pos;
+                segment.write(pos, encoded[i]);
+                pos += encoded[i].length;
+            }
+            if (config.isSync()) segment.force(start, pos);
+            segment.liveBytes().addAndGet(total);
+            apply(t, segment.getNumber(), positions);
+            segment.publish(start, t.records.getFirst().sequence(), pos, t.records.getLast().sequence(), n);
+            committedSequence = t.records.getLast().sequence();
+        } catch (IOException | UncheckedIOException ex) {
+            throw new SQLException("Failed to write to the task log", ex);
+        }
+    }
+
+    /** Points the indexes at the records just written. */
+    private void apply(Transaction t, int segment, int[] positions) {
+        LinkedHashMap<String, CategoryEntry> table = null;
+        for (int i = 0; i < positions.length; i++) {
+            LogRecord r = t.records.get(i);
+            long loc = location(segment, positions[i]);
+            switch (r.kind()) {
+                case LogRecord.TASK_CREATED, LogRecord.TASK_UPDATED -> {
+                    Long old = index.put(r.task().getId(), loc);
+                    if (old != null) dead(old);
+                    else taskCount.incrementAndGet();
+                    Task previous = t.previous.get(i);
+                    if (previous != null) taskIndex.remove(previous);
+                    taskIndex.add(r.task());
+                }
+                case LogRecord.TASK_DELETED -> {
+                    Long old = index.remove(r.task().getId());
+                    if (old != null) {
+                        dead(old);
+                        taskCount.decrementAndGet();
+                    }
+                    taskIndex.remove(r.task());
+                    tombstones.put(r.sequence(), loc);
+                }
+                default -> {
+                    if (table == null) table = new LinkedHashMap<>(categories.byName());
+                    String name = r.category().getName();
+                    CategoryEntry old = r.kind() == LogRecord.CATEGORY_DELETED
+                            ? table.remove(name)
+                            : table.put(name, new CategoryEntry(r.category(), r.createdSequence(), loc));
+                    if (old != null) dead(old.location());
+                    if (r.kind() == LogRecord.CATEGORY_DELETED) tombstones.put(r.sequence(), loc);
+                }
+            }
+        }
+        if (table != null) categories = CategoryTable.of(table);
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) throw new SQLException("Storage is closed");
+    }
+
+    // ---- tasks: reads ----
+
+    /** The committed task, or null. */
+    private Task load(int id) {
+        while (!closed) {
+            Long loc = index.get(id);
+            if (loc == null) return null;
+            Task task = read(loc);
+            if (task != null) return task;
+        }
+        return null;
+    }
+
+    // null when compaction removed the segment meanwhile; the index then has the new location
+    private Task read(long loc) {
+        LogSegment s = segments.get(segmentOf(loc));
+        return s == null ? null : LogRecord.read(s.buffer(), positionOf(loc)).task();
+    }
+
+    private Task read(Map.Entry<Integer, Long> entry) {
+        Task task = read(entry.getValue());
+        return task != null ? task : load(entry.getKey());
+    }
+
+    private Stream<Task> committed(NavigableMap<Integer, Long> range) {
+        return range.entrySet().stream().map(this::read).filter(Objects::nonNull);
+    }
+
+    // committed tasks with the running transaction's writes over them
+    private NavigableMap<Integer, Task> view(Transaction t) {
+        TreeMap<Integer, Task> view = new TreeMap<>();
+        committed(index).forEach(task -> view.put(task.getId(), task));
+        t.tasks.forEach((id, task) -> {
+            if (task == null) view.remove(id);
+            else view.put(id, task);
+        });
+        return view;
+    }
+
+    @Override
+    public List<Task> getTasks() throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        return t != null ? new ArrayList<>(view(t).values()) : committed(index).toList();
+    }
+
+    @Override
+    public Task getTask(int id) throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        if (t != null && t.tasks.containsKey(id)) return t.tasks.get(id);
+        return load(id);
+    }
+
+    @Override
+    public List<Task> getTasks(String categoryName) throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        if (t != null) {
+            return view(t).values().stream().filter(task -> Objects.equals(task.getCategoryName(), categoryName)).toList();
+        }
+        List<Task> result = new ArrayList<>();
+        for (int id : taskIndex.idsInCategory(categoryName)) {
+            Task task = load(id);
+            if (task != null && Objects.equals(task.getCategoryName(), categoryName)) result.add(task);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> getTasksAfter(int afterId, int limit) throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        Stream<Task> after = t != null
+                ? view(t).tailMap(afterId, false).values().stream()
+                : committed(index.tailMap(afterId, false));
+        return after.limit(limit).toList();
+    }
+
+    @Override
+    public List<Task> getTasksPage(int offset, int limit) throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        Stream<Task> all = t != null ? view(t).values().stream() : committed(index);
+        return all.skip(offset).limit(limit).toList();
+    }
+
+    @Override
+    public int countTasks() throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        return t != null ? view(t).size() : taskCount.get();
+    }
+
+    @Override
+    public Stream<Task> streamTasks(int pageSize) {
+        // the index iterates lazily and tolerates concurrent writes, so no paging is needed
+        return committed(index);
+    }
+
+    @Override
+    public int[] searchTaskIds(String text, int limit) throws SQLException {
+        checkOpen();
+        return taskIndex.search(text, limit, index::containsKey);
+    }
+
+    @Override
+    public List<Task> getTasksByIds(int[] ids) throws SQLException {
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task task = getTask(id);
+            if (task != null) result.add(task);
+        }
+        return result;
+    }
+
+    @Override
+    public void loadDueDays(DueIndex dueIndex) throws SQLException {
+        checkOpen();
+        committed(index).forEach(task -> {
+            LocalDate due = task.getDueDate();
+            if (due != null) dueIndex.add(task.getId(), (int) due.toEpochDay(), task.getStatus());
+        });
+    }
+
+    @Override
+    public void loadTaskCounts(TaskStats stats) throws SQLException {
+        checkOpen();
+        Map<String, long[]> counts = new HashMap<>();
+        committed(index).forEach(task ->
+                counts.computeIfAbsent(task.getCategoryName(), k -> new long[TaskStatus.values().length])[task.getStatus().ordinal()]++);
+        counts.forEach((category, perStatus) -> {
+            for (TaskStatus s : TaskStatus.values()) {
+                if (perStatus[s.ordinal()] > 0) stats.add(category, s, perStatus[s.ordinal()]);
+            }
+        });
+    }
+
+    // ---- tasks: writes ----
+
+    @Override
+    public int createTask(Task task) throws SQLException {
+        checkName(task);
+        return inTransaction(s -> {
+            int id = ++lastTaskId;
+            add(LogRecord.task(LogRecord.TASK_CREATED, ++lastSequence, stored(id, task)), null);
+            return id;
+        });
+    }
+
+    @Override
+    public boolean updateTask(Task task) throws SQLException {
+        checkName(task);
+        return inTransaction(s -> {
+            Task current = getTask(task.getId());
+            if (current == null) return false;
+            add(LogRecord.task(LogRecord.TASK_UPDATED, ++lastSequence, stored(task.getId(), task)), current);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean deleteTask(Task task) throws SQLException {
+        return inTransaction(s -> deleteTask(task.getId()));
+    }
+
+    // called inside a transaction; the delete record carries the row as it was, for the change log
+    private boolean deleteTask(int id) throws SQLException {
+        Task current = getTask(id);
+        if (current == null) return false;
+        add(LogRecord.task(LogRecord.TASK_DELETED, ++lastSequence, current), current);
+        return true;
+    }
+
+    @Override
+    public int[] createTasks(Collection<Task> tasks) throws SQLException {
+        return inTransaction(s -> {
+            int[] ids = new int[tasks.size()];
+            int i = 0;
+            for (Task task : tasks) ids[i++] = createTask(task);
+            return ids;
+        });
+    }
+
+    @Override
+    public void updateTasks(Collection<Task> tasks) throws SQLException {
+        writeTasks(tasks, new int[0]);
+    }
+
+    @Override
+    public void deleteTasks(int[] ids) throws SQLException {
+        inTransaction(s -> {
+            for (int id : ids) deleteTask(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void writeTasks(Collection<Task> updates, int[] deleteIds) throws SQLException {
+        inTransaction(s -> {
+            for (Task task : updates) updateTask(task);
+            deleteTasks(deleteIds);
+            return null;
+        });
+    }
+
+    private static void checkName(Task task) throws SQLException {
+        if (task.getName() == null) throw new SQLException("NOT NULL constraint failed: Tasks.name");
+    }
+
+    // what reading the row back from SQLite would give
+    private static Task stored(int id, Task task) {
+        TaskStatus status = task.getStatus() == null ? TaskStatus.NOT_STARTED : task.getStatus();
+        return new Task(id, task.getName(), task.getContent(), task.getCategoryName(), status, task.getDue());
+    }
+
+    // ---- categories ----
+
+    private Map<String, CategoryEntry> visibleCategories() {
+        Transaction t = ownTransaction();
+        return t != null && t.categories != null ? t.categories : categories.byName();
+    }
+
+    // the running transaction's copy of the categories, for writes
+    private LinkedHashMap<String, CategoryEntry> categoriesForWrite() {
+        if (tx.categories == null) tx.categories = new LinkedHashMap<>(categories.byName());
+        return tx.categories;
+    }
+
+    @Override
+    public List<Category> getCategories() throws SQLException {
+        checkOpen();
+        Transaction t = ownTransaction();
+        if (t == null || t.categories == null) return categories.all();
+        return t.categories.values().stream().map(CategoryEntry::category).toList();
+    }
+
+    @Override
+    public Category getCategory(String categoryName) throws SQLException {
+        checkOpen();
+        CategoryEntry e = visibleCategories().get(categoryName);
+        return e == null ? null : e.category();
+    }
+
+    @Override
+    public void addCategory(Category category) throws SQLException {
+        inTransaction(s -> {
+            LinkedHashMap<String, CategoryEntry> table = categoriesForWrite();
+            if (table.containsKey(category.getName())) throw new SQLException("UNIQUE constraint failed: Categories.name");
+            long sequence = ++lastSequence;
+            table.put(category.getName(), new CategoryEntry(category, sequence, -1));
+            add(LogRecord.category(LogRecord.CATEGORY_CREATED, sequence, category, sequence), null);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteCategory(String categoryName) throws SQLException {
+        deleteCategories(List.of(categoryName));
+    }
+
+    @Override
+    public void updateCategory(Category category) throws SQLException {
+        updateCategories(List.of(category));
+    }
+
+    @Override
+    public void addCategories(Collection<Category> categories) throws SQLException {
+        inTransaction(s -> {
+            for (Category c : categories) addCategory(c);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateCategories(Collection<Category> updates) throws SQLException {
+        inTransaction(s -> {
+            LinkedHashMap<String, CategoryEntry> table = categoriesForWrite();
+            for (Category c : updates) {
+                CategoryEntry old = table.get(c.getName());
+                if (old == null) continue;
+                table.put(c.getName(), new CategoryEntry(c, old.createdSequence(), -1));
+                add(LogRecord.category(LogRecord.CATEGORY_UPDATED, ++lastSequence, c, old.createdSequence()), null);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteCategories(Collection<String> names) throws SQLException {
+        inTransaction(s -> {
+            LinkedHashMap<String, CategoryEntry> table = categoriesForWrite();
+            for (String name : names) {
+                CategoryEntry old = table.remove(name);
+                if (old != null) {
+                    add(LogRecord.category(LogRecord.CATEGORY_DELETED, ++lastSequence, old.category(), old.createdSequence()), null);
+                }
+            }
+            return null;
+        });
+    }
+
+    // ---- change log ----
+
+    private static void scan(LogSegment s, long afterSequence, RecordVisitor visitor) {
+        ByteBuffer buf = s.buffer();
+        int end = s.getEnd();
+        for (int pos = s.scanStart(afterSequence); pos < end; pos += LogRecord.length(buf, pos)) {
+            long sequence = LogRecord.sequence(buf, pos);
+            if (sequence > afterSequence && !visitor.visit(buf, pos, sequence, LogRecord.kind(buf, pos))) return;
+        }
+    }
+
+    @Override
+    public List<ChangeEvent> getChanges(ChangeEvent.Entity entity, long afterSequence, int limit) throws SQLException {
+        checkOpen();
+        long after = Math.max(afterSequence, trimmedSequence(entity));
+        boolean tasks = entity == ChangeEvent.Entity.TASK;
+        // segments overlap in sequence numbers after compaction, and while compaction swaps
+        // them the same record can be in two; keyed by sequence, both come out once and in order
+        TreeMap<Long, ChangeEvent> events = new TreeMap<>();
+        for (LogSegment s : segments.values()) {
+            if (s.getLastSequence() <= after) continue;
+            int[] found = {0};
+            scan(s, after, (buf, pos, sequence, kind) -> {
+                if (LogRecord.isTask(kind) == tasks) {
+                    events.put(sequence, LogRecord.read(buf, pos).toEvent());
+                    found[0]++;
+                }
+                return found[0] < limit;
+            });
+        }
+        List<ChangeEvent> result = new ArrayList<>(Math.min(limit, events.size()));
+        for (ChangeEvent e : events.values()) {
+            if (result.size() == limit) break;
+            result.add(e);
+        }
+        return result;
+    }
+
+    @Override
+    public long latestChangeSequence() throws SQLException {
+        checkOpen();
+        return committedSequence;
+    }
+
+    /**
+     * Hides the events of {@code entity} up to {@code upToSequence} from {@link #getChanges}
+     * and lets the next compaction drop the delete records among them. The trim points are
+     * kept in the active segment's header.
+     */
+    @Override
+    public int trimChangeLog(ChangeEvent.Entity entity, long upToSequence) throws SQLException {
+        writeLock.lock();
+        try {
+            checkOpen();
+            long from = trimmedSequence(entity);
+            long to = Math.min(upToSequence, committedSequence);
+            if (to <= from) return 0;
+            int[] trimmed = {0};
+            for (LogSegment s : segments.values()) {
+                if (s.getLastSequence() <= from) continue;
+                scan(s, from, (buf, pos, sequence, kind) -> {
+                    if (sequence > to) return false;
+                    if (entityOf(kind) == entity) trimmed[0]++;
+                    return true;
+                });
+            }
+            if (entity == ChangeEvent.Entity.TASK) trimmedTaskSequence = to;
+            else trimmedCategorySequence = to;
+            active.writeTrimmedSequence(entity, to, config.isSync());
+            Iterator<Long> deletes = tombstones.headMap(to, true).values().iterator();
+            while (deletes.hasNext()) {
+                long loc = deletes.next();
+                if (entityOf(LogRecord.kind(segments.get(segmentOf(loc)).buffer(), positionOf(loc))) != entity) continue;
+                dead(loc);
+                deletes.remove();
+            }
+            return trimmed[0];
+        } catch (UncheckedIOException ex) {
+            throw new SQLException("Failed to write to the task log", ex);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ---- compaction ----
+
+    private void compactInBackground() {
+        try {
+            if (needsCompaction()) compact(false);
+        } catch (SQLException | RuntimeException ex) {
+            // counted by compact(); the log is unchanged, so the next round tries again
+        }
+    }
+
+    /**
+     * True when the sealed segments are at least the configured share garbage, or are many
+     * more files than their data needs (small segments left by restarts).
+     */
+    public boolean needsCompaction() {
+        long bytes = 0, live = 0;
+        int count = 0;
+        for (LogSegment s : segments.values()) {
+            if (s == active) continue;
+            count++;
+            bytes += s.getRecordBytes();
+            live += s.liveBytes().get();
+        }
+        if (count == 0) return false;
+        if (count > bytes / config.getSegmentBytes() + 8) return true;
+        return bytes > 0 && (double) (bytes - live) / bytes >= config.getCompactionGarbageRatio();
+    }
+
+    /**
+     * Rewrites every segment, the active one included, keeping only the records still needed:
+     * the newest version of each task and category, and deletes not yet trimmed from the
+     * change log. Writes continue meanwhile. Returns the number of bytes reclaimed.
+     */
+    public long compact() throws SQLException {
+        return compact(true);
+    }
+
+    private long compact(boolean includeActive) throws SQLException {
+        try {
+            return rewrite(includeActive);
+        } catch (SQLException | RuntimeException ex) {
+            compactionFailures.incrementAndGet();
+            lastCompactionError = ex;
+            throw ex;
+        }
+    }
+
+    private long rewrite(boolean includeActive) throws SQLException {
+        compactionLock.lock();
+        try {
+            List<LogSegment> inputs = new ArrayList<>();
+            long taskIdMark, sequenceMark, trimmedTaskMark, trimmedCategoryMark;
+            writeLock.lock();
+            try {
+                checkOpen();
+                if (includeActive && active.getRecordBytes() > 0) roll();
+                for (LogSegment s : segments.values()) {
+                    if (s != active) inputs.add(s);
+                }
+                taskIdMark = lastTaskId;
+                sequenceMark = lastSequence;
+                trimmedTaskMark = trimmedTaskSequence;
+                trimmedCategoryMark = trimmedCategorySequence;
+            } catch (IOException | UncheckedIOException ex) {
+                throw new SQLException("Failed to write to the task log", ex);
+            } finally {
+                writeLock.unlock();
+            }
+            if (inputs.isEmpty()) return 0;
+
+            // {sequence, location} of every record still needed, oldest first
+            List<long[]> survivors = new ArrayList<>();
+            for (LogSegment s : inputs) {
+                ByteBuffer buf = s.buffer();
+                for (int pos = LogSegment.HEADER_BYTES; pos < s.getEnd(); ) {
+                    int length = LogRecord.validLength(buf, pos, s.getEnd());
+                    if (length < 0) throw new SQLException("Corrupt task log record at " + s.getPath() + ":" + pos);
+                    long loc = location(s.getNumber(), pos);
+                    if (isLive(buf, pos, loc)) survivors.add(new long[]{LogRecord.sequence(buf, pos), loc});
+                    pos += length;
+                }
+            }
+            survivors.sort(Comparator.comparingLong(a -> a[0]));
+
+            List<LogSegment> outputs = new ArrayList<>();
+            long[] moved = new long[survivors.size()];
+            try {
+                LogSegment out = null;
+                for (int i = 0; i < moved.length; i++) {
+                    long[] survivor = survivors.get(i);
+                    LogSegment in = segments.get(segmentOf(survivor[1]));
+                    byte[] record = LogRecord.copy(in.buffer(), positionOf(survivor[1]));
+                    // copied records are no longer next to the rest of their transaction
+                    LogRecord.setCommit(record);
+                    if (out == null || out.getEnd() + record.length > out.getCapacity()) {
+                        if (out != null) finish(out);
+                        out = startOutput(record.length, taskIdMark, sequenceMark, trimmedTaskMark, trimmedCategoryMark);
+                        outputs.add(out);
+                    }
+                    int pos = out.getEnd();
+                    out.write(pos, record);
+                    out.publish(pos, survivor[0], pos + record.length, survivor[0], 1);
+                    moved[i] = location(out.getNumber(), pos);
+                }
+                // even with nothing to copy, one output carries the high-water marks on
+                if (out == null) outputs.add(out = startOutput(0, taskIdMark, sequenceMark, trimmedTaskMark, trimmedCategoryMark));
+                finish(out);
+            } catch (IOException | UncheckedIOException ex) {
+                for (LogSegment o : outputs) {
+                    o.close();
+                    try {
+                        Files.deleteIfExists(o.getPath());
+                    } catch (IOException ignored) {
+                    }
+                }
+                throw new SQLException("Task log compaction failed", ex);
+            }
+
+            writeLock.lock();
+            try {
+                Map<Integer, LogSegment> outputsByNumber = new HashMap<>();
+                for (LogSegment o : outputs) outputsByNumber.put(o.getNumber(), o);
+                LinkedHashMap<String, CategoryEntry> table = null;
+                for (int i = 0; i < moved.length; i++) {
+                    long old = survivors.get(i)[1];
+                    LogSegment in = segments.get(segmentOf(old));
+                    ByteBuffer buf = in.buffer();
+                    int pos = positionOf(old);
+                    byte kind = LogRecord.kind(buf, pos);
+                    // a record superseded or trimmed during the copy stays behind as garbage
+                    boolean kept;
+                    if (LogRecord.isDelete(kind)) {
+                        kept = tombstones.replace(LogRecord.sequence(buf, pos), old, moved[i]);
+                    } else if (LogRecord.isTask(kind)) {
+                        kept = index.replace(LogRecord.taskId(buf, pos), old, moved[i]);
+                    } else {
+                        if (table == null) table = new LinkedHashMap<>(categories.byName());
+                        CategoryEntry e = table.get(LogRecord.read(buf, pos).category().getName());
+                        kept = e != null && e.location() == old;
+                        if (kept) table.put(e.category().getName(), new CategoryEntry(e.category(), e.createdSequence(), moved[i]));
+                    }
+                    if (kept) outputsByNumber.get(segmentOf(moved[i])).liveBytes().addAndGet(LogRecord.length(buf, pos));
+                }
+                if (table != null) categories = CategoryTable.of(table);
+                segments.putAll(outputsByNumber);
+                for (LogSegment s : inputs) segments.remove(s.getNumber());
+            } finally {
+                writeLock.unlock();
+            }
+
+            long before = 0, after = 0;
+            for (LogSegment s : inputs) {
+                before += s.getRecordBytes();
+                s.close();
+                try {
+                    Files.deleteIfExists(s.getPath());
+                } catch (IOException ex) {
+                    // only wastes space: its records are all in the outputs with the same sequence numbers
+                    ioFailure(ex);
+                }
+            }
+            for (LogSegment o : outputs) after += o.getRecordBytes();
+            compactions.incrementAndGet();
+            reclaimedBytes.addAndGet(before - after);
+            return before - after;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private boolean isLive(ByteBuffer buf, int pos, long loc) {
+        byte kind = LogRecord.kind(buf, pos);
+        if (LogRecord.isDelete(kind)) return Long.valueOf(loc).equals(tombstones.get(LogRecord.sequence(buf, pos)));
+        if (LogRecord.isTask(kind)) return Long.valueOf(loc).equals(index.get(LogRecord.taskId(buf, pos)));
+        CategoryEntry e = categories.byName().get(LogRecord.read(buf, pos).category().getName());
+        return e != null && e.location() == loc;
+    }
+
+    // outputs are written under a temporary name so recovery never sees a half-written one
+    private LogSegment startOutput(int recordBytes, long lastTaskId, long lastSequence,
+                                   long trimmedTaskSequence, long trimmedCategorySequence) throws IOException {
+        int number = nextSegment.getAndIncrement();
+        int capacity = Math.max(config.getSegmentBytes(), LogSegment.HEADER_BYTES + recordBytes);
+        return LogSegment.create(dir.resolve(LogSegment.fileName(number) + ".tmp"), number, capacity,
+                lastTaskId, lastSequence, trimmedTaskSequence, trimmedCategorySequence);
+    }
+
+    private void finish(LogSegment out) throws IOException {
+        out.seal();
+        out.moveTo(dir.resolve(LogSegment.fileName(out.getNumber())));
+    }
+
+    // ---- monitoring ----
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /** Bytes of records in all segments, live or not. */
+    public long getLogBytes() {
+        long bytes = 0;
+        for (LogSegment s : segments.values()) bytes += s.getRecordBytes();
+        return bytes;
+    }
+
+    /** Bytes of the records the current state and change log still need. */
+    public long getLiveBytes() {
+        long bytes = 0;
+        for (LogSegment s : segments.values()) bytes += s.liveBytes().get();
+        return bytes;
+    }
+
+    public long getCompactions() {
+        return compactions.get();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    /** Compactions that failed, in the background or through {@link #compact()}; each left the log as it was. */
+    public long getCompactionFailures() {
+        return compactionFailures.get();
+    }
+
+    /** Why the last failed compaction failed, or null if none has. */
+    public Exception getLastCompactionError() {
+        return lastCompactionError;
+    }
+
+    /**
+     * File operations that failed without losing data: deleting a segment a compaction has
+     * copied, or sealing the active segment on close.
+     */
+    public long getIoFailures() {
+        return ioFailures.get();
+    }
+
+    /** Why the last such file operation failed, or null if none has. */
+    public Exception getLastIoError() {
+        return lastIoError;
+    }
+
+    private void ioFailure(Exception ex) {
+        ioFailures.incrementAndGet();
+        lastIoError = ex;
+    }
+
+    /** Incomplete writes dropped from the end of the log on open, left by a process that died mid-write. */
+    public int getDroppedWrites() {
+        return droppedWrites;
+    }
+
+    /** Seals the active segment, waits for a running compaction and unmaps nothing still in use. */
+    @Override
+    public void close() {
+        if (compactor != null) compactor.shutdown();
+        compactionLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                try {
+                    active.seal();
+                } catch (UncheckedIOException ex) {
+                    // the next open finds the segment unsealed and scans it to its valid end
+                    ioFailure(ex);
+                }
+                index.clear();
+                taskIndex.clear();
+                tombstones.clear();
+                for (LogSegment s : segments.values()) s.close();
+                segments.clear();
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LogStorage[" + dir + ", tasks=" + taskCount.get() + ", segments=" + segments.size()
+                + ", bytes=" + getLogBytes() + ", live=" + getLiveBytes() + "]";
+    }
+}
@@ -8,15 +8,23 @@ import javafx.stage.Stage;
 
 public class Main extends Application {
 
+    private MainController controller;
+
     @Override
     public void start(Stage stage) throws Exception {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("main-view.fxml"));
         Scene scene = new Scene(loader.load(), 1200, 720);
+        controller = loader.getController();
         stage.setTitle("Tasks TODO");
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        if (controller != null) controller.shutdown();
+    }
+
     public static void main(String[] args) {
         launch();
     }
@@ -1,18 +1,25 @@
 
 package todo;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 
 import java.time.format.DateTimeFormatter;
-import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class MainController {
 
+	private static final int PAGE_SIZE = 200;
+	private static final int MAX_CACHED_PAGES = 25;
+	private static final int SEARCH_LIMIT = 1000;
+	private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+
 	@FXML private TableView<Task> taskTable;
 	@FXML private TableColumn<Task, String> nameColumn;
 	@FXML private TableColumn<Task, String> categoryColumn;
@@ -30,39 +37,64 @@ public class MainController {
     @FXML private Button editButton;
     @FXML private Button saveButton;
 
-	private final ObservableList<Task> tasks = FXCollections.observableArrayList();
+	// rows are paged in from the DB on demand instead of loading every task up front
+	private PagedTaskList tasks;
     private int editingId = -1;
+	private Task editingOriginal;
+	// ids handed out to optimistically added rows until the DB returns the real one
+	private int nextTempId = -1;
 
-	private final TaskDao taskDao = new TaskDao();
-	private final CategoryDao categoryDao = new CategoryDao();
+	// one backend for both DAOs, picked with -Dtodo.storage=sqlite|memory|log
+	private final Storage storage = Storage.fromSystemProperties();
+	private final TaskDao taskDao = new TaskDao(storage);
+	private final CategoryDao categoryDao = new CategoryDao(storage);
+	// every DAO call goes through here so the FX thread never waits on SQLite
+	private final AsyncDao dao = new AsyncDao(taskDao, categoryDao);
+	private SearchPipeline search;
+	// set once the DAO's status counters are loaded
+	private TaskStats taskStats;
 
 	public void initialize() {
-		nameColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getName()));
-		categoryColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getCategoryName()));
-		statusColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getStatus().toString()));
-		dueColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getDue()));
+		// a paged row can briefly be null when the table shrank underneath it
+		nameColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue() == null ? "" : data.getValue().getName()));
+		categoryColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue() == null ? "" : data.getValue().getCategoryName()));
+		statusColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue() == null ? "" : data.getValue().getStatus().toString()));
+		dueColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue() == null ? "" : data.getValue().getDue()));
 
 		// load categories (fallback defaults). If empty, insert initial categories into DB.
-		List<Category> cats = categoryDao.getAllCategories();
-		if (cats.isEmpty()) {
-			String[] initial = {"Baza Danych", "Front End", "Baton", "BackEnd"};
-			for (String nm : initial) {
-				// persist category and add to combo
-				categoryDao.createCategory(new Category(nm, ""));
-				categoryCombo.getItems().add(nm);
+		onFx(dao.getAllCategories(), cats -> {
+			if (cats.isEmpty()) {
+				String[] initial = {"Baza Danych", "Front End", "Baton", "BackEnd"};
+				for (String nm : initial) {
+					// persist category and add to combo (Category rejects a blank description)
+					onFx(dao.createCategory(new Category(nm, "-")), v -> {}, ex -> showError("Nie udało się zapisać kategorii", ex));
+					categoryCombo.getItems().add(nm);
+				}
+			} else {
+				for (Category c : cats) categoryCombo.getItems().add(c.getName());
 			}
-		} else {
-			for (Category c : cats) categoryCombo.getItems().add(c.getName());
-		}
+		}, ex -> showError("Nie udało się wczytać kategorii", ex));
 		// status combo (use enum values)
 		statusCombo.getItems().addAll(TaskStatus.NOT_STARTED, TaskStatus.IN_PROGRESS, TaskStatus.DONE, TaskStatus.ABANDONED);
 		statusCombo.getSelectionModel().select(TaskStatus.NOT_STARTED);
 
-		// load tasks from DAO (may be empty)
-		tasks.addAll(taskDao.getAllTasks());
+		// page tasks in from DAO as the table scrolls (may be empty)
+		tasks = new PagedTaskList(dao, PAGE_SIZE, MAX_CACHED_PAGES, ex -> showError("Nie udało się wczytać zadań", ex));
 		taskTable.setItems(tasks);
+		infoLabel.setText("Wczytywanie...");
+		// the status counters are counted once, off the FX thread, then kept current by the DAO
+		tasks.refresh().thenAccept(n -> onFx(dao.read(taskDao::getStats),
+				stats -> {
+					taskStats = stats;
+					infoLabel.setText("Zadania: " + n + statusSummary());
+				},
+				ex -> showError("Nie udało się policzyć zadań", ex)));
 
-		// search support
+		// search support: debounced, runs off the FX thread, results replace the table items in one go
+		search = new SearchPipeline(taskDao, SEARCH_LIMIT, SEARCH_DEBOUNCE_MILLIS, Platform::runLater, result -> {
+			taskTable.setItems(FXCollections.observableArrayList(result.tasks()));
+			infoLabel.setText("Wyników: " + result.tasks().size());
+		}, ex -> showError("Błąd wyszukiwania", ex));
 		searchField.textProperty().addListener((obs, oldV, newV) -> filterTasks(newV));
 		searchField.setOnKeyPressed(e -> { if (e.getCode() == KeyCode.ESCAPE) searchField.clear(); });
 
@@ -79,20 +111,74 @@ public class MainController {
 			});
 			return row;
 		});
+	}
 
-		infoLabel.setText("Zadania: " + tasks.size());
+	/** Delivers the outcome of a background DAO call on the FX thread. */
+	private static <T> void onFx(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+		future.whenComplete((result, ex) -> Platform.runLater(() -> {
+			if (ex == null) onSuccess.accept(result);
+			else onFailure.accept(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+		}));
+	}
+
+	/** Per-status counts from the DAO's counters; no database query. Empty until they are loaded. */
+	private String statusSummary() {
+		TaskStats stats = taskStats;
+		if (stats == null) return "";
+		return " (w toku: " + stats.count(TaskStatus.IN_PROGRESS) + ", zakończone: " + stats.count(TaskStatus.DONE) + ")";
+	}
+
+	/**
+	 * The selected row, or null after telling the user why there is none. A row added
+	 * optimistically carries a temporary negative id until its create completes, so edits and
+	 * deletes wait for the real id instead of reaching the DB with one it never assigned.
+	 */
+	private Task selectedTask(String noSelection) {
+		Task sel = taskTable.getSelectionModel().getSelectedItem();
+		if (sel == null) {
+			infoLabel.setText(noSelection);
+			return null;
+		}
+		if (sel.getId() < 0) {
+			infoLabel.setText("Zadanie jest jeszcze zapisywane, spróbuj za chwilę");
+			return null;
+		}
+		return sel;
+	}
+
+	private void showError(String message, Throwable ex) {
+		infoLabel.setText(message + ": " + (ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage()));
+	}
+
+	/** Releases the background executor, flushes queued writes and closes the storage; called when the window closes. */
+	public void shutdown() {
+		search.close();
+		dao.close();
+		try {
+			// commits queued write-behind edits
+			taskDao.close();
+		} finally {
+			taskDao.getChangeFeed().close();
+			categoryDao.getChangeFeed().close();
+			storage.close();
+		}
 	}
 
 	private void filterTasks(String q) {
 		if (q == null || q.isBlank()) {
+			search.cancel();
 			taskTable.setItems(tasks);
-			infoLabel.setText("Zadania: " + tasks.size());
+			infoLabel.setText("Zadania: " + tasks.size() + statusSummary());
 			return;
 		}
-		String low = q.toLowerCase();
-		ObservableList<Task> filtered = tasks.filtered(t -> t.getName().toLowerCase().contains(low) || t.getContent().toLowerCase().contains(low) || t.getCategoryName().toLowerCase().contains(low) || t.getStatus().name().toLowerCase().contains(low));
-		taskTable.setItems(filtered);
-		infoLabel.setText("Wyników: " + filtered.size());
+		search.submit(q);
+	}
+
+	/** Re-runs the active search so its result list reflects a change made through the form. */
+	private void refreshSearch() {
+		// the last result may hold the old version of the task, so go back to the database
+		search.invalidate();
+		if (!searchField.getText().isBlank()) filterTasks(searchField.getText());
 	}
 
 	@FXML
@@ -107,68 +193,71 @@ public class MainController {
 		TaskStatus status = statusCombo.getValue() != null ? statusCombo.getValue() : TaskStatus.NOT_STARTED;
 		String due = (duePicker.getValue() != null) ? duePicker.getValue().format(DateTimeFormatter.ISO_LOCAL_DATE) : "";
 
-		// create in DB first so we get generated id
-		Task tTemp = new Task(0, name, content, category, status, due);
-		int newId = taskDao.createTask(tTemp);
-		Task t = new Task(newId, name, content, category, status, due);
-		tasks.add(t);
+		// show the row right away under a temporary id, swap in the generated id once stored
+		Task tTemp = new Task(nextTempId--, name, content, category, status, due);
+		tasks.append(tTemp);
 		clearForm();
 		infoLabel.setText("Zadanie dodane. Razem: " + tasks.size());
+		onFx(dao.createTask(tTemp), newId -> {
+			tasks.replace(tTemp.getId(), new Task(newId, name, content, category, status, due));
+			refreshSearch();
+		}, ex -> {
+			tasks.removeTask(tTemp);
+			showError("Nie udało się dodać zadania", ex);
+		});
 	}
 
 	@FXML
 	private void onRemoveTask() {
-		Task sel = taskTable.getSelectionModel().getSelectedItem();
-		if (sel == null) { infoLabel.setText("Brak zaznaczenia"); return; }
-		tasks.remove(sel);
-		taskDao.deleteTask(sel.getId());
+		Task sel = selectedTask("Brak zaznaczenia");
+		if (sel == null) return;
+		tasks.removeTask(sel);
 		infoLabel.setText("Usunięto zadanie. Razem: " + tasks.size());
+		onFx(dao.deleteTask(sel.getId()), v -> refreshSearch(), ex -> {
+			// put the row back where the DB says it is
+			tasks.refresh();
+			showError("Nie udało się usunąć zadania", ex);
+		});
 	}
 
 	@FXML
 	private void onMarkDone() {
-		Task sel = taskTable.getSelectionModel().getSelectedItem();
-		if (sel == null) { infoLabel.setText("Brak zaznaczenia"); return; }
+		Task sel = selectedTask("Brak zaznaczenia");
+		if (sel == null) return;
 		// create a new Task object with same id but status changed (Task is immutable in this model)
 		Task updated = new Task(sel.getId(), sel.getName(), sel.getContent(), sel.getCategoryName(), TaskStatus.DONE, sel.getDue());
-		int idx = tasks.indexOf(sel);
-		tasks.set(idx, updated);
-		taskDao.updateTask(updated);
+		applyUpdate(sel, updated);
 		infoLabel.setText("Oznaczono jako zakończone");
 	}
 
 	@FXML
 	private void onChangeStatus() {
-		Task sel = taskTable.getSelectionModel().getSelectedItem();
-		if (sel == null) { infoLabel.setText("Brak zaznaczenia"); return; }
+		Task sel = selectedTask("Brak zaznaczenia");
+		if (sel == null) return;
 		ChoiceDialog<TaskStatus> dlg = new ChoiceDialog<>(sel.getStatus(), TaskStatus.values());
 		dlg.setTitle("Zmień status");
 		dlg.setHeaderText("Wybierz nowy status dla zadania");
 		dlg.setContentText("Status:");
 		dlg.showAndWait().ifPresent(s -> {
 			Task updated = new Task(sel.getId(), sel.getName(), sel.getContent(), sel.getCategoryName(), s, sel.getDue());
-			int idx = tasks.indexOf(sel);
-			tasks.set(idx, updated);
-			taskDao.updateTask(updated);
+			applyUpdate(sel, updated);
 			infoLabel.setText("Status zmieniony: " + s.toString());
 		});
 	}
 
 	@FXML
 	private void onEditTask() {
-		Task sel = taskTable.getSelectionModel().getSelectedItem();
-		if (sel == null) { infoLabel.setText("Zaznacz zadanie do edycji"); return; }
+		Task sel = selectedTask("Zaznacz zadanie do edycji");
+		if (sel == null) return;
 		nameField.setText(sel.getName());
 		contentArea.setText(sel.getContent());
 		categoryCombo.setValue(sel.getCategoryName());
 		statusCombo.setValue(sel.getStatus());
-		if (sel.getDue() != null && !sel.getDue().isBlank()) {
-			duePicker.setValue(LocalDate.parse(sel.getDue()));
-		} else {
-			duePicker.setValue(null);
-		}
+		// parsed once per task; null for no date or a non-ISO value
+		duePicker.setValue(sel.getDueDate());
 		// set editing state
 		editingId = sel.getId();
+		editingOriginal = sel;
 		addButton.setDisable(true);
 		saveButton.setDisable(false);
 		infoLabel.setText("Edycja zadania id=" + editingId);
@@ -185,19 +274,26 @@ public class MainController {
 		String due = (duePicker.getValue() != null) ? duePicker.getValue().format(DateTimeFormatter.ISO_LOCAL_DATE) : "";
 
 		Task updated = new Task(editingId, name, content, category, status, due);
-		// find and replace in list
-		for (int i = 0; i < tasks.size(); i++) {
-			if (tasks.get(i).getId() == editingId) { tasks.set(i, updated); break; }
-		}
-		taskDao.updateTask(updated);
+		// swap the loaded row, if any (no scan over the whole list)
+		applyUpdate(editingOriginal, updated);
 		// reset form/state
 		editingId = -1;
+		editingOriginal = null;
 		saveButton.setDisable(true);
 		addButton.setDisable(false);
 		clearForm();
 		infoLabel.setText("Zapisano zmiany");
 	}
 
+	/** Shows {@code updated} immediately and restores {@code original} if the DB write fails. */
+	private void applyUpdate(Task original, Task updated) {
+		tasks.replace(updated);
+		onFx(dao.updateTask(updated), v -> refreshSearch(), ex -> {
+			if (original != null) tasks.replace(original);
+			showError("Nie udało się zapisać zmian", ex);
+		});
+	}
+
 	@FXML
 	private void onClearForm() {
 		clearForm();
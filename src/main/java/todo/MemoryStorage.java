@@ -0,0 +1,444 @@
+package todo;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link Storage} that keeps everything in memory and loses it on {@link #close()}: for tests,
+ * benchmarks and throwaway data, with no disk I/O at all. It behaves like the SQLite backend
+ * (same id assignment, constraint errors, change log and search semantics) with these indexes:
+ * <ul>
+ *     <li>tasks in a concurrent skip list by id, so scans and pages are in id order;</li>
+ *     <li>task ids per category and a prefix-searchable word index ({@link TaskIndex});</li>
+ *     <li>categories as an immutable insertion-ordered table, swapped on every change.</li>
+ * </ul>
+ * Reads never lock and run in parallel with writes. Writes are serialized by one lock, as in
+ * SQLite, and every write runs as a transaction with an undo log, so a failing
+ * {@link #inTransaction} leaves nothing behind. There is no snapshot isolation: a read running
+ * alongside a multi-row write may see part of it. The change log is the exception: events are
+ * held back with their transaction and published when it commits, so a feed never sees a
+ * rolled-back change. Search ranks by how often the query words occur, not by SQLite's bm25.
+ */
+public class MemoryStorage implements Storage {
+
+    private record CategoryTable(List<Category> all, Map<String, Category> byName) {
+    }
+
+    private final ConcurrentSkipListMap<Integer, Task> tasks = new ConcurrentSkipListMap<>();
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final TaskIndex index = new TaskIndex();
+    private volatile CategoryTable categories = new CategoryTable(List.of(), Map.of());
+    private final ConcurrentSkipListMap<Long, ChangeEvent> changes = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastTaskId = new AtomicInteger();
+    private final AtomicLong lastChange = new AtomicLong();
+    private volatile long committedChange;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // undo actions of the running transaction, newest last; guarded by writeLock
+    private ArrayList<Runnable> undo;
+    // change events of the running transaction, published when it commits; guarded by writeLock
+    private ArrayList<ChangeEvent> pending;
+    private volatile boolean closed;
+
+    @Override
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        if (writeLock.isHeldByCurrentThread()) return work.run(this);
+        writeLock.lock();
+        try {
+            checkOpen();
+            undo = new ArrayList<>();
+            pending = new ArrayList<>();
+            T result;
+            try {
+                result = work.run(this);
+            } catch (SQLException | RuntimeException | Error ex) {
+                for (int i = undo.size() - 1; i >= 0; i--) undo.get(i).run();
+                // the sequence numbers of the dropped events are handed out again, as in SQLite
+                lastChange.set(committedChange);
+                throw ex;
+            }
+            for (ChangeEvent e : pending) changes.put(e.sequence(), e);
+            if (!pending.isEmpty()) committedChange = pending.getLast().sequence();
+            return result;
+        } finally {
+            undo = null;
+            pending = null;
+            writeLock.unlock();
+        }
+    }
+
+    /** Drops all data; later calls fail. */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            closed = true;
+            tasks.clear();
+            index.clear();
+            changes.clear();
+            categories = new CategoryTable(List.of(), Map.of());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) throw new SQLException("Storage is closed");
+    }
+
+    // ---- tasks: reads ----
+
+    @Override
+    public List<Task> getTasks() throws SQLException {
+        checkOpen();
+        return new ArrayList<>(tasks.values());
+    }
+
+    @Override
+    public Task getTask(int id) throws SQLException {
+        checkOpen();
+        return tasks.get(id);
+    }
+
+    @Override
+    public List<Task> getTasks(String categoryName) throws SQLException {
+        checkOpen();
+        List<Task> result = new ArrayList<>();
+        for (int id : index.idsInCategory(categoryName)) {
+            Task t = tasks.get(id);
+            if (t != null && Objects.equals(t.getCategoryName(), categoryName)) result.add(t);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> getTasksAfter(int afterId, int limit) throws SQLException {
+        checkOpen();
+        return take(tasks.tailMap(afterId, false).values(), 0, limit);
+    }
+
+    @Override
+    public List<Task> getTasksPage(int offset, int limit) throws SQLException {
+        checkOpen();
+        return take(tasks.values(), offset, limit);
+    }
+
+    private static List<Task> take(Collection<Task> values, int offset, int limit) {
+        List<Task> result = new ArrayList<>(Math.min(limit, 1024));
+        int skipped = 0;
+        for (Task t : values) {
+            if (skipped++ < offset) continue;
+            if (result.size() == limit) break;
+            result.add(t);
+        }
+        return result;
+    }
+
+    @Override
+    public int countTasks() throws SQLException {
+        checkOpen();
+        return taskCount.get();
+    }
+
+    @Override
+    public Stream<Task> streamTasks(int pageSize) {
+        // the skip list iterates lazily and tolerates concurrent writes, so no paging is needed
+        return tasks.values().stream();
+    }
+
+    @Override
+    public int[] searchTaskIds(String text, int limit) throws SQLException {
+        checkOpen();
+        return index.search(text, limit, tasks::containsKey);
+    }
+
+    @Override
+    public List<Task> getTasksByIds(int[] ids) throws SQLException {
+        checkOpen();
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task t = tasks.get(id);
+            if (t != null) result.add(t);
+        }
+        return result;
+    }
+
+    @Override
+    public void loadDueDays(DueIndex dueIndex) throws SQLException {
+        checkOpen();
+        for (Task t : tasks.values()) {
+            LocalDate due = t.getDueDate();
+            if (due != null) dueIndex.add(t.getId(), (int) due.toEpochDay(), t.getStatus());
+        }
+    }
+
+    @Override
+    public void loadTaskCounts(TaskStats stats) throws SQLException {
+        checkOpen();
+        Map<String, long[]> counts = new HashMap<>();
+        for (Task t : tasks.values()) {
+            counts.computeIfAbsent(t.getCategoryName(), k -> new long[TaskStatus.values().length])[t.getStatus().ordinal()]++;
+        }
+        counts.forEach((category, perStatus) -> {
+            for (TaskStatus s : TaskStatus.values()) {
+                if (perStatus[s.ordinal()] > 0) stats.add(category, s, perStatus[s.ordinal()]);
+            }
+        });
+    }
+
+    // ---- tasks: writes ----
+
+    @Override
+    public int createTask(Task task) throws SQLException {
+        checkName(task);
+        return inTransaction(s -> {
+            int id = lastTaskId.incrementAndGet();
+            Task stored = stored(id, task);
+            putTask(id, stored);
+            logTask(ChangeEvent.Type.CREATED, stored);
+            return id;
+        });
+    }
+
+    @Override
+    public boolean updateTask(Task task) throws SQLException {
+        checkName(task);
+        return inTransaction(s -> {
+            if (!tasks.containsKey(task.getId())) return false;
+            Task stored = stored(task.getId(), task);
+            putTask(task.getId(), stored);
+            logTask(ChangeEvent.Type.UPDATED, stored);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean deleteTask(Task task) throws SQLException {
+        return inTransaction(s -> deleteTask(task.getId()));
+    }
+
+    // called inside a transaction
+    private boolean deleteTask(int id) {
+        Task old = tasks.get(id);
+        if (old == null) return false;
+        putTask(id, null);
+        logTask(ChangeEvent.Type.DELETED, old);
+        return true;
+    }
+
+    @Override
+    public int[] createTasks(Collection<Task> tasks) throws SQLException {
+        return inTransaction(s -> {
+            int[] ids = new int[tasks.size()];
+            int i = 0;
+            for (Task task : tasks) ids[i++] = createTask(task);
+            return ids;
+        });
+    }
+
+    @Override
+    public void updateTasks(Collection<Task> tasks) throws SQLException {
+        writeTasks(tasks, new int[0]);
+    }
+
+    @Override
+    public void deleteTasks(int[] ids) throws SQLException {
+        inTransaction(s -> {
+            for (int id : ids) deleteTask(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void writeTasks(Collection<Task> updates, int[] deleteIds) throws SQLException {
+        inTransaction(s -> {
+            for (Task task : updates) updateTask(task);
+            deleteTasks(deleteIds);
+            return null;
+        });
+    }
+
+    private static void checkName(Task task) throws SQLException {
+        if (task.getName() == null) throw new SQLException("NOT NULL constraint failed: Tasks.name");
+    }
+
+    // what reading the row back from SQLite would give
+    private static Task stored(int id, Task task) {
+        TaskStatus status = task.getStatus() == null ? TaskStatus.NOT_STARTED : task.getStatus();
+        return new Task(id, task.getName(), task.getContent(), task.getCategoryName(), status, task.getDue());
+    }
+
+    /** Replaces (or with null removes) the task and its index entries; undone on rollback. */
+    private void putTask(int id, Task task) {
+        Task old = task == null ? tasks.remove(id) : tasks.put(id, task);
+        if (old != null) index.remove(old);
+        if (task != null) index.add(task);
+        if (old == null && task != null) taskCount.incrementAndGet();
+        if (old != null && task == null) taskCount.decrementAndGet();
+        if (undo != null) undo.add(() -> putTask(id, old));
+    }
+
+    // ---- categories ----
+
+    @Override
+    public List<Category> getCategories() throws SQLException {
+        checkOpen();
+        return categories.all();
+    }
+
+    @Override
+    public Category getCategory(String categoryName) throws SQLException {
+        checkOpen();
+        return categories.byName().get(categoryName);
+    }
+
+    @Override
+    public void addCategory(Category category) throws SQLException {
+        inTransaction(s -> {
+            if (categories.byName().containsKey(category.getName())) {
+                throw new SQLException("UNIQUE constraint failed: Categories.name");
+            }
+            LinkedHashMap<String, Category> next = new LinkedHashMap<>(categories.byName());
+            next.put(category.getName(), category);
+            setCategories(next);
+            logCategory(ChangeEvent.Type.CREATED, category);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteCategory(String categoryName) throws SQLException {
+        deleteCategories(List.of(categoryName));
+    }
+
+    @Override
+    public void updateCategory(Category category) throws SQLException {
+        updateCategories(List.of(category));
+    }
+
+    @Override
+    public void addCategories(Collection<Category> categories) throws SQLException {
+        inTransaction(s -> {
+            for (Category c : categories) addCategory(c);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateCategories(Collection<Category> updates) throws SQLException {
+        inTransaction(s -> {
+            LinkedHashMap<String, Category> next = new LinkedHashMap<>(categories.byName());
+            for (Category c : updates) {
+                if (next.containsKey(c.getName())) {
+                    next.put(c.getName(), c);
+                    logCategory(ChangeEvent.Type.UPDATED, c);
+                }
+            }
+            setCategories(next);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteCategories(Collection<String> names) throws SQLException {
+        inTransaction(s -> {
+            LinkedHashMap<String, Category> next = new LinkedHashMap<>(categories.byName());
+            for (String name : names) {
+                Category old = next.remove(name);
+                if (old != null) logCategory(ChangeEvent.Type.DELETED, old);
+            }
+            setCategories(next);
+            return null;
+        });
+    }
+
+    private void setCategories(LinkedHashMap<String, Category> byName) {
+        CategoryTable old = categories;
+        // Map.copyOf does not keep the order, the list does
+        categories = new CategoryTable(List.copyOf(byName.values()), Map.copyOf(byName));
+        if (undo != null) undo.add(() -> categories = old);
+    }
+
+    // ---- change log ----
+
+    private void logTask(ChangeEvent.Type type, Task task) {
+        log(new ChangeEvent(lastChange.incrementAndGet(), System.currentTimeMillis(), ChangeEvent.Entity.TASK, type, task, null));
+    }
+
+    private void logCategory(ChangeEvent.Type type, Category category) {
+        log(new ChangeEvent(lastChange.incrementAndGet(), System.currentTimeMillis(), ChangeEvent.Entity.CATEGORY, type, null, category));
+    }
+
+    // every write runs in inTransaction, which publishes the event once the work succeeds
+    private void log(ChangeEvent event) {
+        pending.add(event);
+    }
+
+    @Override
+    public List<ChangeEvent> getChanges(ChangeEvent.Entity entity, long afterSequence, int limit) throws SQLException {
+        checkOpen();
+        List<ChangeEvent> result = new ArrayList<>(Math.min(limit, 1024));
+        for (ChangeEvent e : changes.tailMap(afterSequence, false).values()) {
+            if (result.size() == limit) break;
+            if (e.entity() == entity) result.add(e);
+        }
+        return result;
+    }
+
+    @Override
+    public long latestChangeSequence() throws SQLException {
+        checkOpen();
+        return committedChange;
+    }
+
+    @Override
+    public int trimChangeLog(ChangeEvent.Entity entity, long upToSequence) throws SQLException {
+        return inTransaction(s -> {
+            int n = 0;
+            // trimmed events are gone for good, like a committed DELETE
+            for (Iterator<ChangeEvent> it = changes.headMap(upToSequence, true).values().iterator(); it.hasNext(); ) {
+                if (it.next().entity() == entity) {
+                    it.remove();
+                    n++;
+                }
+            }
+            return n;
+        });
+    }
+
+    @Override
+    public int trimChangeLog(long upToSequence) throws SQLException {
+        return inTransaction(s -> {
+            ConcurrentNavigableMap<Long, ChangeEvent> head = changes.headMap(upToSequence, true);
+            int n = head.size();
+            // trimmed events are gone for good, like a committed DELETE
+            head.clear();
+            return n;
+        });
+    }
+
+    /** Number of distinct words in the search index; for tests and monitoring. */
+    public int indexedWords() {
+        return index.wordCount();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryStorage[tasks=" + taskCount.get() + ", categories=" + categories.all().size()
+                + ", words=" + index.wordCount() + ", changes=" + changes.size() + "]";
+    }
+}
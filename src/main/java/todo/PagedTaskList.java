@@ -0,0 +1,184 @@
+package todo;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Read-only observable list of all tasks (in id order) backed by the database page by page.
+ * Only the pages the TableView actually asks for - the visible rows plus a prefetch margin -
+ * are loaded, and at most {@code maxPages} pages are kept (least recently used are dropped),
+ * so memory stays flat no matter how many tasks exist. Must only be used from the FX thread.
+ * <p>
+ * Pages are fetched in the background through {@link AsyncDao}: a row whose page is not
+ * loaded yet reads as {@code null} and an update event is fired once the page arrives, so
+ * scrolling never waits on SQLite.
+ */
+public class PagedTaskList extends ObservableListBase<Task> {
+
+    private final AsyncDao dao;
+    private final int pageSize;
+    private final int prefetch;
+    private final Map<Integer, List<Task>> pages;
+    private final Set<Integer> loading = new HashSet<>();
+    private final Consumer<Throwable> onError;
+    // bumped on refresh/remove so pages requested before it are dropped when they arrive
+    private int generation;
+    private int size;
+
+    public PagedTaskList(AsyncDao dao, int pageSize, int maxPages, Consumer<Throwable> onError) {
+        this.dao = dao;
+        this.pageSize = pageSize;
+        this.prefetch = Math.max(1, pageSize / 4);
+        this.onError = onError;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Task>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        int pageNo = index / pageSize;
+        int offset = index % pageSize;
+        // rows close to a page boundary: request the neighbour now so scrolling does not stall on it
+        if (offset >= pageSize - prefetch && (pageNo + 1) * pageSize < size) request(pageNo + 1);
+        else if (offset < prefetch && pageNo > 0) request(pageNo - 1);
+        List<Task> page = pages.get(pageNo);
+        if (page == null) {
+            request(pageNo);
+            return null;
+        }
+        // the table shrank underneath us (e.g. deleted elsewhere); the next refresh fixes the size
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void request(int pageNo) {
+        if (pages.containsKey(pageNo) || !loading.add(pageNo)) return;
+        List<Task> previous = pages.get(pageNo - 1);
+        // an appended row that is still being saved has a temporary negative id, no use as a key
+        int lastId = previous != null && previous.size() == pageSize ? previous.get(pageSize - 1).getId() : 0;
+        CompletableFuture<List<Task>> load = lastId > 0
+                // keyset read from the previous page's last id instead of an OFFSET scan
+                ? dao.getTasksAfter(lastId, pageSize)
+                : dao.getTasksPage(pageNo * pageSize, pageSize);
+        int gen = generation;
+        load.whenComplete((page, ex) -> Platform.runLater(() -> {
+            if (gen != generation) return;
+            loading.remove(pageNo);
+            if (ex != null) {
+                onError.accept(ex);
+                return;
+            }
+            pages.put(pageNo, new ArrayList<>(page));
+            int from = pageNo * pageSize;
+            int to = Math.min(size, from + page.size());
+            if (from >= to) return;
+            beginChange();
+            for (int i = from; i < to; i++) nextUpdate(i);
+            endChange();
+        }));
+    }
+
+    /**
+     * Drops every cached page and re-reads the row count in the background. The returned
+     * future completes on the FX thread once the new size has been published.
+     */
+    public CompletableFuture<Integer> refresh() {
+        int gen = ++generation;
+        pages.clear();
+        loading.clear();
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        dao.countTasks().whenComplete((count, ex) -> Platform.runLater(() -> {
+            if (gen != generation) {
+                done.cancel(false);
+                return;
+            }
+            if (ex != null) {
+                onError.accept(ex);
+                done.completeExceptionally(ex);
+                return;
+            }
+            int oldSize = size;
+            size = count;
+            beginChange();
+            if (oldSize > 0) nextRemove(0, Collections.nCopies(oldSize, null));
+            if (size > 0) nextAdd(0, size);
+            endChange();
+            done.complete(size);
+        }));
+        return done;
+    }
+
+    /** A task that was just created: new ids are the largest, so it goes last. */
+    public void append(Task task) {
+        List<Task> last = pages.get(size / pageSize);
+        if (last != null) last.add(task);
+        size++;
+        beginChange();
+        nextAdd(size - 1, size);
+        endChange();
+    }
+
+    /** Swaps in the new version of a task with the same id, if that row is loaded. */
+    public void replace(Task task) {
+        replace(task.getId(), task);
+    }
+
+    /** Replaces the loaded row with id {@code id} by {@code task}, which may carry a different id. */
+    public void replace(int id, Task task) {
+        int index = indexOfLoaded(id);
+        if (index < 0) return;
+        Task old = pages.get(index / pageSize).set(index % pageSize, task);
+        beginChange();
+        nextSet(index, old);
+        endChange();
+    }
+
+    /** Removes a deleted task. Rows after it shift up, so pages from there on are reloaded lazily. */
+    public void removeTask(Task task) {
+        int index = indexOfLoaded(task.getId());
+        if (index < 0) {
+            refresh();
+            return;
+        }
+        int pageNo = index / pageSize;
+        Task removed = pages.get(pageNo).get(index % pageSize);
+        pages.keySet().removeIf(p -> p >= pageNo);
+        // pages in flight may have been read before the delete; request them again
+        loading.clear();
+        generation++;
+        size--;
+        beginChange();
+        nextRemove(index, removed);
+        endChange();
+    }
+
+    private int indexOfLoaded(int id) {
+        for (Map.Entry<Integer, List<Task>> e : pages.entrySet()) {
+            List<Task> page = e.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                if (page.get(i).getId() == id) return e.getKey() * pageSize + i;
+            }
+        }
+        return -1;
+    }
+}
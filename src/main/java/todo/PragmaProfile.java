@@ -0,0 +1,150 @@
+package todo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * SQLite durability/performance settings applied to every connection the pool opens.
+ * Start from one of the presets and override single values if needed:
+ * <ul>
+ *     <li>{@code safe} - WAL, synchronous=FULL: every commit is durable, even on power loss.</li>
+ *     <li>{@code balanced} - WAL, synchronous=NORMAL: a power loss may drop the last commits,
+ *     but never corrupts the database. Default.</li>
+ *     <li>{@code fast} - WAL, synchronous=OFF, large cache and mmap: for imports and throwaway
+ *     data, an OS crash can corrupt the database.</li>
+ * </ul>
+ */
+public class PragmaProfile {
+
+    private final String name;
+    private String journalMode;
+    private String synchronous;
+    private int cacheSize;
+    private long mmapSize;
+    private String tempStore;
+    private int busyTimeoutMillis;
+
+    private PragmaProfile(String name, String journalMode, String synchronous, int cacheSize,
+                          long mmapSize, String tempStore, int busyTimeoutMillis) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    // cache_size < 0 means KiB rather than pages
+    public static PragmaProfile safe() {
+        return new PragmaProfile("safe", "WAL", "FULL", -2_000, 0, "DEFAULT", 5_000);
+    }
+
+    public static PragmaProfile balanced() {
+        return new PragmaProfile("balanced", "WAL", "NORMAL", -16_000, 64L << 20, "MEMORY", 5_000);
+    }
+
+    public static PragmaProfile fast() {
+        return new PragmaProfile("fast", "WAL", "OFF", -64_000, 256L << 20, "MEMORY", 10_000);
+    }
+
+    public static PragmaProfile named(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "safe" -> safe();
+            case "balanced" -> balanced();
+            case "fast" -> fast();
+            default -> throw new IllegalArgumentException("Unknown SQLite profile: " + name);
+        };
+    }
+
+    /**
+     * Preset from {@code todo.db.profile} with single values overridden by
+     * {@code todo.db.journalMode}, {@code todo.db.synchronous}, {@code todo.db.cacheSize},
+     * {@code todo.db.mmapSize}, {@code todo.db.tempStore} and {@code todo.db.busyTimeoutMillis}.
+     */
+    public static PragmaProfile fromSystemProperties() {
+        PragmaProfile p = named(System.getProperty("todo.db.profile", "balanced"));
+        p.setJournalMode(System.getProperty("todo.db.journalMode", p.getJournalMode()));
+        p.setSynchronous(System.getProperty("todo.db.synchronous", p.getSynchronous()));
+        p.setCacheSize(Integer.getInteger("todo.db.cacheSize", p.getCacheSize()));
+        p.setMmapSize(Long.getLong("todo.db.mmapSize", p.getMmapSize()));
+        p.setTempStore(System.getProperty("todo.db.tempStore", p.getTempStore()));
+        p.setBusyTimeoutMillis(Integer.getInteger("todo.db.busyTimeoutMillis", p.getBusyTimeoutMillis()));
+        return p;
+    }
+
+    public void apply(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            // busy_timeout first so that switching the journal mode waits for other connections
+            st.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            st.execute("PRAGMA journal_mode = " + journalMode);
+            st.execute("PRAGMA synchronous = " + synchronous);
+            st.execute("PRAGMA cache_size = " + cacheSize);
+            st.execute("PRAGMA mmap_size = " + mmapSize);
+            st.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public void setJournalMode(String journalMode) {
+        this.journalMode = keyword(journalMode, "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(String synchronous) {
+        this.synchronous = keyword(synchronous, "OFF", "NORMAL", "FULL", "EXTRA");
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public void setMmapSize(long mmapSize) {
+        if (mmapSize < 0) throw new IllegalArgumentException("mmap_size must not be negative");
+        this.mmapSize = mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public void setTempStore(String tempStore) {
+        this.tempStore = keyword(tempStore, "DEFAULT", "FILE", "MEMORY");
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        if (busyTimeoutMillis < 0) throw new IllegalArgumentException("busy_timeout must not be negative");
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    // values are concatenated into PRAGMA statements, so only known keywords are accepted
+    private static String keyword(String value, String... allowed) {
+        String upper = value.toUpperCase(Locale.ROOT);
+        for (String a : allowed) if (a.equals(upper)) return upper;
+        throw new IllegalArgumentException("Unsupported value: " + value);
+    }
+}
@@ -0,0 +1,134 @@
+package todo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned schema migrations. The schema version is kept in {@code PRAGMA user_version};
+ * every migration with a higher version than the database runs exactly once, inside its
+ * own transaction, and bumps the version when it commits. New schema changes are added
+ * by appending a migration to {@link #MIGRATIONS} - never edit one that has shipped.
+ */
+public class SchemaMigrations {
+
+    public record Migration(int version, String description, List<String> statements) {
+    }
+
+    public record AppliedMigration(int version, String description, long durationNanos) {
+    }
+
+    public static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create Categories and Tasks tables", List.of(
+                    "CREATE TABLE IF NOT EXISTS Categories (name TEXT PRIMARY KEY, description TEXT)",
+                    "CREATE TABLE IF NOT EXISTS Tasks (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, content TEXT, categoryName TEXT, status TEXT, dueDate TEXT, FOREIGN KEY(categoryName) REFERENCES Categories(name))"
+            )),
+            new Migration(2, "Index Tasks by category/status, status and due date", List.of(
+                    // (categoryName, status) also covers per-category counts grouped by status
+                    "CREATE INDEX IF NOT EXISTS idx_tasks_category_status ON Tasks(categoryName, status)",
+                    "CREATE INDEX IF NOT EXISTS idx_tasks_status ON Tasks(status)",
+                    "CREATE INDEX IF NOT EXISTS idx_tasks_due ON Tasks(dueDate)"
+            )),
+            new Migration(3, "Full-text index over task name, content and category", List.of(
+                    // external-content table: the text lives only in Tasks, TasksFts holds the index;
+                    // prefix indexes make the as-you-type "term*" queries index lookups too
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS TasksFts USING fts5(name, content, categoryName, content='Tasks', content_rowid='id', tokenize='unicode61 remove_diacritics 2', prefix='2 3')",
+                    "CREATE TRIGGER IF NOT EXISTS tasks_fts_insert AFTER INSERT ON Tasks BEGIN "
+                            + "INSERT INTO TasksFts(rowid, name, content, categoryName) VALUES (new.id, new.name, new.content, new.categoryName); END",
+                    "CREATE TRIGGER IF NOT EXISTS tasks_fts_delete AFTER DELETE ON Tasks BEGIN "
+                            + "INSERT INTO TasksFts(TasksFts, rowid, name, content, categoryName) VALUES ('delete', old.id, old.name, old.content, old.categoryName); END",
+                    // status/due date changes do not touch the index
+                    "CREATE TRIGGER IF NOT EXISTS tasks_fts_update AFTER UPDATE OF name, content, categoryName ON Tasks BEGIN "
+                            + "INSERT INTO TasksFts(TasksFts, rowid, name, content, categoryName) VALUES ('delete', old.id, old.name, old.content, old.categoryName); "
+                            + "INSERT INTO TasksFts(rowid, name, content, categoryName) VALUES (new.id, new.name, new.content, new.categoryName); END",
+                    // index the rows that existed before this migration
+                    "INSERT INTO TasksFts(TasksFts) VALUES ('rebuild')"
+            )),
+            new Migration(4, "Typed due dates: dueDay column (epoch days) with an index", List.of(
+                    // computed from dueDate, so writers keep binding only the text and existing rows need no backfill;
+                    // null unless dueDate is a valid ISO date (date() normalizes days like 02-30, which then differ);
+                    // julianday of a plain date is x.5, so the subtraction is exact
+                    "ALTER TABLE Tasks ADD COLUMN dueDay INTEGER GENERATED ALWAYS AS "
+                            + "(CASE WHEN date(dueDate) = dueDate THEN CAST(julianday(dueDate) - 2440587.5 AS INTEGER) END) VIRTUAL",
+                    "CREATE INDEX IF NOT EXISTS idx_tasks_due_day ON Tasks(dueDay)"
+            )),
+            new Migration(5, "Change log of task and category writes", List.of(
+                    // AUTOINCREMENT: sequence numbers are never reused, even after the log is trimmed;
+                    // task rows use the Tasks column names, category rows fill name and description
+                    "CREATE TABLE IF NOT EXISTS ChangeLog (seq INTEGER PRIMARY KEY AUTOINCREMENT, at INTEGER NOT NULL, entity TEXT NOT NULL, op TEXT NOT NULL, "
+                            + "id INTEGER, name TEXT, content TEXT, categoryName TEXT, status TEXT, dueDate TEXT, description TEXT)",
+                    "CREATE INDEX IF NOT EXISTS idx_changelog_entity ON ChangeLog(entity, seq)",
+                    // triggers write the log in the same transaction as the change itself, bulk writes included
+                    changeTrigger("tasks_log_insert", "INSERT", "Tasks", "task", "created", "new"),
+                    changeTrigger("tasks_log_update", "UPDATE", "Tasks", "task", "updated", "new"),
+                    changeTrigger("tasks_log_delete", "DELETE", "Tasks", "task", "deleted", "old"),
+                    changeTrigger("categories_log_insert", "INSERT", "Categories", "category", "created", "new"),
+                    changeTrigger("categories_log_update", "UPDATE", "Categories", "category", "updated", "new"),
+                    changeTrigger("categories_log_delete", "DELETE", "Categories", "category", "deleted", "old")
+            ))
+    );
+
+    private static String changeTrigger(String name, String event, String table, String entity, String op, String row) {
+        String columns = table.equals("Tasks")
+                ? "id, name, content, categoryName, status, dueDate"
+                : "name, description";
+        String values = row + "." + columns.replace(", ", ", " + row + ".");
+        // milliseconds since the epoch; julianday('now') has millisecond precision
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON " + table + " BEGIN "
+                + "INSERT INTO ChangeLog(at, entity, op, " + columns + ") VALUES (CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER), '"
+                + entity + "', '" + op + "', " + values + "); END";
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet res = st.executeQuery("PRAGMA user_version")) {
+            return res.next() ? res.getInt(1) : 0;
+        }
+    }
+
+    public static List<AppliedMigration> migrate(Connection connection) throws SQLException {
+        return migrate(connection, MIGRATIONS);
+    }
+
+    /**
+     * Applies every migration newer than the database's user_version, in order.
+     * Returns the migrations that actually ran together with how long each one took.
+     */
+    public static List<AppliedMigration> migrate(Connection connection, List<Migration> migrations) throws SQLException {
+        List<AppliedMigration> applied = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.version() <= currentVersion(connection)) continue;
+            long start = System.nanoTime();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement st = connection.createStatement()) {
+                // another process may have migrated between the check above and our transaction
+                if (migration.version() <= currentVersion(connection)) {
+                    connection.rollback();
+                    continue;
+                }
+                for (String sql : migration.statements()) st.execute(sql);
+                st.execute("PRAGMA user_version = " + migration.version());
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    ex.addSuppressed(rollbackEx);
+                }
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            applied.add(new AppliedMigration(migration.version(), migration.description(), System.nanoTime() - start));
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,185 @@
+package todo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * As-you-type task search. {@link #submit(String)} may be called on every keystroke:
+ * <ul>
+ *     <li>a query only runs once the input has been quiet for the debounce delay;</li>
+ *     <li>a newer submission cancels a query that has not started yet and suppresses the
+ *     result of one that is already running;</li>
+ *     <li>when the new query only extends the last one (more letters or more words) and the
+ *     last result was complete, the last result is filtered in memory instead of asking
+ *     the database again;</li>
+ *     <li>each result is handed to {@code onResult} as a whole through the {@code publisher}
+ *     executor (e.g. {@code Platform::runLater}), and only if it is still the latest query.</li>
+ * </ul>
+ * Matching follows the full-text index: every word of the query must be the start of a word
+ * in the task's name, content or category, ignoring case and accents.
+ */
+public class SearchPipeline implements AutoCloseable {
+
+    public record Result(String query, List<Task> tasks, boolean refined) {
+    }
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final TaskDao taskDao;
+    private final int limit;
+    private final long debounceMillis;
+    private final Executor publisher;
+    private final Consumer<Result> onResult;
+    private final Consumer<Throwable> onError;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService searcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong databaseQueries = new AtomicLong();
+    private final AtomicLong refinements = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private ScheduledFuture<?> pending;
+    // last result that ran to completion; base for refining the next query
+    private volatile Result last;
+
+    public SearchPipeline(TaskDao taskDao, int limit, long debounceMillis, Executor publisher,
+                          Consumer<Result> onResult, Consumer<Throwable> onError) {
+        this.taskDao = taskDao;
+        this.limit = limit;
+        this.debounceMillis = debounceMillis;
+        this.publisher = publisher;
+        this.onResult = onResult;
+        this.onError = onError;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "search-debounce");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Schedules a search for {@code query}, superseding any earlier one. */
+    public synchronized void submit(String query) {
+        long gen = supersede();
+        pending = timer.schedule(() -> searcher.execute(() -> run(gen, query)), debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Drops the pending or running search without starting a new one, e.g. when the query is cleared. */
+    public synchronized void cancel() {
+        supersede();
+    }
+
+    private long supersede() {
+        if (pending != null && pending.cancel(false)) superseded.incrementAndGet();
+        pending = null;
+        return generation.incrementAndGet();
+    }
+
+    private void run(long gen, String query) {
+        if (gen != generation.get()) {
+            superseded.incrementAndGet();
+            return;
+        }
+        Result result;
+        try {
+            Result base = last;
+            if (base != null && base.tasks().size() < limit && extendsQuery(query, base.query())) {
+                refinements.incrementAndGet();
+                String[] terms = terms(query);
+                List<Task> kept = new ArrayList<>();
+                for (Task t : base.tasks()) {
+                    if (matches(t, terms)) kept.add(t);
+                }
+                result = new Result(query, List.copyOf(kept), true);
+            } else {
+                databaseQueries.incrementAndGet();
+                result = new Result(query, List.copyOf(taskDao.searchTasks(query, limit)), false);
+            }
+        } catch (RuntimeException ex) {
+            publisher.execute(() -> {
+                if (gen == generation.get()) onError.accept(ex);
+            });
+            return;
+        }
+        if (gen != generation.get()) {
+            superseded.incrementAndGet();
+            return;
+        }
+        last = result;
+        publisher.execute(() -> {
+            // a newer query may have been submitted while this result was queued
+            if (gen == generation.get()) onResult.accept(result);
+        });
+    }
+
+    /**
+     * Forgets the last result, so the next query goes to the database. Call after tasks were
+     * added, changed or removed, since the cached result may no longer be accurate.
+     */
+    public void invalidate() {
+        last = null;
+    }
+
+    // "baz" -> "baza", "baza" -> "baza dan": every task matching the new query matches the old one
+    static boolean extendsQuery(String query, String previous) {
+        String p = fold(previous).strip();
+        return !p.isEmpty() && fold(query).startsWith(p);
+    }
+
+    static String[] terms(String query) {
+        return SEPARATORS.splitAsStream(fold(query)).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    static boolean matches(Task task, String[] terms) {
+        String[] words = terms(String.join(" ", nullToEmpty(task.getName()), nullToEmpty(task.getContent()), nullToEmpty(task.getCategoryName())));
+        for (String term : terms) {
+            boolean found = false;
+            for (String w : words) {
+                if (w.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static String fold(String s) {
+        return MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    public long getDatabaseQueries() {
+        return databaseQueries.get();
+    }
+
+    public long getRefinements() {
+        return refinements.get();
+    }
+
+    public long getSuperseded() {
+        return superseded.get();
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        timer.shutdownNow();
+        searcher.shutdown();
+    }
+}
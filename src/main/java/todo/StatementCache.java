@@ -0,0 +1,78 @@
+package todo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for a single connection, keyed by SQL text.
+ * Statements handed out by the cache are owned by it: callers must close their
+ * ResultSets but never the statement itself. Not thread-safe, a connection is only
+ * ever used by the thread holding its lease.
+ */
+public class StatementCache {
+
+    private final Connection connection;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    public StatementCache(Connection connection, int capacity, LongAdder hits, LongAdder misses) {
+        if (capacity < 1) throw new IllegalArgumentException("Statement cache capacity must be at least 1");
+        this.connection = connection;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+        PreparedStatement smt = statements.get(key);
+        if (smt != null && !smt.isClosed()) {
+            hits.increment();
+            // drop anything a failed caller may have left behind
+            smt.clearBatch();
+            smt.clearParameters();
+            return smt;
+        }
+        misses.increment();
+        smt = connection.prepareStatement(sql, autoGeneratedKeys);
+        statements.put(key, smt);
+        if (statements.size() > capacity) evictEldest();
+        return smt;
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+        PreparedStatement eldest = it.next().getValue();
+        it.remove();
+        closeQuietly(eldest);
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /** Closes every cached statement. */
+    public void clear() {
+        for (PreparedStatement smt : statements.values()) closeQuietly(smt);
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement smt) {
+        try {
+            smt.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
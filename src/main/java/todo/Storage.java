@@ -0,0 +1,47 @@
+package todo;
+
+import java.sql.SQLException;
+
+/**
+ * Storage SPI behind the DAOs: tasks, categories, the change log and transactions. {@link Db}
+ * is the SQLite backend; {@link MemoryStorage} keeps everything in concurrent in-memory
+ * indexes for tests, benchmarks and throwaway data; {@link LogStorage} appends every write to
+ * memory-mapped segment files. {@link #fromSystemProperties()} picks one with
+ * {@code -Dtodo.storage=sqlite|memory|log}.
+ */
+public interface Storage extends TaskStorage, CategoryStorage, ChangeLogStorage, AutoCloseable {
+
+    /** Work run inside {@link #inTransaction}; it uses the given storage for every read and write. */
+    @FunctionalInterface
+    interface Work<T> {
+        T run(Storage storage) throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} as one transaction: either all of its writes are kept or, if it throws,
+     * none. Transactions are serialized with all other writes; a nested call joins the
+     * enclosing transaction. Reads inside the work see its own writes.
+     */
+    <T> T inTransaction(Work<T> work) throws SQLException;
+
+    @Override
+    void close();
+
+    /**
+     * The backend named by {@code todo.storage}: {@code sqlite} (the default, the database in
+     * the user's home directory), {@code memory} or {@code log} (configured by {@link LogConfig}).
+     */
+    static Storage fromSystemProperties() {
+        String name = System.getProperty("todo.storage", "sqlite");
+        try {
+            return switch (name) {
+                case "sqlite" -> new Db();
+                case "memory" -> new MemoryStorage();
+                case "log" -> LogStorage.open(LogConfig.fromSystemProperties());
+                default -> throw new IllegalArgumentException("Unknown storage: " + name);
+            };
+        } catch (SQLException ex) {
+            throw new RuntimeException("Failed to open database", ex);
+        }
+    }
+}
@@ -1,14 +1,24 @@
 
 package todo;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 public class Task {
 
-    private int id;
-    private String name;
-    private String content;
-    private String categoryName;
-    private TaskStatus status;
-    private String due;
+    // stands for "parsed, no date"; parseDue never returns it since it needs a 4-digit year
+    private static final LocalDate NO_DUE_DATE = LocalDate.MIN;
+
+    private final int id;
+    private final String name;
+    private final String content;
+    private final String categoryName;
+    private final TaskStatus status;
+    private final String due;
+    // parsed from due on first use, null until then. Tasks are shared between threads, so
+    // this is one reference to an immutable LocalDate: a reader sees either nothing yet (and
+    // parses again) or a complete date, never a half-published pair of fields
+    private LocalDate dueDate;
 
     public Task(int id, String name, String content, String categoryName, TaskStatus status, String due) {
         this.id = id;
@@ -42,4 +52,30 @@ public class Task {
     public String getDue() {
         return due;
     }
+
+    /**
+     * The due date, or null when the task has none or {@code due} is not an ISO date.
+     */
+    public LocalDate getDueDate() {
+        LocalDate date = dueDate;
+        if (date == null) {
+            LocalDate parsed = parseDue(due);
+            date = parsed == null ? NO_DUE_DATE : parsed;
+            dueDate = date;
+        }
+        return date == NO_DUE_DATE ? null : date;
+    }
+
+    /**
+     * Parses a stored due value: an ISO date ({@code yyyy-MM-dd}) gives that date, anything
+     * else (null, "" or free text) gives null.
+     */
+    public static LocalDate parseDue(String due) {
+        if (due == null || due.length() != 10) return null;
+        try {
+            return LocalDate.parse(due);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
 }
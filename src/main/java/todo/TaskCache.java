@@ -0,0 +1,228 @@
+package todo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache in front of the task table, used by {@link TaskDao}. Two LRU maps:
+ * single tasks by id, bounded by entry count, and the task list of a category by name,
+ * bounded by the total number of tasks held in those lists (a category with 10 000 tasks
+ * weighs 10 000, one with 3 weighs 3).
+ * <p>
+ * The cache is write-through: the DAO reports every successful create, update and delete and
+ * the cached entries are patched in place rather than dropped, so a hot category stays cached
+ * while it is being edited. Cached lists are immutable and replaced on change. All methods are
+ * thread-safe; loads run outside the lock and are not cached if a write happened meanwhile.
+ */
+public class TaskCache {
+
+    private final int maxTasks;
+    private final long maxCategoryWeight;
+    private final LinkedHashMap<Integer, Task> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, List<Task>> byCategory = new LinkedHashMap<>(16, 0.75f, true);
+    private long categoryWeight;
+    // bumped by every write; a load that started before a write must not be cached
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long loads;
+    private long totalLoadNanos;
+
+    /** Sizes from {@code todo.cache.tasks} (default 10 000) and {@code todo.cache.categoryTasks} (default 100 000). */
+    public TaskCache() {
+        this(Integer.getInteger("todo.cache.tasks", 10_000), Long.getLong("todo.cache.categoryTasks", 100_000L));
+    }
+
+    public TaskCache(int maxTasks, long maxCategoryWeight) {
+        if (maxTasks < 0 || maxCategoryWeight < 0) throw new IllegalArgumentException("Cache sizes must not be negative");
+        this.maxTasks = maxTasks;
+        this.maxCategoryWeight = maxCategoryWeight;
+    }
+
+    /** The cached task, or the result of {@code loader} (which may be null for an unknown id). */
+    public Task getTask(int id, Supplier<Task> loader) {
+        long startVersion;
+        synchronized (this) {
+            Task t = byId.get(id);
+            if (t != null) {
+                hits++;
+                return t;
+            }
+            misses++;
+            startVersion = version;
+        }
+        Task loaded = timedLoad(loader);
+        synchronized (this) {
+            if (loaded != null && startVersion == version) putTask(loaded);
+        }
+        return loaded;
+    }
+
+    /** The cached (immutable) task list of a category, loading it with {@code loader} on a miss. */
+    public List<Task> getCategoryTasks(String categoryName, Supplier<List<Task>> loader) {
+        long startVersion;
+        synchronized (this) {
+            List<Task> tasks = byCategory.get(categoryName);
+            if (tasks != null) {
+                hits++;
+                return tasks;
+            }
+            misses++;
+            startVersion = version;
+        }
+        List<Task> loaded = List.copyOf(timedLoad(loader));
+        synchronized (this) {
+            if (startVersion == version) putCategory(categoryName, loaded);
+        }
+        return loaded;
+    }
+
+    private <T> T timedLoad(Supplier<T> loader) {
+        long start = System.nanoTime();
+        try {
+            return loader.get();
+        } finally {
+            long took = System.nanoTime() - start;
+            synchronized (this) {
+                loads++;
+                totalLoadNanos += took;
+            }
+        }
+    }
+
+    /** A task was inserted; its id is new, so it cannot be in any cached list yet. */
+    public synchronized void created(Task task) {
+        version++;
+        putTask(task);
+        List<Task> list = byCategory.get(task.getCategoryName());
+        if (list != null) {
+            List<Task> patched = new ArrayList<>(list.size() + 1);
+            patched.addAll(list);
+            patched.add(task);
+            putCategory(task.getCategoryName(), List.copyOf(patched));
+        }
+    }
+
+    /** A task was updated in the database. */
+    public synchronized void updated(Task task) {
+        version++;
+        Task old = byId.get(task.getId());
+        putTask(task);
+        if (old != null && !Objects.equals(old.getCategoryName(), task.getCategoryName())) {
+            removeFromCategory(old.getCategoryName(), task.getId());
+        } else if (old == null) {
+            // we do not know where the task was before; it can only be in one list
+            for (String name : new ArrayList<>(byCategory.keySet())) {
+                if (!Objects.equals(name, task.getCategoryName())) removeFromCategory(name, task.getId());
+            }
+        }
+        List<Task> list = byCategory.get(task.getCategoryName());
+        if (list != null) {
+            List<Task> patched = new ArrayList<>(list.size() + 1);
+            boolean replaced = false;
+            for (Task t : list) {
+                if (t.getId() == task.getId()) {
+                    patched.add(task);
+                    replaced = true;
+                } else {
+                    patched.add(t);
+                }
+            }
+            if (!replaced) patched.add(task);
+            putCategory(task.getCategoryName(), List.copyOf(patched));
+        }
+    }
+
+    /** A task was deleted from the database. */
+    public synchronized void deleted(int id) {
+        version++;
+        Task old = byId.remove(id);
+        if (old != null) {
+            removeFromCategory(old.getCategoryName(), id);
+        } else {
+            for (String name : new ArrayList<>(byCategory.keySet())) removeFromCategory(name, id);
+        }
+    }
+
+    /** Drops everything, e.g. after the table was changed behind the DAO's back. */
+    public synchronized void clear() {
+        version++;
+        byId.clear();
+        byCategory.clear();
+        categoryWeight = 0;
+    }
+
+    private void removeFromCategory(String categoryName, int id) {
+        List<Task> list = byCategory.get(categoryName);
+        if (list == null) return;
+        List<Task> patched = new ArrayList<>(list.size());
+        for (Task t : list) {
+            if (t.getId() != id) patched.add(t);
+        }
+        if (patched.size() != list.size()) putCategory(categoryName, List.copyOf(patched));
+    }
+
+    private void putTask(Task task) {
+        byId.put(task.getId(), task);
+        Iterator<Task> it = byId.values().iterator();
+        while (byId.size() > maxTasks) {
+            it.next();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private void putCategory(String categoryName, List<Task> tasks) {
+        List<Task> previous = byCategory.remove(categoryName);
+        if (previous != null) categoryWeight -= previous.size();
+        // a list larger than the whole budget would only flush everything else
+        if (tasks.size() > maxCategoryWeight) return;
+        byCategory.put(categoryName, tasks);
+        categoryWeight += tasks.size();
+        Iterator<List<Task>> it = byCategory.values().iterator();
+        while (categoryWeight > maxCategoryWeight) {
+            categoryWeight -= it.next().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    public synchronized long getTotalLoadNanos() {
+        return totalLoadNanos;
+    }
+
+    public synchronized int getCachedTasks() {
+        return byId.size();
+    }
+
+    public synchronized long getCachedCategoryWeight() {
+        return categoryWeight;
+    }
+}
@@ -5,11 +5,24 @@
 package todo;
 
 import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public class TaskDao {
+public class TaskDao implements AutoCloseable {
 
-    private final Db db;
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final Storage db;
+    private final TaskCache cache;
+    private final DueIndex dueIndex = new DueIndex();
+    private final TaskStats stats = new TaskStats();
+    private final ChangeFeed changeFeed;
+    private volatile WriteBehindQueue writeBehind;
+    // serializes write-behind updates and deletes with the lookups they depend on
+    private final Object writeBehindLock = new Object();
 
     public TaskDao() {
         try {
@@ -17,13 +30,146 @@ public class TaskDao {
         } catch (SQLException ex) {
             throw new RuntimeException("Failed to open database", ex);
         }
+        this.cache = new TaskCache();
+        this.changeFeed = new ChangeFeed(db, ChangeEvent.Entity.TASK);
     }
 
     /**
-     * Constructor for tests: inject a custom Db instance (e.g. using a temp file).
+     * Works on the given storage backend, e.g. a {@link Db} on a temp file in tests or a
+     * {@link MemoryStorage}.
      */
-    public TaskDao(Db db) {
+    public TaskDao(Storage db) {
+        this(db, new TaskCache());
+    }
+
+    public TaskDao(Storage db, TaskCache cache) {
         this.db = db;
+        this.cache = cache;
+        this.changeFeed = new ChangeFeed(db, ChangeEvent.Entity.TASK);
+    }
+
+    public TaskCache getCache() {
+        return cache;
+    }
+
+    public DueIndex getDueIndex() {
+        return dueIndex;
+    }
+
+    /**
+     * Created/updated/deleted events of all task writes, see {@link ChangeFeed}.
+     */
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * Task counts per category and status, counted on first use and then kept current by
+     * this DAO's writes.
+     */
+    public TaskStats getStats() {
+        stats.ensureLoaded(this::loadStats);
+        return stats;
+    }
+
+    /**
+     * Recounts {@link #getStats()} from the database, e.g. after writes that bypassed the DAO.
+     */
+    public void reloadStats() {
+        stats.reload(this::loadStats);
+    }
+
+    /**
+     * Switches {@link #updateTask} and {@link #deleteTask} to write-behind mode: they update the
+     * cache, indexes and counters and return at once, and a {@link WriteBehindQueue} commits
+     * the changes in group transactions, one per {@code flushLatencyMillis} at most, with
+     * repeated changes to one task coalesced. {@link #getTask} sees queued changes; other reads
+     * go to the database and see a change once its group is committed, so a caller that re-reads
+     * pages or search results after a write calls {@link #flush()} first. Bulk writes flush the
+     * queue first. A change that fails to commit is dropped and what it did here is undone.
+     * See {@link WriteBehindQueue} for what a crash loses; {@link #close()} commits everything
+     * queued.
+     */
+    public synchronized void enableWriteBehind(long flushLatencyMillis, int capacity) {
+        if (writeBehind != null) throw new IllegalStateException("Write-behind is already enabled");
+        writeBehind = new WriteBehindQueue(new WriteBehindQueue.Sink() {
+            @Override
+            public void write(List<Task> updates, int[] deletes) throws SQLException {
+                try {
+                    db.writeTasks(updates, deletes);
+                } finally {
+                    changeFeed.signal();
+                }
+            }
+
+            @Override
+            public void dropped(int id, Task update, boolean superseded, Exception error) {
+                droppedWrite(id, update, superseded);
+            }
+        }, flushLatencyMillis, capacity);
+    }
+
+    // a queued change failed to commit: undo what it did to the cache, due index and counters
+    private void droppedWrite(int id, Task update, boolean superseded) {
+        // the task may sit in category lists it never reached in the database
+        cache.clear();
+        // a newer queued change already replaced the dropped one here
+        if (superseded) return;
+        Task committed;
+        try {
+            committed = db.getTask(id);
+        } catch (SQLException ex) {
+            // the queue has reported the drop already; reloadStats() recounts once the database is back
+            return;
+        }
+        if (committed == null) dueIndex.remove(id);
+        else dueIndex.put(committed);
+        if (update == null) {
+            if (committed != null) stats.created(committed);
+        } else if (committed == null) {
+            stats.deleted(update);
+        } else {
+            stats.updated(update, committed);
+        }
+    }
+
+    /** The write-behind queue, or null while writes are synchronous. */
+    public WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    /** Commits every queued write-behind change and waits for it; a no-op in synchronous mode. */
+    public void flush() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) queue.flush();
+    }
+
+    /**
+     * Commits and stops write-behind mode; afterwards writes are synchronous again.
+     */
+    @Override
+    public synchronized void close() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue == null) return;
+        writeBehind = null;
+        queue.close();
+    }
+
+    private void loadStats() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            // queued changes are counted already, so they have to be in the table the query reads
+            try {
+                queue.flush();
+            } catch (RuntimeException ex) {
+                // what it dropped was taken back out of the counts and reported by the queue
+            }
+        }
+        try {
+            db.loadTaskCounts(stats);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
     public List<Task> getAllTasks() {
@@ -34,28 +180,303 @@ public class TaskDao {
         }
     }
 
+    /**
+     * The task with the given id or null, served from the cache when possible.
+     */
+    public Task getTask(int id) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) return queue.lookup(id, this::loadTask);
+        return loadTask(id);
+    }
+
+    private Task loadTask(int id) {
+        return cache.getTask(id, () -> {
+            try {
+                return db.getTask(id);
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+    }
+
+    /**
+     * Tasks of one category (immutable), served from the cache when possible.
+     */
+    public List<Task> getTasksByCategory(String categoryName) {
+        return cache.getCategoryTasks(categoryName, () -> {
+            try {
+                return db.getTasks(categoryName);
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+    }
+
+    /**
+     * Up to {@code limit} tasks with id greater than {@code afterId}, in id order.
+     */
+    public List<Task> getTasksAfter(int afterId, int limit) {
+        try {
+            return db.getTasksAfter(afterId, limit);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Up to {@code limit} tasks starting at row {@code offset} in id order.
+     */
+    public List<Task> getTasksPage(int offset, int limit) {
+        try {
+            return db.getTasksPage(offset, limit);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public int countTasks() {
+        try {
+            return db.countTasks();
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Streams all tasks in id order, holding one page in memory at a time.
+     */
+    public Stream<Task> streamAllTasks() {
+        return streamAllTasks(DEFAULT_PAGE_SIZE);
+    }
+
+    public Stream<Task> streamAllTasks(int pageSize) {
+        return db.streamTasks(pageSize);
+    }
+
+    /**
+     * Loads every task into a compact columnar {@link TaskStore}, one page at a time.
+     */
+    public TaskStore loadTaskStore() {
+        try (Stream<Task> tasks = streamAllTasks()) {
+            return TaskStore.of(tasks);
+        }
+    }
+
+    /**
+     * Ids of tasks whose name, content or category match every word of {@code query}
+     * (prefix match, ignoring case and accents), best match first, at most {@code limit}.
+     */
+    public int[] searchTaskIds(String query, int limit) {
+        try {
+            return db.searchTaskIds(query, limit);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public List<Task> getTasksByIds(int[] ids) {
+        try {
+            return db.getTasksByIds(ids);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Ranked full-text search, see {@link #searchTaskIds(String, int)}.
+     */
+    public List<Task> searchTasks(String query, int limit) {
+        return getTasksByIds(searchTaskIds(query, limit));
+    }
+
+    /**
+     * Up to {@code limit} tasks due from {@code from} to {@code to} (both inclusive, any status),
+     * earliest first. Answered from the in-memory {@link DueIndex}, loaded on first use.
+     */
+    public List<Task> getTasksDueBetween(LocalDate from, LocalDate to, int limit) {
+        return getTasksByIds(loadedDueIndex().between(from, to, limit));
+    }
+
+    /**
+     * Tasks due in the Monday-to-Sunday week containing {@code today}, earliest first.
+     */
+    public List<Task> getTasksDueThisWeek(LocalDate today) {
+        LocalDate monday = today.with(DayOfWeek.MONDAY);
+        return getTasksDueBetween(monday, monday.plusDays(6), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Up to {@code limit} open tasks (not DONE or ABANDONED) due before {@code today}, most overdue first.
+     */
+    public List<Task> getOverdueTasks(LocalDate today, int limit) {
+        return getTasksByIds(loadedDueIndex().openBefore(today, limit));
+    }
+
+    /**
+     * The next {@code n} open tasks due on or after {@code from}, earliest first.
+     */
+    public List<Task> getNextDueTasks(LocalDate from, int n) {
+        return getTasksByIds(loadedDueIndex().openFrom(from, n));
+    }
+
+    private DueIndex loadedDueIndex() {
+        dueIndex.ensureLoaded(() -> {
+            try {
+                db.loadDueDays(dueIndex);
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        return dueIndex;
+    }
+
     public int createTask(Task task) {
+        stats.writeStarted();
         try {
-            return db.createTask(task);
+            int id = db.createTask(task);
+            Task created = withId(task, id);
+            cache.created(created);
+            dueIndex.put(created);
+            stats.created(created);
+            return id;
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            stats.writeFinished();
+            changeFeed.signal();
         }
     }
 
+    /** Updates the task; an unknown id changes nothing, neither in the storage nor here. */
     public void updateTask(Task task) {
+        stats.writeStarted();
         try {
-            db.updateTask(task);
+            WriteBehindQueue queue = writeBehind;
+            if (queue != null) {
+                // getTask sees queued changes; the lock keeps that check and the enqueue together
+                synchronized (writeBehindLock) {
+                    Task previous = getTask(task.getId());
+                    if (previous == null) return;
+                    queue.update(task);
+                    updated(previous, task);
+                }
+            } else {
+                // the old row is read in the write's transaction, so concurrent writers cannot skew the counters
+                Task previous = db.inTransaction(s -> {
+                    Task old = s.getTask(task.getId());
+                    return s.updateTask(task) ? old : null;
+                });
+                if (previous != null) updated(previous, task);
+            }
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            stats.writeFinished();
+            changeFeed.signal();
         }
     }
 
+    private void updated(Task previous, Task task) {
+        cache.updated(task);
+        dueIndex.put(task);
+        stats.updated(previous, task);
+    }
+
+    /** Deletes the task; an unknown id changes nothing, neither in the storage nor here. */
     public void deleteTask(int id) {
+        stats.writeStarted();
         try {
-            Task t = new Task(id, "", "", null, TaskStatus.NOT_STARTED, null);
-            db.deleteTask(t);
+            WriteBehindQueue queue = writeBehind;
+            if (queue != null) {
+                synchronized (writeBehindLock) {
+                    Task previous = getTask(id);
+                    if (previous == null) return;
+                    queue.delete(id);
+                    deleted(id, previous);
+                }
+            } else {
+                Task previous = db.inTransaction(s -> {
+                    Task old = s.getTask(id);
+                    return s.deleteTask(new Task(id, "", "", null, TaskStatus.NOT_STARTED, null)) ? old : null;
+                });
+                if (previous != null) deleted(id, previous);
+            }
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            stats.writeFinished();
+            changeFeed.signal();
         }
     }
+
+    private void deleted(int id, Task previous) {
+        cache.deleted(id);
+        dueIndex.remove(id);
+        stats.deleted(previous);
+    }
+
+    /**
+     * Inserts all tasks in a single transaction and returns their ids in iteration order.
+     */
+    public int[] createTasks(Collection<Task> tasks) {
+        stats.writeStarted();
+        try {
+            int[] ids = db.createTasks(tasks);
+            int i = 0;
+            for (Task task : tasks) {
+                Task created = withId(task, ids[i++]);
+                cache.created(created);
+                dueIndex.put(created);
+                stats.created(created);
+            }
+            return ids;
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            stats.writeFinished();
+            changeFeed.signal();
+        }
+    }
+
+    public void updateTasks(Collection<Task> tasks) {
+        stats.writeStarted();
+        try {
+            flush();
+            db.updateTasks(tasks);
+            for (Task task : tasks) {
+                cache.updated(task);
+                dueIndex.put(task);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            stats.writeFinished();
+            changeFeed.signal();
+        }
+        // the previous rows are not read back, so count again in one query
+        if (stats.isLoaded()) reloadStats();
+    }
+
+    public void deleteTasks(int[] ids) {
+        stats.writeStarted();
+        try {
+            flush();
+            db.deleteTasks(ids);
+            for (int id : ids) {
+                cache.deleted(id);
+                dueIndex.remove(id);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            stats.writeFinished();
+            changeFeed.signal();
+        }
+        // the deleted rows are not read back, so count again in one query
+        if (stats.isLoaded()) reloadStats();
+    }
+
+    private static Task withId(Task task, int id) {
+        return new Task(id, task.getName(), task.getContent(), task.getCategoryName(), task.getStatus(), task.getDue());
+    }
 }
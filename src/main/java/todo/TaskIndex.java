@@ -0,0 +1,135 @@
+package todo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Secondary indexes over tasks for the storage engines that do not sit on SQLite
+ * ({@link MemoryStorage}, {@link LogStorage}): task ids per category, and a sorted word index
+ * for full-text search where a prefix query is a range of words. Both are concurrent, so
+ * lookups need no lock; updates must be serialized by the caller, which also has to pass the
+ * exact task it indexed to {@link #remove}.
+ */
+final class TaskIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    // concurrent maps do not take null keys; no real category is named this
+    private static final String NO_CATEGORY = "\u0000";
+
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> byCategory = new ConcurrentHashMap<>();
+    // normalized word -> (task id -> occurrences in that task)
+    private final ConcurrentSkipListMap<String, ConcurrentHashMap<Integer, Integer>> words = new ConcurrentSkipListMap<>();
+
+    void add(Task t) {
+        byCategory.computeIfAbsent(categoryKey(t.getCategoryName()), k -> new ConcurrentSkipListSet<>()).add(t.getId());
+        for (Map.Entry<String, Integer> w : wordCounts(t).entrySet()) {
+            words.computeIfAbsent(w.getKey(), k -> new ConcurrentHashMap<>()).put(t.getId(), w.getValue());
+        }
+    }
+
+    void remove(Task t) {
+        String key = categoryKey(t.getCategoryName());
+        ConcurrentSkipListSet<Integer> ids = byCategory.get(key);
+        if (ids != null) {
+            ids.remove(t.getId());
+            if (ids.isEmpty()) byCategory.remove(key);
+        }
+        for (String word : wordCounts(t).keySet()) {
+            ConcurrentHashMap<Integer, Integer> postings = words.get(word);
+            if (postings == null) continue;
+            postings.remove(t.getId());
+            if (postings.isEmpty()) words.remove(word);
+        }
+    }
+
+    void clear() {
+        byCategory.clear();
+        words.clear();
+    }
+
+    /**
+     * Ids of the tasks indexed under this category, ascending. The set may briefly hold an id
+     * whose task is moving to another category, so callers re-check the task itself.
+     */
+    Set<Integer> idsInCategory(String categoryName) {
+        Set<Integer> ids = byCategory.get(categoryKey(categoryName));
+        return ids == null ? Set.of() : ids;
+    }
+
+    /**
+     * Ids of up to {@code limit} tasks that contain a word starting with each word of
+     * {@code text}, ranked by how often the query words occur, then by id. Ids for which
+     * {@code live} is false are skipped.
+     */
+    int[] search(String text, int limit, IntPredicate live) {
+        List<String> query = tokenize(text);
+        if (query.isEmpty()) return new int[0];
+        Map<Integer, Integer> scores = null;
+        for (String prefix : query) {
+            Map<Integer, Integer> matches = new HashMap<>();
+            for (Map<Integer, Integer> postings : words.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                postings.forEach((id, n) -> matches.merge(id, n, Integer::sum));
+            }
+            if (scores == null) {
+                scores = matches;
+            } else {
+                Map<Integer, Integer> both = new HashMap<>();
+                for (Map.Entry<Integer, Integer> e : scores.entrySet()) {
+                    Integer n = matches.get(e.getKey());
+                    if (n != null) both.put(e.getKey(), e.getValue() + n);
+                }
+                scores = both;
+            }
+            if (scores.isEmpty()) return new int[0];
+        }
+        Map<Integer, Integer> ranked = scores;
+        return ranked.keySet().stream()
+                .filter(live::test)
+                .sorted((a, b) -> {
+                    int byScore = Integer.compare(ranked.get(b), ranked.get(a));
+                    return byScore != 0 ? byScore : Integer.compare(a, b);
+                })
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /** Number of distinct indexed words. */
+    int wordCount() {
+        return words.size();
+    }
+
+    private static Map<String, Integer> wordCounts(Task t) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String text : new String[]{t.getName(), t.getContent(), t.getCategoryName()}) {
+            for (String word : tokenize(text)) counts.merge(word, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /** Lower-case words without accents, as the SQLite full-text tokenizer splits them. */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) return List.of();
+        String folded = MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)).replaceAll("");
+        List<String> result = new ArrayList<>();
+        for (String word : NON_WORD.split(folded)) {
+            if (!word.isEmpty()) result.add(word);
+        }
+        return result;
+    }
+
+    private static String categoryKey(String categoryName) {
+        return categoryName == null ? NO_CATEGORY : categoryName;
+    }
+}
@@ -0,0 +1,56 @@
+package todo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+/**
+ * Maps rows of a {@code SELECT * FROM Tasks} result to {@link Task}s. Built once per query:
+ * the column positions are resolved up front, so rows are read by index instead of by name.
+ * Category names and due dates repeat across many rows, so equal values are shared between
+ * the returned tasks instead of each task keeping its own copy; a big result list then holds
+ * only a handful of distinct strings for those columns.
+ */
+public class TaskRowMapper {
+
+    // enough for every category and a few years of due dates; past that values are not shared
+    private static final int MAX_SHARED = 4096;
+
+    private final int idColumn;
+    private final int nameColumn;
+    private final int contentColumn;
+    private final int categoryColumn;
+    private final int statusColumn;
+    private final int dueColumn;
+    private final HashMap<String, String> shared = new HashMap<>();
+
+    public TaskRowMapper(ResultSet res) throws SQLException {
+        idColumn = res.findColumn("id");
+        nameColumn = res.findColumn("name");
+        contentColumn = res.findColumn("content");
+        categoryColumn = res.findColumn("categoryName");
+        statusColumn = res.findColumn("status");
+        dueColumn = res.findColumn("dueDate");
+    }
+
+    /** Maps the row the result set is currently positioned on. */
+    public Task map(ResultSet res) throws SQLException {
+        return new Task(
+                res.getInt(idColumn),
+                res.getString(nameColumn),
+                res.getString(contentColumn),
+                share(res.getString(categoryColumn)),
+                // unknown or missing codes (also enum names like 'IN_PROGRESS') read as NOT_STARTED
+                TaskStatus.fromCode(res.getString(statusColumn)),
+                share(res.getString(dueColumn))
+        );
+    }
+
+    private String share(String value) {
+        if (value == null) return null;
+        String existing = shared.get(value);
+        if (existing != null) return existing;
+        if (shared.size() < MAX_SHARED) shared.put(value, value);
+        return value;
+    }
+}
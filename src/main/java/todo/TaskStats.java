@@ -0,0 +1,189 @@
+package todo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Task counts per (category, {@link TaskStatus}), kept as counters by {@link TaskDao}: loaded
+ * once from a single GROUP BY query on first use, then adjusted on every create, update and delete, so
+ * dashboard-style counts are O(1) instead of a scan. A missing status counts as NOT_STARTED,
+ * the same as reading the task back from the database; a missing category is its own group
+ * (the null name). All methods are thread-safe.
+ * <p>
+ * A load must not overlap a write, or the write could be counted both by the query and by its
+ * own update. Writers bracket each write, from before it reaches the storage until its counts
+ * are applied, with {@link #writeStarted()} and {@link #writeFinished()}. {@link #reload} waits
+ * until no write is in flight, and a load that any write ran across is thrown away and run
+ * again, the same version check {@link TaskCache} uses. Readers keep seeing the old counts
+ * until a load succeeds.
+ */
+public class TaskStats {
+
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    // one counter per status, per category name (null allowed)
+    private final HashMap<String, long[]> byCategory = new HashMap<>();
+    private final long[] byStatus = new long[STATUSES.length];
+    private long total;
+    private boolean loaded;
+    // bumped by every write and every count change; a load that saw it move is discarded
+    private long version;
+    private int writesInFlight;
+    // where add() puts the groups of the running load, null outside a load
+    private HashMap<String, long[]> loading;
+    // one load at a time
+    private final Object reloadLock = new Object();
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Runs {@link #reload} unless the counts are already loaded. */
+    public void ensureLoaded(Runnable loader) {
+        if (isLoaded()) return;
+        synchronized (reloadLock) {
+            if (!isLoaded()) reload(loader);
+        }
+    }
+
+    /**
+     * Replaces all counts with what {@code loader} finds; it calls {@link #add} for every
+     * group. Runs the loader again until no write overlapped it. Until the first load,
+     * updates are ignored.
+     */
+    public void reload(Runnable loader) {
+        synchronized (reloadLock) {
+            while (true) {
+                long start;
+                synchronized (this) {
+                    while (writesInFlight > 0) {
+                        try {
+                            wait();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrupted while waiting for writes to finish", ex);
+                        }
+                    }
+                    start = version;
+                    loading = new HashMap<>();
+                }
+                try {
+                    loader.run();
+                } catch (RuntimeException | Error ex) {
+                    synchronized (this) {
+                        loading = null;
+                    }
+                    throw ex;
+                }
+                synchronized (this) {
+                    HashMap<String, long[]> counted = loading;
+                    loading = null;
+                    if (version != start) continue;
+                    byCategory.clear();
+                    Arrays.fill(byStatus, 0);
+                    total = 0;
+                    counted.forEach((name, counts) -> {
+                        for (TaskStatus s : STATUSES) {
+                            if (counts[s.ordinal()] != 0) adjust(name, s, counts[s.ordinal()]);
+                        }
+                    });
+                    loaded = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Adds {@code count} tasks of one group; called by the loader of {@link #reload}. */
+    public synchronized void add(String categoryName, TaskStatus status, long count) {
+        if (loading == null) throw new IllegalStateException("No load running");
+        loading.computeIfAbsent(categoryName, k -> new long[STATUSES.length])[normalize(status).ordinal()] += count;
+    }
+
+    /** A write to the tasks is about to reach the storage; loads wait until it finishes. */
+    public synchronized void writeStarted() {
+        writesInFlight++;
+        version++;
+    }
+
+    /** The write announced by {@link #writeStarted()} is done, counts included, or failed. */
+    public synchronized void writeFinished() {
+        writesInFlight--;
+        version++;
+        if (writesInFlight == 0) notifyAll();
+    }
+
+    public synchronized void created(Task task) {
+        version++;
+        if (loaded) adjust(task.getCategoryName(), task.getStatus(), 1);
+    }
+
+    /** {@code previous} is the row as it was before the update. */
+    public synchronized void updated(Task previous, Task current) {
+        version++;
+        if (!loaded) return;
+        adjust(previous.getCategoryName(), previous.getStatus(), -1);
+        adjust(current.getCategoryName(), current.getStatus(), 1);
+    }
+
+    public synchronized void deleted(Task previous) {
+        version++;
+        if (loaded) adjust(previous.getCategoryName(), previous.getStatus(), -1);
+    }
+
+    public synchronized long count(String categoryName, TaskStatus status) {
+        long[] counts = byCategory.get(categoryName);
+        return counts == null ? 0 : counts[normalize(status).ordinal()];
+    }
+
+    public synchronized long count(TaskStatus status) {
+        return byStatus[normalize(status).ordinal()];
+    }
+
+    public synchronized long count(String categoryName) {
+        long[] counts = byCategory.get(categoryName);
+        if (counts == null) return 0;
+        long sum = 0;
+        for (long c : counts) sum += c;
+        return sum;
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    /** Copy of all non-empty counts, by category and then status. */
+    public synchronized Map<String, Map<TaskStatus, Long>> snapshot() {
+        Map<String, Map<TaskStatus, Long>> copy = new HashMap<>();
+        byCategory.forEach((name, counts) -> {
+            Map<TaskStatus, Long> statuses = new LinkedHashMap<>();
+            for (TaskStatus s : STATUSES) {
+                if (counts[s.ordinal()] != 0) statuses.put(s, counts[s.ordinal()]);
+            }
+            copy.put(name, statuses);
+        });
+        return copy;
+    }
+
+    private void adjust(String categoryName, TaskStatus status, long delta) {
+        int s = normalize(status).ordinal();
+        long[] counts = byCategory.computeIfAbsent(categoryName, k -> new long[STATUSES.length]);
+        counts[s] += delta;
+        byStatus[s] += delta;
+        total += delta;
+        if (isEmpty(counts)) byCategory.remove(categoryName);
+    }
+
+    private static boolean isEmpty(long[] counts) {
+        for (long c : counts) {
+            if (c != 0) return false;
+        }
+        return true;
+    }
+
+    private static TaskStatus normalize(TaskStatus status) {
+        return status == null ? TaskStatus.NOT_STARTED : status;
+    }
+}
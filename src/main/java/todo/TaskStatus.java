@@ -1,5 +1,8 @@
 package todo;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum TaskStatus {
     NOT_STARTED("not_started"),
     IN_PROGRESS("in_progress"),
@@ -27,9 +30,16 @@ public enum TaskStatus {
         };
     }
 
+    private static final Map<String, TaskStatus> BY_CODE;
+
+    static {
+        Map<String, TaskStatus> byCode = new HashMap<>();
+        for (TaskStatus s : values()) byCode.put(s.code, s);
+        BY_CODE = Map.copyOf(byCode);
+    }
+
     public static TaskStatus fromCode(String code) {
         if (code == null) return NOT_STARTED;
-        for (TaskStatus s : values()) if (s.code.equals(code)) return s;
-        return NOT_STARTED;
+        return BY_CODE.getOrDefault(code, NOT_STARTED);
     }
 }
@@ -0,0 +1,71 @@
+package todo;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The task half of the storage SPI behind {@link TaskDao}: what a backend has to provide for
+ * the task table. Tasks are keyed by an id the backend assigns on insert and never reuses;
+ * listings are in id order. A task read back has a non-null status (a missing one reads as
+ * NOT_STARTED). Errors are reported as {@link SQLException}, whatever the backend.
+ */
+public interface TaskStorage {
+
+    /** Every task, in id order. */
+    List<Task> getTasks() throws SQLException;
+
+    /** The task with this id, or null. */
+    Task getTask(int id) throws SQLException;
+
+    /** Tasks of one category, in id order. */
+    List<Task> getTasks(String categoryName) throws SQLException;
+
+    /** Up to {@code limit} tasks with id greater than {@code afterId}, in id order. */
+    List<Task> getTasksAfter(int afterId, int limit) throws SQLException;
+
+    /** Up to {@code limit} tasks starting at row {@code offset}, in id order. */
+    List<Task> getTasksPage(int offset, int limit) throws SQLException;
+
+    int countTasks() throws SQLException;
+
+    /** All tasks in id order, read lazily {@code pageSize} at a time. */
+    Stream<Task> streamTasks(int pageSize);
+
+    /**
+     * Ids of up to {@code limit} tasks whose name, content or category contain a word starting
+     * with each word of {@code text}, ignoring case and accents, best match first.
+     */
+    int[] searchTaskIds(String text, int limit) throws SQLException;
+
+    /** The tasks with these ids in the given order; unknown ids are skipped. */
+    List<Task> getTasksByIds(int[] ids) throws SQLException;
+
+    /** Adds every task with an ISO due date to {@code index}. */
+    void loadDueDays(DueIndex index) throws SQLException;
+
+    /** Adds the number of tasks per category and status to {@code stats}. */
+    void loadTaskCounts(TaskStats stats) throws SQLException;
+
+    /** Inserts the task (its id is ignored) and returns the new id. */
+    int createTask(Task task) throws SQLException;
+
+    /** Updates the task with the same id; returns false (and changes nothing) for an unknown id. */
+    boolean updateTask(Task task) throws SQLException;
+
+    /** Deletes the task with the same id; returns false (and changes nothing) for an unknown id. */
+    boolean deleteTask(Task task) throws SQLException;
+
+    /** Inserts all tasks atomically and returns their ids in iteration order. */
+    int[] createTasks(Collection<Task> tasks) throws SQLException;
+
+    /** Updates all tasks atomically. */
+    void updateTasks(Collection<Task> tasks) throws SQLException;
+
+    /** Deletes the tasks with these ids atomically. */
+    void deleteTasks(int[] ids) throws SQLException;
+
+    /** Applies {@code updates} and {@code deleteIds} atomically. */
+    void writeTasks(Collection<Task> updates, int[] deleteIds) throws SQLException;
+}
@@ -0,0 +1,302 @@
+package todo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+/**
+ * Column-oriented in-memory copy of many tasks. Instead of one {@link Task} object with
+ * five strings per row, every field lives in a primitive column, sorted by id:
+ * <ul>
+ *     <li>ids in an {@code int[]}, status ordinals in a {@code byte[]};</li>
+ *     <li>category names dictionary-encoded: each distinct name is stored once and rows keep
+ *     an {@code int} code;</li>
+ *     <li>due dates as epoch days in an {@code int[]} (values that are not ISO dates are
+ *     kept aside as strings, so nothing is lost);</li>
+ *     <li>name and content as UTF-8 bytes appended to a pool of 1 MiB {@code byte[]} chunks,
+ *     rows keep a reference and a length.</li>
+ * </ul>
+ * {@link #get(int)}, {@link #getById(int)} and {@link #asList()} materialize ordinary
+ * {@code Task} objects on demand, so existing code keeps working; scans that only need a
+ * few columns can use the column accessors and never create a Task. Not thread-safe.
+ */
+public class TaskStore {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final byte NULL_STATUS = -1;
+    private static final int NULL_CODE = -1;
+    // due sentinels; real epoch days of any plausible date are far from these
+    private static final int DUE_NULL = Integer.MIN_VALUE;
+    private static final int DUE_EMPTY = Integer.MIN_VALUE + 1;
+    private static final int DUE_RAW = Integer.MIN_VALUE + 2;
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private int size;
+    private int[] ids = new int[16];
+    private byte[] statuses = new byte[16];
+    private int[] categories = new int[16];
+    private int[] dueDays = new int[16];
+    private long[] nameRefs = new long[16];
+    private int[] nameLengths = new int[16];
+    private long[] contentRefs = new long[16];
+    private int[] contentLengths = new int[16];
+
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+    // due values that are not ISO dates, by task id
+    private final Map<Integer, String> rawDue = new HashMap<>();
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private int chunkUsed = CHUNK_SIZE;
+    private long textBytes;
+    private long deadTextBytes;
+
+    public static TaskStore of(Stream<Task> tasks) {
+        TaskStore store = new TaskStore();
+        tasks.forEach(store::put);
+        return store;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Inserts the task, or replaces the stored task with the same id. */
+    public void put(Task task) {
+        int id = task.getId();
+        int row = size > 0 && id > ids[size - 1] ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+        if (row >= 0) {
+            deadTextBytes += Math.max(0, nameLengths[row]) + Math.max(0, contentLengths[row]);
+        } else {
+            row = -(row + 1);
+            insertRow(row);
+            ids[row] = id;
+        }
+        statuses[row] = task.getStatus() == null ? NULL_STATUS : (byte) task.getStatus().ordinal();
+        categories[row] = categoryCode(task.getCategoryName());
+        dueDays[row] = encodeDue(id, task.getDue());
+        byte[] name = utf8(task.getName());
+        nameRefs[row] = append(name);
+        nameLengths[row] = name == null ? -1 : name.length;
+        byte[] content = utf8(task.getContent());
+        contentRefs[row] = append(content);
+        contentLengths[row] = content == null ? -1 : content.length;
+        maybeCompactText();
+    }
+
+    /** Removes the task with this id; returns false if it was not stored. */
+    public boolean remove(int id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        if (row < 0) return false;
+        deadTextBytes += Math.max(0, nameLengths[row]) + Math.max(0, contentLengths[row]);
+        rawDue.remove(id);
+        int tail = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, tail);
+        System.arraycopy(statuses, row + 1, statuses, row, tail);
+        System.arraycopy(categories, row + 1, categories, row, tail);
+        System.arraycopy(dueDays, row + 1, dueDays, row, tail);
+        System.arraycopy(nameRefs, row + 1, nameRefs, row, tail);
+        System.arraycopy(nameLengths, row + 1, nameLengths, row, tail);
+        System.arraycopy(contentRefs, row + 1, contentRefs, row, tail);
+        System.arraycopy(contentLengths, row + 1, contentLengths, row, tail);
+        size--;
+        maybeCompactText();
+        return true;
+    }
+
+    /** Row index of the task with this id, or -1. Rows are ordered by id. */
+    public int rowOf(int id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        return row < 0 ? -1 : row;
+    }
+
+    public Task getById(int id) {
+        int row = rowOf(id);
+        return row < 0 ? null : get(row);
+    }
+
+    /** Materializes row {@code row} as a Task. */
+    public Task get(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        return new Task(ids[row], nameAt(row), contentAt(row), categoryAt(row), statusAt(row), dueAt(row));
+    }
+
+    /** Read-only list view; elements are materialized on access. */
+    public List<Task> asList() {
+        return new View();
+    }
+
+    public int idAt(int row) {
+        return ids[row];
+    }
+
+    public TaskStatus statusAt(int row) {
+        byte s = statuses[row];
+        return s == NULL_STATUS ? null : STATUSES[s];
+    }
+
+    public String categoryAt(int row) {
+        int code = categories[row];
+        return code == NULL_CODE ? null : categoryNames.get(code);
+    }
+
+    /** Dictionary code of the row's category, comparable with {@link #categoryCodeOf(String)}. */
+    public int categoryCodeAt(int row) {
+        return categories[row];
+    }
+
+    /** Dictionary code of a category name, or -1 if no stored task has it. */
+    public int categoryCodeOf(String categoryName) {
+        Integer code = categoryCodes.get(categoryName);
+        return code == null ? NULL_CODE : code;
+    }
+
+    /** Due date as epoch day, or {@code Integer.MIN_VALUE} when the task has no ISO due date. */
+    public int dueDayAt(int row) {
+        int d = dueDays[row];
+        return d == DUE_EMPTY || d == DUE_RAW ? DUE_NULL : d;
+    }
+
+    public String dueAt(int row) {
+        int d = dueDays[row];
+        if (d == DUE_NULL) return null;
+        if (d == DUE_EMPTY) return "";
+        if (d == DUE_RAW) return rawDue.get(ids[row]);
+        return LocalDate.ofEpochDay(d).toString();
+    }
+
+    public String nameAt(int row) {
+        return text(nameRefs[row], nameLengths[row]);
+    }
+
+    public String contentAt(int row) {
+        return text(contentRefs[row], contentLengths[row]);
+    }
+
+    /** Approximate heap used by the columns, dictionary and text chunks, in bytes. */
+    public long memoryBytes() {
+        long columns = (long) ids.length * (4 + 1 + 4 + 4 + 8 + 4 + 8 + 4);
+        return columns + (long) chunks.size() * CHUNK_SIZE + rawDue.size() * 64L + categoryNames.size() * 64L;
+    }
+
+    private int categoryCode(String name) {
+        if (name == null) return NULL_CODE;
+        Integer code = categoryCodes.get(name);
+        if (code == null) {
+            code = categoryNames.size();
+            categoryNames.add(name);
+            categoryCodes.put(name, code);
+        }
+        return code;
+    }
+
+    private int encodeDue(int id, String due) {
+        rawDue.remove(id);
+        if (due == null) return DUE_NULL;
+        if (due.isEmpty()) return DUE_EMPTY;
+        try {
+            LocalDate date = LocalDate.parse(due);
+            // only if the date prints back identically, otherwise keep the original text
+            if (date.toString().equals(due)) return (int) date.toEpochDay();
+        } catch (DateTimeParseException ignored) {
+        }
+        rawDue.put(id, due);
+        return DUE_RAW;
+    }
+
+    private void insertRow(int row) {
+        if (size == ids.length) grow();
+        int tail = size - row;
+        if (tail > 0) {
+            System.arraycopy(ids, row, ids, row + 1, tail);
+            System.arraycopy(statuses, row, statuses, row + 1, tail);
+            System.arraycopy(categories, row, categories, row + 1, tail);
+            System.arraycopy(dueDays, row, dueDays, row + 1, tail);
+            System.arraycopy(nameRefs, row, nameRefs, row + 1, tail);
+            System.arraycopy(nameLengths, row, nameLengths, row + 1, tail);
+            System.arraycopy(contentRefs, row, contentRefs, row + 1, tail);
+            System.arraycopy(contentLengths, row, contentLengths, row + 1, tail);
+        }
+        size++;
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        nameRefs = Arrays.copyOf(nameRefs, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        contentRefs = Arrays.copyOf(contentRefs, capacity);
+        contentLengths = Arrays.copyOf(contentLengths, capacity);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // reference = chunk index in the high 32 bits, offset in the low 32
+    private long append(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) return 0;
+        if (bytes.length > CHUNK_SIZE - chunkUsed) {
+            chunks.add(new byte[Math.max(CHUNK_SIZE, bytes.length)]);
+            chunkUsed = 0;
+        }
+        int chunk = chunks.size() - 1;
+        System.arraycopy(bytes, 0, chunks.get(chunk), chunkUsed, bytes.length);
+        long ref = ((long) chunk << 32) | chunkUsed;
+        chunkUsed += bytes.length;
+        textBytes += bytes.length;
+        return ref;
+    }
+
+    private String text(long ref, int length) {
+        if (length < 0) return null;
+        if (length == 0) return "";
+        return new String(chunks.get((int) (ref >>> 32)), (int) ref, length, StandardCharsets.UTF_8);
+    }
+
+    // replaced and removed text stays in the chunks until it outweighs the live text
+    private void maybeCompactText() {
+        if (deadTextBytes > CHUNK_SIZE && deadTextBytes > textBytes / 2) compactText();
+    }
+
+    private void compactText() {
+        List<byte[]> old = new ArrayList<>(chunks);
+        chunks.clear();
+        chunkUsed = CHUNK_SIZE;
+        textBytes = 0;
+        deadTextBytes = 0;
+        for (int row = 0; row < size; row++) {
+            nameRefs[row] = move(old, nameRefs[row], nameLengths[row]);
+            contentRefs[row] = move(old, contentRefs[row], contentLengths[row]);
+        }
+    }
+
+    private long move(List<byte[]> old, long ref, int length) {
+        if (length <= 0) return 0;
+        byte[] bytes = Arrays.copyOfRange(old.get((int) (ref >>> 32)), (int) ref, (int) ref + length);
+        return append(bytes);
+    }
+
+    private class View extends AbstractList<Task> implements RandomAccess {
+        @Override
+        public Task get(int index) {
+            return TaskStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
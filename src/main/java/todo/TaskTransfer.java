@@ -0,0 +1,464 @@
+package todo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Streaming export and import of tasks as CSV or JSON Lines, in constant memory whatever the
+ * file size.
+ * <ul>
+ *     <li>Export reads the table page by page ({@link TaskDao#streamAllTasks(int)}) and encodes
+ *     each row straight into a 64 KiB buffer that is written to a {@link FileChannel}.</li>
+ *     <li>Import decodes the file through a buffered channel reader, parses one record at a
+ *     time and inserts every {@code chunkSize} tasks with {@link TaskDao#createTasks}, one
+ *     transaction per chunk. Ids in the file are ignored; the database assigns new ones.</li>
+ * </ul>
+ * Both report {@link Progress} (rows, bytes, throughput) every {@code progressEvery} rows and
+ * once at the end. Columns, in order: id, name, content, categoryName, status, dueDate; the
+ * status is written as its code ({@code in_progress}).
+ * <p>
+ * CSV follows RFC 4180 with a header line. An empty unquoted field is null, {@code ""} is the
+ * empty string. JSON Lines has one flat object per line with string, number or null values.
+ * <p>
+ * Command line: {@code TaskTransfer export|import <file> [csv|jsonl]}, the format defaults to
+ * the file extension.
+ */
+public class TaskTransfer {
+
+    public enum Format {
+        CSV, JSON_LINES;
+
+        /** {@code .csv} is CSV, anything else JSON Lines. */
+        public static Format forFile(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    public record Progress(long rows, long bytes, long elapsedNanos, boolean done) {
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1 << 20);
+        }
+
+        public String format() {
+            return String.format(Locale.ROOT, "%d rows, %.1f MiB, %.1f s, %.0f rows/s, %.1f MiB/s%s",
+                    rows, bytes / (double) (1 << 20), elapsedNanos / 1e9, rowsPerSecond(), megabytesPerSecond(),
+                    done ? " (done)" : "");
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+    public static final long DEFAULT_PROGRESS_EVERY = 100_000;
+
+    private static final String[] COLUMNS = {"id", "name", "content", "categoryName", "status", "dueDate"};
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final TaskDao taskDao;
+    private final int chunkSize;
+    private final long progressEvery;
+    private final Consumer<Progress> onProgress;
+
+    public TaskTransfer(TaskDao taskDao, Consumer<Progress> onProgress) {
+        this(taskDao, DEFAULT_CHUNK_SIZE, DEFAULT_PROGRESS_EVERY, onProgress);
+    }
+
+    public TaskTransfer(TaskDao taskDao, int chunkSize, long progressEvery, Consumer<Progress> onProgress) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be at least 1");
+        if (progressEvery < 1) throw new IllegalArgumentException("Progress interval must be at least 1 row");
+        this.taskDao = taskDao;
+        this.chunkSize = chunkSize;
+        this.progressEvery = progressEvery;
+        this.onProgress = onProgress;
+    }
+
+    /** Writes every task to {@code file}, replacing it. Returns the number of rows written. */
+    public long export(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Stream<Task> tasks = taskDao.streamAllTasks(chunkSize)) {
+            ChannelOutput out = new ChannelOutput(channel);
+            StringBuilder line = new StringBuilder(256);
+            if (format == Format.CSV) {
+                out.write(String.join(",", COLUMNS) + "\r\n");
+            }
+            for (Task task : (Iterable<Task>) tasks::iterator) {
+                line.setLength(0);
+                if (format == Format.CSV) appendCsv(line, task);
+                else appendJson(line, task);
+                out.write(line);
+                if (++rows % progressEvery == 0) report(rows, out.bytes, start, false);
+            }
+            out.flush();
+            report(rows, out.bytes, start, true);
+        }
+        return rows;
+    }
+
+    /**
+     * Inserts every task of {@code file}, {@code chunkSize} per transaction. A malformed record
+     * fails the import with its line number; the chunks before it stay committed.
+     * Returns the number of rows imported.
+     */
+    public long importFile(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8)) {
+            RecordReader records = format == Format.CSV ? new CsvReader(reader) : new JsonLinesReader(reader);
+            if (format == Format.CSV) records.next(); // header
+            List<Task> chunk = new ArrayList<>(Math.min(chunkSize, 10_000));
+            String[] fields;
+            while ((fields = records.next()) != null) {
+                chunk.add(toTask(fields, records.line()));
+                if (chunk.size() == chunkSize) {
+                    taskDao.createTasks(chunk);
+                    chunk.clear();
+                }
+                if (++rows % progressEvery == 0) report(rows, channel.position(), start, false);
+            }
+            if (!chunk.isEmpty()) taskDao.createTasks(chunk);
+            report(rows, channel.position(), start, true);
+        }
+        return rows;
+    }
+
+    private void report(long rows, long bytes, long start, boolean done) {
+        if (onProgress != null) onProgress.accept(new Progress(rows, bytes, System.nanoTime() - start, done));
+    }
+
+    private static Task toTask(String[] f, long line) {
+        if (f.length != COLUMNS.length) {
+            throw new IllegalArgumentException("Line " + line + ": expected " + COLUMNS.length + " fields, got " + f.length);
+        }
+        if (f[1] == null) throw new IllegalArgumentException("Line " + line + ": name must not be null");
+        TaskStatus status = f[4] == null ? null : TaskStatus.fromCode(f[4]);
+        return new Task(0, f[1], f[2], f[3], status, f[5]);
+    }
+
+    private static String[] values(Task t) {
+        return new String[]{Integer.toString(t.getId()), t.getName(), t.getContent(), t.getCategoryName(),
+                t.getStatus() == null ? null : t.getStatus().getCode(), t.getDue()};
+    }
+
+    static void appendCsv(StringBuilder sb, Task task) {
+        String[] v = values(task);
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) sb.append(',');
+            String s = v[i];
+            if (s == null) continue;
+            if (s.isEmpty() || needsQuotes(s)) {
+                sb.append('"');
+                for (int j = 0; j < s.length(); j++) {
+                    char c = s.charAt(j);
+                    if (c == '"') sb.append('"');
+                    sb.append(c);
+                }
+                sb.append('"');
+            } else {
+                sb.append(s);
+            }
+        }
+        sb.append("\r\n");
+    }
+
+    private static boolean needsQuotes(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    static void appendJson(StringBuilder sb, Task task) {
+        String[] v = values(task);
+        sb.append('{');
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(COLUMNS[i]).append("\":");
+            if (v[i] == null) sb.append("null");
+            else if (i == 0) sb.append(v[i]);
+            else appendJsonString(sb, v[i]);
+        }
+        sb.append("}\n");
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /** UTF-8 encodes text into a reused buffer and writes it to the channel when full. */
+    private static final class ChannelOutput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long bytes;
+
+        ChannelOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(CharSequence text) throws IOException {
+            byte[] encoded = text.toString().getBytes(StandardCharsets.UTF_8);
+            bytes += encoded.length;
+            int offset = 0;
+            while (offset < encoded.length) {
+                if (!buffer.hasRemaining()) drain();
+                int n = Math.min(buffer.remaining(), encoded.length - offset);
+                buffer.put(encoded, offset, n);
+                offset += n;
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+            channel.force(false);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    private interface RecordReader {
+        /** Fields of the next record, or null at the end of the input. */
+        String[] next() throws IOException;
+
+        /** Line number the last record started on, 1-based. */
+        long line();
+    }
+
+    /** Buffered character source that keeps the current line number. */
+    private static class Input {
+        private final Reader reader;
+        private final char[] buf = new char[BUFFER_SIZE];
+        private int pos;
+        private int len;
+        long line = 1;
+
+        Input(Reader reader) {
+            this.reader = reader;
+        }
+
+        int read() throws IOException {
+            if (pos == len) {
+                len = reader.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            char c = buf[pos++];
+            if (c == '\n') line++;
+            return c;
+        }
+
+        int peek() throws IOException {
+            int c = read();
+            if (c >= 0) {
+                pos--;
+                if (c == '\n') line--;
+            }
+            return c;
+        }
+    }
+
+    private static final class CsvReader extends Input implements RecordReader {
+        private long recordLine;
+
+        CsvReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            int c;
+            // blank lines, such as a trailing one at the end of the file, hold no record
+            while ((c = peek()) == '\r' || c == '\n') read();
+            if (c < 0) return null;
+            recordLine = line;
+            List<String> fields = new ArrayList<>(COLUMNS.length);
+            StringBuilder field = new StringBuilder();
+            while (true) {
+                c = read();
+                if (c == '"') {
+                    // quoted field: may contain commas, line breaks and doubled quotes
+                    while (true) {
+                        c = read();
+                        if (c < 0) throw new IllegalArgumentException("Line " + recordLine + ": unterminated quoted field");
+                        if (c == '"') {
+                            if (peek() == '"') field.append((char) read());
+                            else break;
+                        } else {
+                            field.append((char) c);
+                        }
+                    }
+                    fields.add(field.toString());
+                    c = read();
+                } else {
+                    while (c >= 0 && c != ',' && c != '\r' && c != '\n') {
+                        field.append((char) c);
+                        c = read();
+                    }
+                    fields.add(field.isEmpty() ? null : field.toString());
+                }
+                field.setLength(0);
+                if (c == ',') continue;
+                if (c == '\r' && peek() == '\n') read();
+                if (c < 0 || c == '\r' || c == '\n') return fields.toArray(new String[0]);
+                throw new IllegalArgumentException("Line " + recordLine + ": unexpected character after quoted field");
+            }
+        }
+
+        @Override
+        public long line() {
+            return recordLine;
+        }
+    }
+
+    private static final class JsonLinesReader extends Input implements RecordReader {
+        private long recordLine;
+
+        JsonLinesReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == '\n' || c == '\r' || c == ' ' || c == '\t');
+            if (c < 0) return null;
+            recordLine = line;
+            if (c != '{') throw error("expected '{'");
+            String[] fields = new String[COLUMNS.length];
+            c = skipSpaces();
+            if (c == '}') return fields;
+            while (true) {
+                if (c != '"') throw error("expected a field name");
+                String key = string();
+                if (skipSpaces() != ':') throw error("expected ':'");
+                c = skipSpaces();
+                String value;
+                if (c == '"') {
+                    value = string();
+                } else {
+                    // number or null
+                    StringBuilder literal = new StringBuilder().append((char) c);
+                    // a line break ends it too, so a truncated record cannot run into the next one
+                    while ((c = peek()) >= 0 && c != ',' && c != '}' && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                        literal.append((char) read());
+                    }
+                    value = literal.toString().equals("null") ? null : literal.toString();
+                }
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if (COLUMNS[i].equals(key)) fields[i] = value;
+                }
+                c = skipSpaces();
+                if (c == '}') return fields;
+                if (c != ',') throw error("expected ',' or '}'");
+                c = skipSpaces();
+            }
+        }
+
+        private int skipSpaces() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == ' ' || c == '\t');
+            return c;
+        }
+
+        private String string() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = read();
+                if (c < 0 || c == '\n') throw error("unterminated string");
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append((char) c);
+                    continue;
+                }
+                c = read();
+                switch (c) {
+                    case '"', '\\', '/' -> sb.append((char) c);
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) throw error("bad escape");
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                    }
+                    default -> throw error("bad escape");
+                }
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Line " + recordLine + ": " + message);
+        }
+
+        @Override
+        public long line() {
+            return recordLine;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Usage: TaskTransfer export|import <file> [csv|jsonl]");
+            System.exit(2);
+        }
+        Path file = Path.of(args[1]);
+        Format format = args.length > 2 ? (args[2].equalsIgnoreCase("csv") ? Format.CSV : Format.JSON_LINES) : Format.forFile(file);
+        try (Db db = new Db()) {
+            TaskTransfer transfer = new TaskTransfer(new TaskDao(db), p -> System.err.println(p.format()));
+            long rows = args[0].equals("export") ? transfer.export(file, format) : transfer.importFile(file, format);
+            System.out.println((args[0].equals("export") ? "Exported " : "Imported ") + rows + " tasks");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package todo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Write-behind buffer for task updates and deletes, used by {@link TaskDao} in write-behind
+ * mode. Callers return as soon as the change is queued; one writer thread commits the queue
+ * in group transactions, so a burst of writes pays for one commit (one fsync) instead of one each.
+ * <ul>
+ *     <li>Coalescing: the queue holds at most one pending change per task id. A newer update
+ *     replaces an older one; a delete wins over any update, before or after it.</li>
+ *     <li>Flush latency: the writer commits once the oldest pending change has waited
+ *     {@code flushLatencyMillis}, or earlier when the queue is full or on {@link #flush()}.</li>
+ *     <li>Bounded: at most {@code capacity} ids are pending; a change to another id waits for
+ *     the writer to make room (backpressure instead of unbounded memory).</li>
+ *     <li>Failures: when a group fails to commit, its changes are committed one by one so a
+ *     single bad row (say, a task without a name) cannot hold back the rest. A change that
+ *     fails on its own is dropped and reported: {@link Sink#dropped}, {@link #getDropped()}
+ *     and {@link #getFailure()}, and {@link #flush()} throws if it was waiting for it. Nothing
+ *     is retried, so a failing change never blocks the ones queued after it.</li>
+ * </ul>
+ * Crash safety: every group is one transaction, so the database holds either all changes of a
+ * group or none of them, and a committed group is as durable as the connection's
+ * {@code synchronous} setting makes it. Changes still queued when the process dies are lost:
+ * at most the last {@code flushLatencyMillis} of writes plus the group being committed.
+ * {@link #close()} commits everything that is queued before it returns, dropping what fails.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    /** Commits one group: updates and deletes of distinct ids, in a single transaction. */
+    @FunctionalInterface
+    public interface Sink {
+        void write(List<Task> updates, int[] deletes) throws SQLException;
+
+        /**
+         * Called on the writer thread for a change that failed to commit on its own and is
+         * dropped: {@code update} is the queued task, or null for a delete. {@code superseded}
+         * is true when a newer change to the same id is already queued.
+         */
+        default void dropped(int id, Task update, boolean superseded, Exception error) {
+        }
+    }
+
+    private record Change(Task update, boolean delete) {
+    }
+
+    private static final Change DELETE = new Change(null, true);
+
+    private final Sink sink;
+    private final long flushLatencyNanos;
+    private final int capacity;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private LinkedHashMap<Integer, Change> pending = new LinkedHashMap<>();
+    // the group the writer is committing, still visible to lookups until it is done
+    private Map<Integer, Change> inFlight = Map.of();
+    private long oldestPendingNanos;
+    // every queued change gets a number; flush() waits until the writer committed up to it
+    private long queuedSeq;
+    private long committedSeq;
+    // committedSeq of the last group that dropped a change
+    private long droppedSeq;
+    private boolean flushRequested;
+    private boolean closed;
+    private Exception failure;
+
+    private long enqueued;
+    private long coalesced;
+    private long groups;
+    private long written;
+    private long dropped;
+
+    public WriteBehindQueue(Sink sink, long flushLatencyMillis, int capacity) {
+        if (flushLatencyMillis < 0) throw new IllegalArgumentException("Flush latency must not be negative");
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        this.sink = sink;
+        this.flushLatencyNanos = TimeUnit.MILLISECONDS.toNanos(flushLatencyMillis);
+        this.capacity = capacity;
+        this.writer = Thread.ofVirtual().name("task-write-behind").start(this::run);
+    }
+
+    public void update(Task task) {
+        enqueue(task.getId(), new Change(task, false));
+    }
+
+    public void delete(int id) {
+        enqueue(id, DELETE);
+    }
+
+    private void enqueue(int id, Change change) {
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Write-behind queue is closed");
+            while (pending.size() >= capacity && !pending.containsKey(id)) {
+                flushRequested = true;
+                changed.signal();
+                notFull.awaitUninterruptibly();
+                if (closed) throw new IllegalStateException("Write-behind queue is closed");
+            }
+            if (pending.isEmpty()) oldestPendingNanos = System.nanoTime();
+            Change old = pending.get(id);
+            if (old != null) coalesced++;
+            pending.put(id, merge(old, change));
+            queuedSeq++;
+            enqueued++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Change merge(Change older, Change newer) {
+        if (older == null) return newer;
+        // an update after a delete would hit no row, so the delete stands
+        return older.delete() || newer.delete() ? DELETE : newer;
+    }
+
+    /**
+     * Commits everything queued so far and waits for it. Throws if some of it failed to commit
+     * and was dropped.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long start = committedSeq;
+            long target = queuedSeq;
+            flushRequested = true;
+            changed.signal();
+            while (committedSeq < target) {
+                if (!writer.isAlive()) throw new IllegalStateException("Write-behind writer has stopped", failure);
+                committed.awaitUninterruptibly();
+            }
+            if (droppedSeq > start) throw new RuntimeException("Write-behind flush dropped changes", failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Map<Integer, Change> group;
+            long seq;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) changed.awaitUninterruptibly();
+                if (pending.isEmpty()) return;
+                // let more changes gather until the oldest one is due
+                while (!closed && !flushRequested && pending.size() < capacity) {
+                    long wait = oldestPendingNanos + flushLatencyNanos - System.nanoTime();
+                    if (wait <= 0) break;
+                    changed.awaitNanos(wait);
+                }
+                group = pending;
+                inFlight = group;
+                seq = queuedSeq;
+                pending = new LinkedHashMap<>();
+                flushRequested = false;
+                notFull.signalAll();
+            } catch (InterruptedException ex) {
+                // not interrupted by this class; keep going so nothing queued is dropped
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            boolean droppedAny = commit(group) != null && commitRows(group);
+            lock.lock();
+            try {
+                inFlight = Map.of();
+                committedSeq = seq;
+                if (droppedAny) droppedSeq = seq;
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Exception commit(Map<Integer, Change> group) {
+        List<Task> updates = new ArrayList<>(group.size());
+        int[] deletes = new int[group.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Change> e : group.entrySet()) {
+            if (e.getValue().delete()) deletes[n++] = e.getKey();
+            else updates.add(e.getValue().update());
+        }
+        try {
+            sink.write(updates, Arrays.copyOf(deletes, n));
+        } catch (SQLException | RuntimeException ex) {
+            return ex;
+        }
+        lock.lock();
+        try {
+            groups++;
+            written += group.size();
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    /** Commits a failed group change by change and drops what still fails; true if anything was dropped. */
+    private boolean commitRows(Map<Integer, Change> group) {
+        boolean droppedAny = false;
+        for (Map.Entry<Integer, Change> e : List.copyOf(group.entrySet())) {
+            Change change = e.getValue();
+            Exception error = commit(Map.of(e.getKey(), change));
+            if (error == null) continue;
+            droppedAny = true;
+            boolean superseded;
+            lock.lock();
+            try {
+                superseded = pending.containsKey(e.getKey());
+                // lookups fall back to the committed row again
+                inFlight.remove(e.getKey());
+                dropped++;
+                failure = error;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sink.dropped(e.getKey(), change.update(), superseded, error);
+            } catch (RuntimeException ex) {
+                // a broken listener must not stop the writer; the drop is counted already
+                error.addSuppressed(ex);
+            }
+        }
+        return droppedAny;
+    }
+
+    /**
+     * The task as it will be once the queue is committed: the queued update, null if a delete
+     * is queued, otherwise whatever {@code loader} returns (the committed row).
+     */
+    public Task lookup(int id, IntFunction<Task> loader) {
+        lock.lock();
+        try {
+            Change change = pending.get(id);
+            if (change == null) change = inFlight.get(id);
+            if (change != null) return change.update();
+        } finally {
+            lock.unlock();
+        }
+        return loader.apply(id);
+    }
+
+    /** Number of task ids with a change that is not committed yet. */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEnqueued() {
+        lock.lock();
+        try {
+            return enqueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Changes that replaced a pending change to the same id instead of being written separately. */
+    public long getCoalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Transactions committed: whole groups, and single changes after a group failed. */
+    public long getGroups() {
+        lock.lock();
+        try {
+            return groups;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Rows written by committed groups, or one by one after a group failed. */
+    public long getWritten() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Changes that failed to commit even on their own and were dropped. */
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Why the last dropped change failed, or null if none was dropped. */
+    public Exception getFailure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting changes, commits what is queued and stops the writer. Changes that fail
+     * are dropped and reported as usual; see {@link #getDropped()}.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            // only if the writer died of an Error
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException("Write-behind queue closed with " + pending.size() + " uncommitted changes", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AsyncDao tests")
+public class AsyncDaoTest {
+    private Path tmpDbFile;
+    private Db db;
+    private AsyncDao async;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("asyncdao-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+        db.addCategory(new Category("CatA", "desc"));
+        async = new AsyncDao(new TaskDao(db), new CategoryDao(db));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        async.close();
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    @Test
+    @DisplayName("Writes reach the database in submission order")
+    public void writesAreOrdered() throws Exception {
+        List<CompletableFuture<Integer>> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(async.createTask(new Task(0, "T" + i, "", "CatA", TaskStatus.NOT_STARTED, "")));
+        }
+        int previous = 0;
+        for (CompletableFuture<Integer> id : ids) {
+            int current = id.get(10, TimeUnit.SECONDS);
+            assertTrue(current > previous);
+            previous = current;
+        }
+        // an update queued behind the inserts sees the row it targets
+        int last = ids.get(ids.size() - 1).get();
+        async.updateTask(new Task(last, "renamed", "", "CatA", TaskStatus.DONE, "")).get(10, TimeUnit.SECONDS);
+        List<Task> page = async.getTasksAfter(last - 1, 1).get(10, TimeUnit.SECONDS);
+        assertEquals("renamed", page.get(0).getName());
+        assertEquals(Integer.valueOf(50), async.countTasks().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A failed write completes exceptionally and does not block later writes")
+    public void failedWrite() throws Exception {
+        CompletableFuture<Void> failing = async.write(() -> {
+            throw new RuntimeException("boom");
+        });
+        CompletableFuture<Integer> next = async.createTask(new Task(0, "after", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> failing.get(10, TimeUnit.SECONDS));
+        assertEquals("boom", ex.getCause().getMessage());
+        assertTrue(next.get(10, TimeUnit.SECONDS) > 0);
+    }
+
+    @Test
+    @DisplayName("Reads run off the calling thread")
+    public void readsOffCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        Thread worker = async.read(Thread::currentThread).get(10, TimeUnit.SECONDS);
+        assertNotSame(caller, worker);
+        assertTrue(async.getAllCategories().get(10, TimeUnit.SECONDS).stream().anyMatch(c -> "CatA".equals(c.getName())));
+    }
+
+    @Test
+    @DisplayName("Close waits for queued writes and refuses new ones")
+    public void closeWaitsForQueuedWrites() throws Exception {
+        CompletableFuture<Void> first = async.write(() -> slowCreate("slow1"));
+        CompletableFuture<Void> second = async.write(() -> slowCreate("slow2"));
+        async.close();
+        assertTrue(first.isDone() && second.isDone());
+        first.get();
+        second.get();
+        assertEquals(List.of("slow1", "slow2"), db.getTasks().stream().map(Task::getName).toList());
+        CompletableFuture<Void> late = async.write(() -> slowCreate("late"));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> late.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+
+    private void slowCreate(String name) {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        async.getTaskDao().createTask(new Task(0, name, "", "CatA", TaskStatus.NOT_STARTED, ""));
+    }
+}
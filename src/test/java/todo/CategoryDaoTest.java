@@ -207,4 +207,54 @@ public class CategoryDaoTest {
         assertThrows(todo.exceptions.NullCategoryException.class, () -> dao.updateCategory(new Category(null, "d")));
         assertThrows(todo.exceptions.EmptyCategoryException.class, () -> dao.updateCategory(new Category("", "d")));
     }
+
+    @Test
+    @DisplayName("Bulk create, update and delete categories")
+    public void bulkOperations() {
+        dao.createCategories(List.of(new Category("A", "a"), new Category("B", "b")));
+        assertEquals(2, dao.getAllCategories().size());
+
+        dao.updateCategories(List.of(new Category("A", "a2"), new Category("B", "b2")));
+        assertTrue(dao.getAllCategories().stream().allMatch(c -> c.getDescription().endsWith("2")));
+
+        // duplicate inside one batch rolls the whole batch back
+        assertThrows(RuntimeException.class, () -> dao.createCategories(List.of(new Category("C", "c"), new Category("A", "dup"))));
+        assertEquals(2, dao.getAllCategories().size());
+
+        dao.deleteCategories(List.of("A", "B"));
+        assertTrue(dao.getAllCategories().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Lookups are served from the snapshot, including missing names")
+    public void snapshotLookups() {
+        dao.createCategories(List.of(new Category("A", "a"), new Category("B", "b")));
+        assertEquals("a", dao.getCategory("A").getDescription());
+        assertNull(dao.getCategory("missing"));
+        assertFalse(dao.exists("missing"));
+        assertTrue(dao.exists("B"));
+        assertEquals(2, dao.getAllCategories().size());
+        assertEquals(1, dao.getLoads());
+        assertEquals(2, dao.getHits());
+        assertEquals(2, dao.getNegativeHits());
+        assertThrows(UnsupportedOperationException.class, () -> dao.getAllCategories().clear());
+    }
+
+    @Test
+    @DisplayName("Writes through the DAO refresh the snapshot")
+    public void snapshotInvalidatedByWrites() throws Exception {
+        assertNull(dao.getCategory("New"));
+        dao.createCategory(new Category("New", "n"));
+        assertNotNull(dao.getCategory("New"));
+        dao.updateCategory(new Category("New", "n2"));
+        assertEquals("n2", dao.getCategory("New").getDescription());
+        dao.deleteCategory("New");
+        assertNull(dao.getCategory("New"));
+
+        // a change made behind the DAO's back is only seen after invalidate()
+        db.addCategory(new Category("Outside", "o"));
+        assertNull(dao.getCategory("Outside"));
+        dao.invalidate();
+        assertNotNull(dao.getCategory("Outside"));
+    }
 }
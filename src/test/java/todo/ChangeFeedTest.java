@@ -0,0 +1,197 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ChangeFeed tests")
+public class ChangeFeedTest {
+    private Path tmpDbFile;
+    private Db db;
+    private TaskDao taskDao;
+    private CategoryDao categoryDao;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("feed-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+        taskDao = new TaskDao(db);
+        categoryDao = new CategoryDao(db);
+        categoryDao.createCategory(new Category("CatA", "desc"));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        taskDao.getChangeFeed().close();
+        categoryDao.getChangeFeed().close();
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    @Test
+    @DisplayName("Task writes arrive as typed events with increasing sequence numbers")
+    public void taskEvents() throws Exception {
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        taskDao.getChangeFeed().subscribe(events::add);
+
+        int id = taskDao.createTask(new Task(0, "T1", "c", "CatA", TaskStatus.NOT_STARTED, ""));
+        taskDao.updateTask(new Task(id, "T1x", "c", "CatA", TaskStatus.DONE, ""));
+        taskDao.deleteTask(id);
+
+        ChangeEvent created = events.poll(5, TimeUnit.SECONDS);
+        ChangeEvent updated = events.poll(5, TimeUnit.SECONDS);
+        ChangeEvent deleted = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(deleted);
+        assertEquals(ChangeEvent.Type.CREATED, created.type());
+        assertEquals(ChangeEvent.Type.UPDATED, updated.type());
+        assertEquals(ChangeEvent.Type.DELETED, deleted.type());
+        assertEquals(ChangeEvent.Entity.TASK, created.entity());
+        assertEquals("T1", created.task().getName());
+        assertEquals(TaskStatus.DONE, updated.task().getStatus());
+        // a delete carries the row as it was
+        assertEquals("T1x", deleted.task().getName());
+        assertEquals(id, deleted.task().getId());
+        assertTrue(created.sequence() < updated.sequence() && updated.sequence() < deleted.sequence());
+        assertTrue(created.timestampMillis() > 0);
+        // category writes go to the category feed only
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("A consumer resumes from a stored sequence, bulk writes included")
+    public void resumeFromSequence() throws Exception {
+        taskDao.createTasks(List.of(
+                new Task(0, "A", "c", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "B", "c", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "C", "c", "CatA", TaskStatus.NOT_STARTED, "")));
+        List<ChangeEvent> log = db.getChanges(ChangeEvent.Entity.TASK, 0, 10);
+        assertEquals(List.of("A", "B", "C"), log.stream().map(e -> e.task().getName()).toList());
+
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        taskDao.getChangeFeed().subscribe(log.get(0).sequence(), 1, events::add);
+        assertEquals("B", events.poll(5, TimeUnit.SECONDS).task().getName());
+        assertEquals("C", events.poll(5, TimeUnit.SECONDS).task().getName());
+
+        // the log is shared: trimming also drops the earlier CatA category event
+        assertEquals(3, db.trimChangeLog(log.get(1).sequence()));
+        assertEquals(1, db.getChanges(ChangeEvent.Entity.TASK, 0, 10).size());
+        assertTrue(db.latestChangeSequence() >= log.get(2).sequence());
+    }
+
+    @Test
+    @DisplayName("Trimming keeps the retention window and whatever a live subscriber has not read")
+    public void trimBehindSubscribers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        try (ChangeFeed feed = new ChangeFeed(db, ChangeEvent.Entity.TASK, 10, 2)) {
+            ChangeFeed.Subscription s = feed.subscribe(feed.latestSequence(), 1, e -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                events.add(e);
+            });
+            for (int i = 0; i < 5; i++) {
+                taskDao.createTask(new Task(0, "R" + i, "c", "CatA", TaskStatus.NOT_STARTED, ""));
+            }
+            // the subscriber is stuck on the first event, so nothing can go
+            assertEquals(0, feed.trim());
+            release.countDown();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("R" + i, events.poll(5, TimeUnit.SECONDS).task().getName());
+            }
+            s.close();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!s.isClosed() && System.nanoTime() < deadline) Thread.sleep(10);
+
+            // with nobody subscribed only the newest two sequence numbers are kept
+            assertEquals(3, feed.trim());
+            List<ChangeEvent> left = db.getChanges(ChangeEvent.Entity.TASK, 0, 10);
+            assertEquals(List.of("R3", "R4"), left.stream().map(e -> e.task().getName()).toList());
+            // the category feed's events are not this feed's to drop
+            assertEquals(1, db.getChanges(ChangeEvent.Entity.CATEGORY, 0, 10).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Writes trim the log in the background")
+    public void trimOnSignal() throws Exception {
+        ChangeFeed feed = new ChangeFeed(db, ChangeEvent.Entity.TASK, 1, 0);
+        for (int i = 0; i < 3; i++) {
+            taskDao.createTask(new Task(0, "B" + i, "c", "CatA", TaskStatus.NOT_STARTED, ""));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!db.getChanges(ChangeEvent.Entity.TASK, 0, 10).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            feed.signal();
+        }
+        assertTrue(db.getChanges(ChangeEvent.Entity.TASK, 0, 10).isEmpty());
+        assertNull(feed.getTrimFailure());
+    }
+
+    @Test
+    @DisplayName("A slow consumer does not block writers and catches up from the log")
+    public void slowConsumer() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        ChangeFeed.Subscription s = taskDao.getChangeFeed().subscribe(taskDao.getChangeFeed().latestSequence(), 2, e -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            events.add(e);
+        });
+        for (int i = 0; i < 20; i++) {
+            taskDao.createTask(new Task(0, "S" + i, "c", "CatA", TaskStatus.NOT_STARTED, ""));
+        }
+        assertTrue(events.isEmpty());
+        release.countDown();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("S" + i, events.poll(5, TimeUnit.SECONDS).task().getName());
+        }
+        s.close();
+        assertNull(s.getFailure());
+    }
+
+    @Test
+    @DisplayName("Category writes are published on the category feed")
+    public void categoryEvents() throws Exception {
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        categoryDao.getChangeFeed().subscribe(events::add);
+        categoryDao.updateCategory(new Category("CatA", "new desc"));
+        categoryDao.deleteCategory("CatA");
+        ChangeEvent updated = events.poll(5, TimeUnit.SECONDS);
+        ChangeEvent deleted = events.poll(5, TimeUnit.SECONDS);
+        assertEquals(ChangeEvent.Type.UPDATED, updated.type());
+        assertEquals("new desc", updated.category().getDescription());
+        assertEquals(ChangeEvent.Type.DELETED, deleted.type());
+        assertEquals("CatA", deleted.category().getName());
+        assertNull(updated.task());
+    }
+
+    @Test
+    @DisplayName("A failing consumer ends its subscription")
+    public void failingConsumer() throws Exception {
+        ChangeFeed.Subscription s = taskDao.getChangeFeed().subscribe(e -> {
+            throw new IllegalStateException("boom");
+        });
+        taskDao.createTask(new Task(0, "F", "c", "CatA", TaskStatus.NOT_STARTED, ""));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!s.isClosed() && System.nanoTime() < deadline) Thread.sleep(10);
+        assertTrue(s.isClosed());
+        assertInstanceOf(IllegalStateException.class, s.getFailure());
+    }
+}
@@ -0,0 +1,129 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConnectionPool tests")
+public class ConnectionPoolTest {
+    private Path tmpDbFile;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("pooltest-", ".db");
+        url = "jdbc:sqlite:" + tmpDbFile.toAbsolutePath().toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    @Test
+    @DisplayName("Returned connections are reused instead of reopened")
+    public void connectionsAreReused() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(url, new DbConfig())) {
+            Connection first;
+            try (ConnectionPool.Lease lease = pool.read()) {
+                first = lease.connection();
+            }
+            try (ConnectionPool.Lease lease = pool.read()) {
+                assertSame(first, lease.connection());
+            }
+            assertEquals(1, pool.getOpenedCount());
+            assertEquals(2, pool.getLeaseCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Writer is exclusive and lease times out while held")
+    public void writerIsExclusive() throws Exception {
+        DbConfig config = new DbConfig();
+        config.setLeaseTimeoutMillis(50);
+        try (ConnectionPool pool = new ConnectionPool(url, config)) {
+            try (ConnectionPool.Lease held = pool.write()) {
+                assertNotNull(held.connection());
+                assertThrows(SQLException.class, () -> pool.write());
+            }
+            assertTrue(pool.getMaxLeaseWaitNanos() > 0);
+            try (ConnectionPool.Lease again = pool.write()) {
+                assertNotNull(again.connection());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reader leases are bounded by the configured pool size")
+    public void readersAreBounded() throws Exception {
+        DbConfig config = new DbConfig();
+        config.setReaderPoolSize(2);
+        config.setLeaseTimeoutMillis(50);
+        try (ConnectionPool pool = new ConnectionPool(url, config)) {
+            try (ConnectionPool.Lease a = pool.read(); ConnectionPool.Lease b = pool.read()) {
+                assertNotSame(a.connection(), b.connection());
+                assertThrows(SQLException.class, () -> pool.read());
+            }
+            assertEquals(2, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Idle connections are evicted after the timeout")
+    public void idleConnectionsEvicted() throws Exception {
+        DbConfig config = new DbConfig();
+        config.setIdleTimeoutMillis(1);
+        try (ConnectionPool pool = new ConnectionPool(url, config)) {
+            ConnectionPool.Lease a = pool.read();
+            ConnectionPool.Lease b = pool.read();
+            Connection stale = a.connection();
+            a.close();
+            Thread.sleep(20);
+            b.close();
+            assertTrue(stale.isClosed());
+            assertEquals(1, pool.getEvictedCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Open transaction is rolled back when the lease is returned")
+    public void openTransactionRolledBack() throws Exception {
+        try (Db db = new Db(url)) {
+            ConnectionPool pool = db.getConnectionPool();
+            try (ConnectionPool.Lease lease = pool.write()) {
+                Connection c = lease.connection();
+                c.setAutoCommit(false);
+                try (java.sql.Statement st = c.createStatement()) {
+                    st.executeUpdate("INSERT INTO Categories (name, description) VALUES ('Tx', 'd')");
+                }
+            }
+            assertNull(db.getCategory("Tx"));
+            try (ConnectionPool.Lease lease = pool.write()) {
+                assertTrue(lease.connection().getAutoCommit());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Closed pool refuses new leases and closes returned connections")
+    public void closeLifecycle() throws Exception {
+        ConnectionPool pool = new ConnectionPool(url, new DbConfig());
+        ConnectionPool.Lease lease = pool.read();
+        Connection c = lease.connection();
+        pool.close();
+        assertTrue(pool.isClosed());
+        assertFalse(c.isClosed());
+        lease.close();
+        assertTrue(c.isClosed());
+        assertThrows(SQLException.class, () -> pool.read());
+        assertThrows(IllegalStateException.class, () -> lease.connection());
+    }
+}
@@ -0,0 +1,128 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DbMetrics tests")
+public class DbMetricsTest {
+    private Path tmpDbFile;
+    private Db db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("metrics-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    private static DbMetrics.OperationSnapshot op(DbMetrics.Snapshot s, String name) {
+        return s.operations().stream().filter(o -> o.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    @DisplayName("Calls, rows and errors are recorded per operation")
+    public void recordsOperations() throws Exception {
+        db.addCategory(new Category("CatA", "desc"));
+        db.createTasks(List.of(new Task(0, "a", "", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "b", "", "CatA", TaskStatus.NOT_STARTED, "")));
+        db.getTasks();
+        db.getTasks();
+        assertThrows(Exception.class, () -> db.addCategory(new Category("CatA", "dup")));
+
+        DbMetrics.Snapshot s = db.getMetrics().snapshot();
+        assertEquals(2, op(s, "getTasks").calls());
+        assertEquals(4, op(s, "getTasks").rows());
+        assertTrue(op(s, "getTasks").latency().max() > 0);
+        assertEquals(2, op(s, "createTasks").rows());
+        assertEquals(2, op(s, "addCategory").calls());
+        assertEquals(1, op(s, "addCategory").errors());
+        assertEquals(4, s.rowsRead());
+        assertEquals(3, s.rowsWritten());
+        assertEquals(1, s.errors());
+        assertTrue(s.connectionWaits().count() >= 5);
+        assertTrue(s.format().contains("getTasks"));
+        assertFalse(s.format().contains("deleteTasks"));
+    }
+
+    @Test
+    @DisplayName("Metrics are published over JMX and dumped to a file")
+    public void jmxAndDump() throws Exception {
+        db.getTasks();
+        ObjectName name = db.getMetrics().registerMBean("test");
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RowsRead"));
+        TabularData calls = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Calls");
+        assertFalse(calls.isEmpty());
+
+        Path dump = Files.createTempFile("metrics-", ".log");
+        try {
+            db.getMetrics().startDump(dump, Duration.ofMillis(20));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (Files.size(dump) == 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            assertTrue(Files.readString(dump).contains("getTasks"));
+        } finally {
+            db.close();
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    @Test
+    @DisplayName("Metrics can be enabled through DbConfig")
+    public void configured() throws Exception {
+        Path dump = Files.createTempFile("metrics-", ".log");
+        DbConfig config = new DbConfig();
+        config.setMetricsJmx(true);
+        config.setMetricsFile(dump.toString());
+        config.setMetricsIntervalSeconds(1);
+        Path file = Files.createTempFile("metrics-cfg-", ".db");
+        try (Db other = new Db("jdbc:sqlite:" + file.toAbsolutePath(), config)) {
+            boolean registered = ManagementFactory.getPlatformMBeanServer()
+                    .queryNames(new ObjectName("todo:type=DbMetrics,*"), null).stream()
+                    .anyMatch(n -> n.toString().contains(file.getFileName().toString()));
+            assertTrue(registered);
+            other.latestChangeSequence();
+            assertEquals(1, op(other.getMetrics().snapshot(), "latestChangeSequence").calls());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    @Test
+    @DisplayName("A Db whose metrics fail to start does not leave its writer thread or MBean behind")
+    public void failedStartCleansUp() throws Exception {
+        DbConfig config = new DbConfig();
+        config.setMetricsJmx(true);
+        config.setMetricsFile("bad\0name");
+        Path file = Files.createTempFile("metrics-bad-", ".db");
+        String url = "jdbc:sqlite:" + file.toAbsolutePath();
+        try {
+            assertThrows(RuntimeException.class, () -> new Db(url, config));
+            assertTrue(Thread.getAllStackTraces().keySet().stream()
+                    .noneMatch(t -> t.getName().equals("db-writer-" + url)));
+            assertTrue(ManagementFactory.getPlatformMBeanServer()
+                    .queryNames(new ObjectName("todo:type=DbMetrics,*"), null).stream()
+                    .noneMatch(n -> n.toString().contains(file.getFileName().toString())));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.sql.SQLException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,6 +29,7 @@ public class DbTest {
 
     @AfterEach
     public void tearDown() throws Exception {
+        db.close();
         try {
             Files.deleteIfExists(tmpDbFile);
         } catch (Exception ignored) {
@@ -221,9 +223,8 @@ public class DbTest {
         }
         Task t2b = db.getTasks().stream().filter(x -> x.getId() == id2).findFirst().orElse(null);
         assertNotNull(t2b);
-        // Current parseTask first tries mapping by code and returns NOT_STARTED when unknown.
-        // When status is stored as enum name (e.g. 'IN_PROGRESS') parseTask will not map it
-        // because TaskStatus.fromCode does not throw for unknown codes; expect NOT_STARTED.
+        // Statuses are mapped by code only and unknown codes read as NOT_STARTED.
+        // A status stored as enum name (e.g. 'IN_PROGRESS') is not a code; expect NOT_STARTED.
         assertEquals(TaskStatus.NOT_STARTED, t2b.getStatus());
 
         // invalid status -> fallback
@@ -279,9 +280,17 @@ public class DbTest {
         db.deleteCategory("Surv");
         assertTrue(db.getTasks().stream().anyMatch(t -> t.getId() == id));
 
-        // read-only: mark file readonly and expect writes to fail
+        // read-only: mark file readonly and expect writes to fail. Pooled connections keep the
+        // write handle they were opened with (and SQLite shares file handles within a process),
+        // so both instances are closed and the check goes through a freshly opened Db.
+        db.close();
+        other.close();
         try { tmpDbFile.toFile().setReadOnly(); } catch (Exception ignored) {}
-        assertThrows(SQLException.class, () -> db.createTask(new Task(0, "R", "c", null, TaskStatus.NOT_STARTED, "")));
+        assertThrows(SQLException.class, () -> {
+            try (Db readOnly = new Db(url)) {
+                readOnly.createTask(new Task(0, "R", "c", null, TaskStatus.NOT_STARTED, ""));
+            }
+        });
         // clear readonly for cleanup
         try { tmpDbFile.toFile().setWritable(true); } catch (Exception ignored) {}
     }
@@ -298,4 +307,110 @@ public class DbTest {
         assertEquals(longName, t.getName());
         assertEquals(unicode, t.getContent());
     }
+
+    @Test
+    @DisplayName("Bulk create returns ids in order across several batches")
+    public void bulkCreateTasks() throws Exception {
+        DbConfig config = new DbConfig();
+        config.setBatchSize(3);
+        String url = "jdbc:sqlite:" + tmpDbFile.toAbsolutePath().toString();
+        try (Db small = new Db(url, config)) {
+            int existing = small.createTask(new Task(0, "first", "c", null, TaskStatus.NOT_STARTED, ""));
+            List<Task> batch = new ArrayList<>();
+            for (int i = 0; i < 8; i++) batch.add(new Task(0, "bulk" + i, "c", null, TaskStatus.IN_PROGRESS, ""));
+            int[] ids = small.createTasks(batch);
+            assertEquals(8, ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(existing + 1 + i, ids[i]);
+                final int id = ids[i];
+                Task stored = small.getTasks().stream().filter(t -> t.getId() == id).findFirst().orElse(null);
+                assertNotNull(stored);
+                assertEquals("bulk" + i, stored.getName());
+            }
+            assertEquals(0, small.createTasks(List.of()).length);
+        }
+    }
+
+    @Test
+    @DisplayName("Bulk create is all-or-nothing")
+    public void bulkCreateRollsBack() throws Exception {
+        List<Task> batch = List.of(
+                new Task(0, "ok", "c", null, TaskStatus.NOT_STARTED, ""),
+                new Task(0, null, "c", null, TaskStatus.NOT_STARTED, ""));
+        assertThrows(SQLException.class, () -> db.createTasks(batch));
+        assertTrue(db.getTasks().isEmpty());
+        // the writer connection is usable again afterwards
+        assertTrue(db.createTask(new Task(0, "after", "c", null, TaskStatus.NOT_STARTED, "")) > 0);
+    }
+
+    @Test
+    @DisplayName("Bulk update and delete of tasks and categories")
+    public void bulkUpdateAndDelete() throws Exception {
+        int[] ids = db.createTasks(List.of(
+                new Task(0, "a", "c", null, TaskStatus.NOT_STARTED, ""),
+                new Task(0, "b", "c", null, TaskStatus.NOT_STARTED, ""),
+                new Task(0, "c", "c", null, TaskStatus.NOT_STARTED, "")));
+        db.updateTasks(List.of(
+                new Task(ids[0], "a2", "c", null, TaskStatus.DONE, ""),
+                new Task(ids[1], "b2", "c", null, TaskStatus.DONE, "")));
+        assertEquals(2, db.getTasks().stream().filter(t -> t.getStatus() == TaskStatus.DONE).count());
+
+        db.deleteTasks(new int[] {ids[0], ids[2], -1});
+        ArrayList<Task> left = db.getTasks();
+        assertEquals(1, left.size());
+        assertEquals("b2", left.get(0).getName());
+
+        db.addCategories(List.of(new Category("X", "x"), new Category("Y", "y")));
+        db.updateCategories(List.of(new Category("X", "x2")));
+        assertEquals("x2", db.getCategory("X").getDescription());
+        db.deleteCategories(List.of("X", "Y"));
+        assertTrue(db.getCategories().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Keyset pagination walks all tasks in id order")
+    public void keysetPagination() throws Exception {
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) batch.add(new Task(0, "p" + i, "c", null, TaskStatus.NOT_STARTED, ""));
+        int[] ids = db.createTasks(batch);
+
+        ArrayList<Task> first = db.getTasksAfter(0, 10);
+        assertEquals(10, first.size());
+        assertEquals(ids[0], first.get(0).getId());
+        ArrayList<Task> third = db.getTasksAfter(ids[19], 10);
+        assertEquals(5, third.size());
+        assertEquals(ids[24], third.get(4).getId());
+        assertTrue(db.getTasksAfter(ids[24], 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("streamTasks returns every task once across page boundaries")
+    public void streamTasksAcrossPages() throws Exception {
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) batch.add(new Task(0, "s" + i, "c", null, TaskStatus.NOT_STARTED, ""));
+        int[] ids = db.createTasks(batch);
+
+        int[] streamed = db.streamTasks(7).mapToInt(Task::getId).toArray();
+        assertArrayEquals(ids, streamed);
+        // page size equal to the row count still terminates
+        assertEquals(20, db.streamTasks(20).count());
+        assertEquals(3, db.streamTasks(4).limit(3).count());
+        assertThrows(IllegalArgumentException.class, () -> db.streamTasks(0));
+    }
+
+    @Test
+    @DisplayName("Offset pages and task count")
+    public void offsetPagesAndCount() throws Exception {
+        assertEquals(0, db.countTasks());
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 12; i++) batch.add(new Task(0, "o" + i, "c", null, TaskStatus.NOT_STARTED, ""));
+        int[] ids = db.createTasks(batch);
+        assertEquals(12, db.countTasks());
+
+        ArrayList<Task> page = db.getTasksPage(5, 5);
+        assertEquals(5, page.size());
+        assertEquals(ids[5], page.get(0).getId());
+        assertEquals(2, db.getTasksPage(10, 5).size());
+        assertTrue(db.getTasksPage(20, 5).isEmpty());
+    }
 }
@@ -0,0 +1,99 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DbWriter tests")
+public class DbWriterTest {
+    private Path tmpDbFile;
+    private Db db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("writer-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    @Test
+    @DisplayName("Concurrent writers and readers all succeed through the single writer")
+    public void concurrentWritesAreSerialized() throws Exception {
+        db.addCategory(new Category("CatA", "desc"));
+        int threads = 16, perThread = 50;
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        int id = db.createTask(new Task(0, "t" + thread + "-" + i, "", "CatA", TaskStatus.NOT_STARTED, ""));
+                        db.updateTask(new Task(id, "t" + thread + "-" + i, "", "CatA", TaskStatus.DONE, ""));
+                        db.getTask(id);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        }
+        assertEquals(threads * perThread, db.countTasks());
+        assertTrue(db.getTasks().stream().allMatch(t -> t.getStatus() == TaskStatus.DONE));
+
+        DbWriter writer = db.getWriter();
+        assertEquals(1 + 2L * threads * perThread, writer.getCompleted());
+        assertEquals(0, writer.getFailed());
+        assertEquals(0, writer.getQueueDepth());
+        assertTrue(writer.getLeases() <= writer.getCompleted());
+        assertTrue(writer.getWritesPerSecond() > 0);
+
+        DbMetrics.Throughput throughput = db.getMetrics().throughput();
+        assertTrue(throughput.writesPerSecond() > 0);
+        assertTrue(throughput.readsPerSecond() > 0);
+    }
+
+    @Test
+    @DisplayName("Errors reach the caller, nested writes run inline, close rejects new writes")
+    public void errorsNestingAndClose() throws Exception {
+        DbWriter writer = db.getWriter();
+        assertThrows(SQLException.class, () -> writer.execute(lease -> lease.prepare("INSERT INTO Nope VALUES (1)").executeUpdate()));
+        assertThrows(IllegalStateException.class, () -> writer.execute(lease -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(2, writer.getFailed());
+
+        int nested = writer.execute(lease -> writer.execute(inner -> {
+            assertSame(lease, inner);
+            return 7;
+        }));
+        assertEquals(7, nested);
+
+        db.close();
+        assertThrows(SQLException.class, () -> writer.execute(lease -> 1));
+    }
+
+    @Test
+    @DisplayName("Reader connections are read-only")
+    public void readersAreReadOnly() throws Exception {
+        try (ConnectionPool.Lease lease = db.getConnectionPool().read()) {
+            assertThrows(SQLException.class,
+                    () -> lease.prepare("INSERT INTO Categories (name, description) VALUES ('R', 'd')").executeUpdate());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DueIndex tests")
+public class DueIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 5, 10);
+
+    @Test
+    @DisplayName("Writes before the load are ignored, the loader fills the index once")
+    public void loadOnce() {
+        DueIndex index = new DueIndex();
+        index.put(new Task(1, "a", "", null, TaskStatus.NOT_STARTED, DAY.toString()));
+        assertEquals(0, index.size());
+        index.ensureLoaded(() -> index.add(2, (int) DAY.toEpochDay(), TaskStatus.NOT_STARTED));
+        index.ensureLoaded(() -> fail("loaded twice"));
+        assertTrue(index.isLoaded());
+        assertArrayEquals(new int[]{2}, index.between(DAY, DAY, 10));
+
+        index.invalidate();
+        assertFalse(index.isLoaded());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("Ranges are ordered by date then id, finished tasks are not open")
+    public void ranges() {
+        DueIndex index = new DueIndex();
+        index.ensureLoaded(() -> {});
+        index.put(new Task(5, "a", "", null, TaskStatus.NOT_STARTED, DAY.toString()));
+        index.put(new Task(3, "b", "", null, TaskStatus.NOT_STARTED, DAY.toString()));
+        index.put(new Task(1, "c", "", null, TaskStatus.DONE, DAY.minusDays(1).toString()));
+        index.put(new Task(2, "d", "", null, TaskStatus.IN_PROGRESS, DAY.minusDays(2).toString()));
+        index.put(new Task(4, "e", "", null, TaskStatus.NOT_STARTED, DAY.plusDays(1).toString()));
+        index.put(new Task(6, "f", "", null, TaskStatus.NOT_STARTED, "not a date"));
+
+        assertEquals(5, index.size());
+        assertArrayEquals(new int[]{2, 1, 3, 5}, index.between(DAY.minusDays(2), DAY, 10));
+        assertArrayEquals(new int[]{2, 1}, index.between(DAY.minusDays(2), DAY, 2));
+        assertArrayEquals(new int[0], index.between(DAY, DAY.minusDays(1), 10));
+        assertArrayEquals(new int[]{2}, index.openBefore(DAY, 10));
+        assertArrayEquals(new int[]{3, 5, 4}, index.openFrom(DAY, 10));
+
+        // moving and clearing a due date
+        index.put(new Task(4, "e", "", null, TaskStatus.NOT_STARTED, DAY.minusDays(3).toString()));
+        index.put(new Task(3, "b", "", null, TaskStatus.NOT_STARTED, ""));
+        index.remove(2);
+        assertArrayEquals(new int[]{4}, index.openBefore(DAY, 10));
+        assertArrayEquals(new int[]{5}, index.openFrom(DAY, 10));
+        assertEquals(3, index.size());
+    }
+}
@@ -0,0 +1,44 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LatencyHistogram tests")
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Buckets are contiguous and bound every value within ~3%")
+    public void bucketBounds() {
+        int previous = -1;
+        for (long v = 0; v < 1_000_000; v += 1 + v / 50) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(b >= previous);
+            previous = b;
+            long upper = LatencyHistogram.bucketUpperBound(b);
+            assertTrue(upper >= v);
+            assertTrue(upper - v <= Math.max(1, v / 32), "value " + v + " bucket bound " + upper);
+        }
+        assertEquals(1887, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Snapshot reports count, extremes, mean and percentiles")
+    public void snapshot() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(LatencyHistogram.Snapshot.EMPTY, h.snapshot());
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+        LatencyHistogram.Snapshot s = h.snapshot();
+        assertEquals(1000, s.count());
+        assertEquals(1000, s.min());
+        assertEquals(1_000_000, s.max());
+        assertEquals(500_500, s.mean(), 1e-6);
+        assertEquals(500_000, s.p50(), 500_000 / 32.0);
+        assertEquals(990_000, s.p99(), 990_000 / 32.0);
+        assertTrue(s.p999() <= s.max());
+
+        h.reset();
+        assertEquals(0, h.getCount());
+    }
+}
@@ -0,0 +1,82 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LoadGenerator tests")
+public class LoadGeneratorTest {
+    private Path tmpDbFile;
+    private Db db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("load-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    @Test
+    @DisplayName("Options and mix are parsed, bad ones rejected")
+    public void parseConfig() {
+        LoadGenerator.Config config = LoadGenerator.Config.parse("rate=50", "concurrency=4", "duration=2", "mix=create:3, read:1", "seed=7");
+        assertEquals(50, config.getRate());
+        assertEquals(4, config.getConcurrency());
+        assertEquals(Duration.ofSeconds(2), config.getDuration());
+        assertEquals(3, config.getMix().get(LoadGenerator.Op.CREATE));
+        assertEquals(0, config.getMix().get(LoadGenerator.Op.DELETE));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Config.parse("speed=1"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Config.parse("mix=create:0"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Config.parse("rate=0"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Config.parse("rate=2e9"));
+    }
+
+    @Test
+    @DisplayName("A short run issues the mix at the target rate and reports every operation")
+    public void shortRun() throws Exception {
+        LoadGenerator.Config config = new LoadGenerator.Config();
+        config.setRate(400);
+        config.setConcurrency(16);
+        config.setDuration(Duration.ofMillis(600));
+        config.setReportInterval(Duration.ofMillis(200));
+        config.setSeed(42);
+        List<LoadGenerator.Report> intervals = new ArrayList<>();
+        LoadGenerator.Report total = new LoadGenerator(new TaskDao(db), new CategoryDao(db), config).run(intervals::add);
+
+        assertEquals(240, total.calls(), 10);
+        assertEquals(0, total.errors(), total.format());
+        assertFalse(intervals.isEmpty());
+        assertEquals(total.calls(), intervals.stream().mapToLong(LoadGenerator.Report::calls).sum());
+        for (LoadGenerator.Op op : LoadGenerator.Op.values()) {
+            LoadGenerator.OpReport r = total.operations().get(op.ordinal());
+            assertTrue(r.calls() > 0, op + " never ran");
+            assertTrue(r.latency().p99() >= r.latency().p50());
+        }
+        assertTrue(db.countTasks() > 0);
+        assertTrue(total.format().contains("CREATE"));
+    }
+
+    @Test
+    @DisplayName("Lock contention is recognised anywhere in the cause chain")
+    public void busyDetection() {
+        assertTrue(LoadGenerator.isBusy(new RuntimeException(new SQLException("[SQLITE_BUSY] The database file is locked", null, 5))));
+        assertTrue(LoadGenerator.isBusy(new SQLException("Timed out after 10 ms waiting for a database connection")));
+        assertFalse(LoadGenerator.isBusy(new RuntimeException(new SQLException("no such table", null, 1))));
+        assertFalse(LoadGenerator.isBusy(new IllegalStateException("boom")));
+    }
+}
@@ -0,0 +1,259 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LogStorage tests")
+public class LogStorageTest {
+
+    @TempDir
+    Path dir;
+
+    private static Task task(String name, String content, String category, TaskStatus status, String due) {
+        return new Task(0, name, content, category, status, due);
+    }
+
+    private LogStorage open() throws SQLException {
+        LogConfig config = new LogConfig();
+        config.setDirectory(dir);
+        config.setSegmentBytes(4096);
+        config.setCompactionIntervalSeconds(0);
+        return LogStorage.open(config);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> LogSegment.parseNumber(f) >= 0).sorted().toList();
+        }
+    }
+
+    private static List<String> names(List<Task> tasks) {
+        return tasks.stream().map(Task::getName).toList();
+    }
+
+    @Test
+    @DisplayName("Tasks and categories survive a restart and ids are never reused")
+    public void crudAndRecovery() throws SQLException {
+        int a, b;
+        try (LogStorage storage = open()) {
+            storage.addCategory(new Category("Praca", "opis"));
+            storage.addCategory(new Category("Dom", "opis"));
+            a = storage.createTask(task("a", "", "Dom", null, ""));
+            b = storage.createTask(task("b", "", "Praca", TaskStatus.DONE, "2026-03-01"));
+            assertEquals(a + 1, b);
+            assertEquals(TaskStatus.NOT_STARTED, storage.getTask(a).getStatus());
+
+            storage.updateTask(new Task(a, "a2", "", "Praca", TaskStatus.IN_PROGRESS, ""));
+            storage.updateCategory(new Category("Praca", "nowy opis"));
+            assertEquals(List.of("a2", "b"), names(storage.getTasks("Praca")));
+            assertTrue(storage.getTasks("Dom").isEmpty());
+
+            SQLException ex = assertThrows(SQLException.class, () -> storage.addCategory(new Category("Dom", "again")));
+            assertTrue(ex.getMessage().contains("UNIQUE"));
+        }
+        try (LogStorage storage = open()) {
+            assertEquals(List.of("a2", "b"), names(storage.getTasks()));
+            assertEquals(TaskStatus.IN_PROGRESS, storage.getTask(a).getStatus());
+            assertEquals("2026-03-01", storage.getTask(b).getDue());
+            assertEquals(List.of("Praca", "Dom"), storage.getCategories().stream().map(Category::getName).toList());
+            assertEquals("nowy opis", storage.getCategory("Praca").getDescription());
+            assertArrayEquals(new int[]{a}, storage.searchTaskIds("a2", 10));
+
+            storage.deleteTasks(new int[]{a, b});
+            assertEquals(0, storage.countTasks());
+            storage.compact();
+        }
+        try (LogStorage storage = open()) {
+            // nothing is left that carries the old ids, the segment header remembers them
+            assertEquals(b + 1, storage.createTask(task("c", "", null, null, "")));
+            assertEquals(1, storage.countTasks());
+        }
+    }
+
+    @Test
+    @DisplayName("A torn write at the end of the log is dropped on recovery")
+    public void tornTail() throws Exception {
+        int id;
+        try (LogStorage storage = open()) {
+            id = storage.createTask(task("kept", "", null, null, ""));
+        }
+        // make the last segment look like the process died while appending to it
+        Path last = segmentFiles().getLast();
+        try (FileChannel ch = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            ch.read(header, 8);
+            int end = header.flip().getInt();
+            ch.write(ByteBuffer.allocate(4).putInt(0, 0), 8);
+            ch.write(ByteBuffer.allocate(12).putInt(0, 100).putInt(4, 12345).putInt(8, 7), end);
+        }
+        try (LogStorage storage = open()) {
+            assertEquals(1, storage.getDroppedWrites());
+            assertEquals(List.of("kept"), names(storage.getTasks()));
+            assertEquals(id + 1, storage.createTask(task("after", "", null, null, "")));
+        }
+        try (LogStorage storage = open()) {
+            assertEquals(List.of("kept", "after"), names(storage.getTasks()));
+        }
+    }
+
+    @Test
+    @DisplayName("A bad checksum fails compaction, which is counted, and the next open")
+    public void corruption() throws Exception {
+        try (LogStorage storage = open()) {
+            storage.createTask(task("a", "treść", null, null, ""));
+            assertEquals(0, storage.getDroppedWrites());
+            Path first = segmentFiles().getFirst();
+            try (FileChannel ch = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // a byte inside the first record's body
+                ch.write(ByteBuffer.wrap(new byte[]{42}), LogSegment.HEADER_BYTES + LogRecord.HEADER_BYTES + 30);
+            }
+            SQLException failed = assertThrows(SQLException.class, storage::compact);
+            assertEquals(1, storage.getCompactionFailures());
+            assertSame(failed, storage.getLastCompactionError());
+            assertEquals(0, storage.getCompactions());
+        }
+        SQLException ex = assertThrows(SQLException.class, this::open);
+        assertTrue(ex.getMessage().contains("Corrupt"));
+    }
+
+    @Test
+    @DisplayName("Compaction reclaims superseded records and keeps the data and pending deletes")
+    public void compaction() throws Exception {
+        List<Task> created = new ArrayList<>();
+        for (int i = 0; i < 40; i++) created.add(task("t" + i, "treść zadania", "Dom", null, ""));
+        try (LogStorage storage = open()) {
+            storage.addCategory(new Category("Dom", "opis"));
+            int[] ids = storage.createTasks(created);
+            for (int round = 0; round < 5; round++) {
+                for (int id : ids) storage.updateTask(new Task(id, "t" + id + "-" + round, "treść zadania", "Dom", null, ""));
+            }
+            storage.deleteTasks(new int[]{ids[0], ids[1]});
+            List<String> before = names(storage.getTasks());
+            long bytes = storage.getLogBytes();
+            int segments = storage.getSegmentCount();
+            assertTrue(segments > 3);
+
+            long reclaimed = storage.compact();
+            assertTrue(reclaimed > 0);
+            assertEquals(bytes - reclaimed, storage.getLogBytes());
+            assertEquals(storage.getLiveBytes(), storage.getLogBytes());
+            assertTrue(storage.getSegmentCount() < segments);
+            assertEquals(before, names(storage.getTasks()));
+            assertEquals(segmentFiles().size(), storage.getSegmentCount());
+            assertEquals(0, storage.getIoFailures());
+
+            List<ChangeEvent> changes = storage.getChanges(ChangeEvent.Entity.TASK, 0, 1000);
+            assertEquals(40, changes.size());
+            assertEquals(2, changes.stream().filter(e -> e.type() == ChangeEvent.Type.DELETED).count());
+            assertEquals(1, storage.getChanges(ChangeEvent.Entity.CATEGORY, 0, 10).size());
+
+            // once trimmed, the deletes are garbage too
+            storage.trimChangeLog(storage.latestChangeSequence());
+            assertTrue(storage.getChanges(ChangeEvent.Entity.TASK, 0, 1000).isEmpty());
+            assertTrue(storage.compact() > 0);
+            assertEquals(before, names(storage.getTasks()));
+            assertEquals(List.of(ids[2]), storage.getTasks("Dom").stream().map(Task::getId).limit(1).toList());
+        }
+        try (LogStorage storage = open()) {
+            assertEquals(38, storage.countTasks());
+            assertTrue(storage.getChanges(ChangeEvent.Entity.TASK, 0, 1000).isEmpty());
+            assertEquals(1, storage.searchTaskIds("t40-4", 10).length);
+        }
+    }
+
+    @Test
+    @DisplayName("Each entity's change log is trimmed on its own and the trim points survive a restart")
+    public void trimPerEntity() throws SQLException {
+        try (LogStorage storage = open()) {
+            storage.addCategory(new Category("Dom", "opis"));
+            int id = storage.createTask(task("a", "", "Dom", null, ""));
+            storage.deleteTask(new Task(id, "", "", null, null, null));
+            storage.addCategory(new Category("Praca", "opis"));
+
+            assertEquals(2, storage.trimChangeLog(ChangeEvent.Entity.TASK, storage.latestChangeSequence()));
+            assertTrue(storage.getChanges(ChangeEvent.Entity.TASK, 0, 10).isEmpty());
+            assertEquals(2, storage.getChanges(ChangeEvent.Entity.CATEGORY, 0, 10).size());
+        }
+        try (LogStorage storage = open()) {
+            assertTrue(storage.getChanges(ChangeEvent.Entity.TASK, 0, 10).isEmpty());
+            assertEquals(2, storage.getChanges(ChangeEvent.Entity.CATEGORY, 0, 10).size());
+            assertEquals(2, storage.trimChangeLog(ChangeEvent.Entity.CATEGORY, storage.latestChangeSequence()));
+        }
+        try (LogStorage storage = open()) {
+            assertTrue(storage.getChanges(ChangeEvent.Entity.CATEGORY, 0, 10).isEmpty());
+            assertEquals(List.of("Dom", "Praca"), storage.getCategories().stream().map(Category::getName).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("A failing transaction writes nothing, and reads inside one see its own writes")
+    public void transactions() throws SQLException {
+        try (LogStorage storage = open()) {
+            storage.addCategory(new Category("Dom", "opis"));
+            int id = storage.createTask(task("a", "", "Dom", null, ""));
+            long sequence = storage.latestChangeSequence();
+            long bytes = storage.getLogBytes();
+
+            assertThrows(SQLException.class, () -> storage.inTransaction(s -> {
+                int created = s.createTask(task("b", "", "Dom", null, ""));
+                s.updateTask(new Task(id, "changed", "", "Praca", null, ""));
+                s.deleteCategory("Dom");
+                assertEquals(2, s.countTasks());
+                assertEquals("b", s.getTask(created).getName());
+                assertEquals(List.of("b"), names(s.getTasks("Dom")));
+                assertNull(s.getCategory("Dom"));
+                s.addCategory(new Category("Praca", "opis"));
+                s.addCategory(new Category("Praca", "again"));
+                return null;
+            }));
+
+            assertEquals(bytes, storage.getLogBytes());
+            assertEquals(sequence, storage.latestChangeSequence());
+            assertEquals(1, storage.countTasks());
+            assertEquals("a", storage.getTask(id).getName());
+            assertEquals(List.of("Dom"), storage.getCategories().stream().map(Category::getName).toList());
+
+            // larger than a segment
+            List<Task> many = new ArrayList<>();
+            for (int i = 0; i < 200; i++) many.add(task("zadanie " + i, "x".repeat(50), null, null, ""));
+            SQLException ex = assertThrows(SQLException.class, () -> storage.createTasks(many));
+            assertTrue(ex.getMessage().contains("does not fit"));
+            assertEquals(1, storage.countTasks());
+        }
+    }
+
+    @Test
+    @DisplayName("The DAOs work unchanged on top of the log backend")
+    public void daos() throws SQLException {
+        try (LogStorage storage = open(); TaskDao tasks = new TaskDao(storage)) {
+            CategoryDao categories = new CategoryDao(storage);
+            categories.createCategory(new Category("Dom", "opis"));
+            assertTrue(categories.exists("Dom"));
+
+            int id = tasks.createTask(task("Odkurzyć", "salon", "Dom", TaskStatus.IN_PROGRESS, "2026-05-04"));
+            assertEquals("Odkurzyć", tasks.getTask(id).getName());
+            assertEquals(1, tasks.searchTasks("odkurz", 10).size());
+            assertEquals(1, tasks.getTasksDueBetween(java.time.LocalDate.of(2026, 5, 1), java.time.LocalDate.of(2026, 5, 31), 10).size());
+            assertEquals(1, tasks.getStats().count("Dom", TaskStatus.IN_PROGRESS));
+            tasks.deleteTask(id);
+            assertEquals(0, tasks.countTasks());
+        }
+        LogStorage closed = open();
+        closed.close();
+        assertThrows(SQLException.class, closed::getTasks);
+    }
+}
@@ -0,0 +1,168 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MemoryStorage tests")
+public class MemoryStorageTest {
+
+    private static Task task(String name, String content, String category, TaskStatus status, String due) {
+        return new Task(0, name, content, category, status, due);
+    }
+
+    @Test
+    @DisplayName("Tasks get increasing ids that are never reused and read back like SQLite rows")
+    public void taskCrud() throws SQLException {
+        try (MemoryStorage storage = new MemoryStorage()) {
+            int a = storage.createTask(task("a", "", "Dom", null, ""));
+            int b = storage.createTask(task("b", "", "Praca", TaskStatus.DONE, "2026-03-01"));
+            assertEquals(a + 1, b);
+            assertEquals(TaskStatus.NOT_STARTED, storage.getTask(a).getStatus());
+            assertEquals(2, storage.countTasks());
+
+            storage.updateTask(new Task(a, "a2", "", "Praca", TaskStatus.IN_PROGRESS, ""));
+            assertEquals("a2", storage.getTask(a).getName());
+            assertEquals(List.of(a, b), storage.getTasks("Praca").stream().map(Task::getId).toList());
+            assertTrue(storage.getTasks("Dom").isEmpty());
+
+            storage.deleteTask(storage.getTask(b));
+            storage.updateTask(new Task(b, "gone", "", null, null, ""));
+            assertNull(storage.getTask(b));
+            assertEquals(a + 2, storage.createTask(task("c", "", null, null, "")));
+            assertEquals(2, storage.getTasksAfter(0, 10).size());
+            assertEquals(1, storage.getTasksPage(1, 10).size());
+
+            SQLException ex = assertThrows(SQLException.class, () -> storage.createTask(task(null, "", null, null, "")));
+            assertTrue(ex.getMessage().contains("NOT NULL"));
+        }
+    }
+
+    @Test
+    @DisplayName("Search matches word prefixes ignoring case and accents, best match first")
+    public void search() throws SQLException {
+        try (MemoryStorage storage = new MemoryStorage()) {
+            int once = storage.createTask(task("Zaparzyć kawę", "w ekspresie", "Dom", null, ""));
+            int twice = storage.createTask(task("Kawa dla gości", "kupić kawę", "Zakupy", null, ""));
+            storage.createTask(task("Zakupy", "mleko", "Dom", null, ""));
+
+            assertArrayEquals(new int[]{twice, once}, storage.searchTaskIds("KAW", 10));
+            assertArrayEquals(new int[]{twice}, storage.searchTaskIds("kawe gosci", 10));
+            assertArrayEquals(new int[0], storage.searchTaskIds("kawa mleko", 10));
+
+            storage.updateTask(new Task(twice, "Inne", "", "Dom", null, ""));
+            assertArrayEquals(new int[]{once}, storage.searchTaskIds("kaw", 10));
+            storage.deleteTasks(new int[]{once});
+            assertArrayEquals(new int[0], storage.searchTaskIds("kaw", 10));
+        }
+    }
+
+    @Test
+    @DisplayName("A failing transaction leaves no tasks, categories or change events behind")
+    public void rollback() throws SQLException {
+        try (MemoryStorage storage = new MemoryStorage()) {
+            storage.addCategory(new Category("Dom", "opis"));
+            int id = storage.createTask(task("a", "", "Dom", null, ""));
+            long sequence = storage.latestChangeSequence();
+
+            assertThrows(SQLException.class, () -> storage.inTransaction(s -> {
+                s.createTask(task("b", "", "Dom", null, ""));
+                s.updateTask(new Task(id, "changed", "", "Praca", null, ""));
+                s.deleteCategory("Dom");
+                s.addCategory(new Category("Praca", "opis"));
+                s.addCategory(new Category("Praca", "again"));
+                return null;
+            }));
+
+            assertEquals(1, storage.countTasks());
+            assertEquals("a", storage.getTask(id).getName());
+            assertEquals(1, storage.getTasks("Dom").size());
+            assertTrue(storage.getTasks("Praca").isEmpty());
+            assertEquals(List.of("Dom"), storage.getCategories().stream().map(Category::getName).toList());
+            assertEquals(sequence, storage.getChanges(ChangeEvent.Entity.TASK, 0, 100).getLast().sequence());
+            assertEquals(1, storage.searchTaskIds("a", 10).length);
+        }
+    }
+
+    @Test
+    @DisplayName("Every committed write is logged once with the row after it, or before it for deletes")
+    public void changeLog() throws SQLException {
+        try (MemoryStorage storage = new MemoryStorage()) {
+            int id = storage.createTask(task("a", "", null, null, ""));
+            storage.updateTask(new Task(id, "b", "", null, null, ""));
+            storage.addCategory(new Category("Dom", "opis"));
+            storage.deleteTasks(new int[]{id, id + 100});
+
+            List<ChangeEvent> tasks = storage.getChanges(ChangeEvent.Entity.TASK, 0, 100);
+            assertEquals(List.of(ChangeEvent.Type.CREATED, ChangeEvent.Type.UPDATED, ChangeEvent.Type.DELETED),
+                    tasks.stream().map(ChangeEvent::type).toList());
+            assertEquals("b", tasks.getLast().task().getName());
+            assertEquals(1, storage.getChanges(ChangeEvent.Entity.CATEGORY, 0, 100).size());
+            assertEquals(4, storage.latestChangeSequence());
+
+            assertEquals(2, storage.trimChangeLog(2));
+            assertEquals(4, storage.latestChangeSequence());
+            assertEquals(1, storage.getChanges(ChangeEvent.Entity.TASK, 0, 100).size());
+            // an entity trim leaves the other entity's events alone
+            assertEquals(1, storage.trimChangeLog(ChangeEvent.Entity.TASK, 4));
+            assertEquals(1, storage.getChanges(ChangeEvent.Entity.CATEGORY, 0, 100).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Change events become visible when their transaction commits, and never if it rolls back")
+    public void changeLogOnCommit() throws SQLException {
+        try (MemoryStorage storage = new MemoryStorage()) {
+            storage.createTask(task("a", "", null, null, ""));
+            assertThrows(SQLException.class, () -> storage.inTransaction(s -> {
+                s.createTask(task("b", "", null, null, ""));
+                assertEquals(1, s.getChanges(ChangeEvent.Entity.TASK, 0, 100).size());
+                assertEquals(1, s.latestChangeSequence());
+                throw new SQLException("rollback");
+            }));
+            assertEquals(1, storage.getChanges(ChangeEvent.Entity.TASK, 0, 100).size());
+            assertEquals(1, storage.latestChangeSequence());
+
+            storage.inTransaction(s -> {
+                s.createTask(task("c", "", null, null, ""));
+                s.createTask(task("d", "", null, null, ""));
+                assertEquals(1, s.latestChangeSequence());
+                return null;
+            });
+            List<ChangeEvent> tasks = storage.getChanges(ChangeEvent.Entity.TASK, 0, 100);
+            assertEquals(List.of("a", "c", "d"), tasks.stream().map(e -> e.task().getName()).toList());
+            assertEquals(List.of(1L, 2L, 3L), tasks.stream().map(ChangeEvent::sequence).toList());
+            assertEquals(3, storage.latestChangeSequence());
+        }
+    }
+
+    @Test
+    @DisplayName("The DAOs work unchanged on top of the in-memory backend")
+    public void daos() {
+        try (MemoryStorage storage = new MemoryStorage(); TaskDao tasks = new TaskDao(storage)) {
+            CategoryDao categories = new CategoryDao(storage);
+            categories.createCategory(new Category("Dom", "opis"));
+            assertTrue(categories.exists("Dom"));
+
+            int id = tasks.createTask(task("Odkurzyć", "salon", "Dom", TaskStatus.IN_PROGRESS, "2026-05-04"));
+            assertEquals("Odkurzyć", tasks.getTask(id).getName());
+            assertEquals(1, tasks.searchTasks("odkurz", 10).size());
+            assertEquals(1, tasks.getTasksDueBetween(java.time.LocalDate.of(2026, 5, 1), java.time.LocalDate.of(2026, 5, 31), 10).size());
+            assertEquals(1, tasks.getStats().count("Dom", TaskStatus.IN_PROGRESS));
+
+            // tasks outlive their category, as with the SQLite schema
+            categories.deleteCategory("Dom");
+            assertEquals(1, tasks.getTasksByCategory("Dom").size());
+            tasks.deleteTask(id);
+            assertEquals(0, tasks.countTasks());
+        }
+        // nothing survives close
+        MemoryStorage closed = new MemoryStorage();
+        closed.close();
+        assertThrows(SQLException.class, closed::getTasks);
+    }
+}
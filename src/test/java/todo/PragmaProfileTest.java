@@ -0,0 +1,87 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PragmaProfile tests")
+public class PragmaProfileTest {
+    private Path tmpDbFile;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("pragmas-", ".db");
+        url = "jdbc:sqlite:" + tmpDbFile.toAbsolutePath().toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+        try { Files.deleteIfExists(Path.of(tmpDbFile + "-wal")); } catch (Exception ignored) {}
+        try { Files.deleteIfExists(Path.of(tmpDbFile + "-shm")); } catch (Exception ignored) {}
+    }
+
+    private static String pragma(Connection c, String name) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet res = st.executeQuery("PRAGMA " + name)) {
+            res.next();
+            return res.getString(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Balanced profile is applied to reader and writer connections")
+    public void balancedAppliedToPooledConnections() throws Exception {
+        try (Db db = new Db(url, new DbConfig())) {
+            try (ConnectionPool.Lease lease = db.getConnectionPool().write()) {
+                Connection c = lease.connection();
+                assertEquals("wal", pragma(c, "journal_mode"));
+                assertEquals("1", pragma(c, "synchronous")); // NORMAL
+                assertEquals("-16000", pragma(c, "cache_size"));
+                assertEquals("2", pragma(c, "temp_store")); // MEMORY
+                assertEquals("5000", pragma(c, "busy_timeout"));
+            }
+            try (ConnectionPool.Lease lease = db.getConnectionPool().read()) {
+                assertEquals("1", pragma(lease.connection(), "synchronous"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Presets differ in synchronous level and overrides are applied")
+    public void presetsAndOverrides() throws Exception {
+        DbConfig config = new DbConfig();
+        PragmaProfile safe = PragmaProfile.named("SAFE");
+        safe.setBusyTimeoutMillis(1234);
+        config.setPragmas(safe);
+        try (Db db = new Db(url, config);
+             ConnectionPool.Lease lease = db.getConnectionPool().write()) {
+            assertEquals("2", pragma(lease.connection(), "synchronous")); // FULL
+            assertEquals("1234", pragma(lease.connection(), "busy_timeout"));
+        }
+        assertEquals("OFF", PragmaProfile.fast().getSynchronous());
+        assertEquals("fast", PragmaProfile.named("fast").getName());
+    }
+
+    @Test
+    @DisplayName("Unknown profile names and values are rejected")
+    public void invalidValuesRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PragmaProfile.named("turbo"));
+        PragmaProfile p = PragmaProfile.balanced();
+        assertThrows(IllegalArgumentException.class, () -> p.setSynchronous("NORMAL; DROP TABLE Tasks"));
+        assertThrows(IllegalArgumentException.class, () -> p.setJournalMode("fancy"));
+        assertThrows(IllegalArgumentException.class, () -> p.setMmapSize(-1));
+        p.setJournalMode("delete");
+        assertEquals("DELETE", p.getJournalMode());
+    }
+}
@@ -0,0 +1,108 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SchemaMigrations tests")
+public class SchemaMigrationsTest {
+    private Path tmpDbFile;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("migrations-", ".db");
+        url = "jdbc:sqlite:" + tmpDbFile.toAbsolutePath().toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    private static boolean indexExists(Connection c, String name) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet res = st.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = '" + name + "'")) {
+            return res.next();
+        }
+    }
+
+    @Test
+    @DisplayName("New database is migrated to the latest version with indexes")
+    public void freshDatabaseMigrated() throws Exception {
+        try (Db db = new Db(url)) {
+            assertEquals(SchemaMigrations.MIGRATIONS.size(), db.getAppliedMigrations().size());
+            assertTrue(db.getAppliedMigrations().stream().allMatch(m -> m.durationNanos() > 0));
+        }
+        try (Connection c = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(c));
+            assertTrue(indexExists(c, "idx_tasks_category_status"));
+            assertTrue(indexExists(c, "idx_tasks_status"));
+            assertTrue(indexExists(c, "idx_tasks_due"));
+        }
+    }
+
+    @Test
+    @DisplayName("Migrations run only once")
+    public void migrationsRunOnce() throws Exception {
+        try (Db first = new Db(url)) {
+            assertFalse(first.getAppliedMigrations().isEmpty());
+        }
+        try (Db second = new Db(url)) {
+            assertTrue(second.getAppliedMigrations().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Pre-existing unversioned database is upgraded in place")
+    public void legacyDatabaseUpgraded() throws Exception {
+        try (Connection c = DriverManager.getConnection(url); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE Categories (name TEXT PRIMARY KEY, description TEXT)");
+            st.execute("CREATE TABLE Tasks (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, content TEXT, categoryName TEXT, status TEXT, dueDate TEXT)");
+            st.execute("INSERT INTO Tasks (name) VALUES ('legacy')");
+            st.execute("INSERT INTO Tasks (name, dueDate) VALUES ('dated', '2026-03-15'), ('bad', '2026-02-30'), ('text', 'soon')");
+        }
+        try (Db db = new Db(url)) {
+            assertEquals(4, db.getTasks().size());
+            // rows that predate the full-text index are searchable after the upgrade
+            assertEquals(1, db.searchTaskIds("legacy", 10).length);
+            // only valid ISO due dates are backfilled into dueDay
+            List<Task> due = db.getTasksDueBetween(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 12, 31), 10);
+            assertEquals(List.of("dated"), due.stream().map(Task::getName).toList());
+        }
+        try (Connection c = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(c));
+        }
+    }
+
+    @Test
+    @DisplayName("Failing migration is rolled back and leaves the version unchanged")
+    public void failingMigrationRolledBack() throws Exception {
+        List<SchemaMigrations.Migration> migrations = List.of(
+                new SchemaMigrations.Migration(1, "ok", List.of("CREATE TABLE A (x INTEGER)")),
+                new SchemaMigrations.Migration(2, "broken", List.of("CREATE TABLE B (x INTEGER)", "NOT VALID SQL")));
+        try (Connection c = DriverManager.getConnection(url)) {
+            assertThrows(SQLException.class, () -> SchemaMigrations.migrate(c, migrations));
+            assertEquals(1, SchemaMigrations.currentVersion(c));
+            try (Statement st = c.createStatement();
+                 ResultSet res = st.executeQuery("SELECT count(*) FROM sqlite_master WHERE name = 'B'")) {
+                res.next();
+                assertEquals(0, res.getInt(1));
+            }
+            assertTrue(c.getAutoCommit());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SearchPipeline tests")
+public class SearchPipelineTest {
+    private Path tmpDbFile;
+    private Db db;
+    private TaskDao dao;
+    private SearchPipeline pipeline;
+    private final BlockingQueue<SearchPipeline.Result> results = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("search-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+        db.addCategory(new Category("CatA", "desc"));
+        dao = new TaskDao(db);
+        dao.createTasks(List.of(
+                new Task(0, "Baza danych", "indeksy", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "Bazar", "zakupy", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "Front end", "przyciski", "CatA", TaskStatus.NOT_STARTED, "")));
+        pipeline = new SearchPipeline(dao, 100, 30, Runnable::run, results::add, ex -> fail(ex.toString()));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        pipeline.close();
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    private SearchPipeline.Result next() throws InterruptedException {
+        SearchPipeline.Result r = results.poll(5, TimeUnit.SECONDS);
+        assertNotNull(r, "no result published");
+        return r;
+    }
+
+    @Test
+    @DisplayName("Rapid keystrokes collapse into one query for the final text")
+    public void debounced() throws Exception {
+        pipeline.submit("b");
+        pipeline.submit("ba");
+        pipeline.submit("baz");
+        SearchPipeline.Result r = next();
+        assertEquals("baz", r.query());
+        assertEquals(2, r.tasks().size());
+        assertEquals(1, pipeline.getDatabaseQueries());
+        assertTrue(pipeline.getSuperseded() >= 2);
+        assertNull(results.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("Extending the query refines the previous result in memory")
+    public void refinesPreviousResult() throws Exception {
+        pipeline.submit("baz");
+        assertEquals(2, next().tasks().size());
+
+        pipeline.submit("baza d");
+        SearchPipeline.Result r = next();
+        assertTrue(r.refined());
+        assertEquals(List.of("Baza danych"), r.tasks().stream().map(Task::getName).toList());
+        assertEquals(1, pipeline.getDatabaseQueries());
+
+        // not an extension: back to the database
+        pipeline.submit("front");
+        r = next();
+        assertFalse(r.refined());
+        assertEquals(1, r.tasks().size());
+        assertEquals(2, pipeline.getDatabaseQueries());
+    }
+
+    @Test
+    @DisplayName("Invalidate and cancel")
+    public void invalidateAndCancel() throws Exception {
+        pipeline.submit("baz");
+        next();
+        dao.createTask(new Task(0, "Bazylia", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        pipeline.invalidate();
+        pipeline.submit("bazy");
+        SearchPipeline.Result r = next();
+        assertFalse(r.refined());
+        assertEquals(1, r.tasks().size());
+
+        pipeline.submit("front");
+        pipeline.cancel();
+        assertNull(results.poll(150, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("In-memory matching mirrors the full-text rules")
+    public void matchingRules() {
+        Task t = new Task(1, "Przegląd kodu", "Łatwe zadanie", "BackEnd", TaskStatus.NOT_STARTED, "");
+        assertTrue(SearchPipeline.matches(t, SearchPipeline.terms("PRZEGLAD")));
+        assertTrue(SearchPipeline.matches(t, SearchPipeline.terms("kod back")));
+        assertFalse(SearchPipeline.matches(t, SearchPipeline.terms("odu")));
+        assertTrue(SearchPipeline.extendsQuery("baza d", "baza"));
+        assertFalse(SearchPipeline.extendsQuery("front", "baza"));
+        assertFalse(SearchPipeline.extendsQuery("baza", ""));
+    }
+}
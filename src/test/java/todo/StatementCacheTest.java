@@ -0,0 +1,76 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("StatementCache tests")
+public class StatementCacheTest {
+
+    @Test
+    @DisplayName("Same SQL is prepared once and counted as hit afterwards")
+    public void hitsAndMisses() throws Exception {
+        LongAdder hits = new LongAdder();
+        LongAdder misses = new LongAdder();
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            StatementCache cache = new StatementCache(c, 4, hits, misses);
+            PreparedStatement first = cache.prepare("SELECT 1");
+            PreparedStatement second = cache.prepare("SELECT 1");
+            assertSame(first, second);
+            assertEquals(1, hits.sum());
+            assertEquals(1, misses.sum());
+
+            // generated-keys variant is a different statement
+            assertNotSame(first, cache.prepare("SELECT 1", Statement.RETURN_GENERATED_KEYS));
+            assertEquals(2, misses.sum());
+        }
+    }
+
+    @Test
+    @DisplayName("Least recently used statement is evicted and closed")
+    public void lruEviction() throws Exception {
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            StatementCache cache = new StatementCache(c, 2, new LongAdder(), new LongAdder());
+            PreparedStatement a = cache.prepare("SELECT 1");
+            PreparedStatement b = cache.prepare("SELECT 2");
+            cache.prepare("SELECT 1"); // touch a, b becomes eldest
+            cache.prepare("SELECT 3");
+            assertEquals(2, cache.size());
+            assertTrue(b.isClosed());
+            assertFalse(a.isClosed());
+
+            cache.clear();
+            assertTrue(a.isClosed());
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Db reuses statements across calls")
+    public void dbReusesStatements() throws Exception {
+        Path tmp = Files.createTempFile("stmtcache-", ".db");
+        try (Db db = new Db("jdbc:sqlite:" + tmp.toAbsolutePath())) {
+            db.addCategory(new Category("C", "d"));
+            for (int i = 0; i < 5; i++) db.createTask(new Task(0, "T" + i, "c", "C", TaskStatus.NOT_STARTED, ""));
+            assertTrue(db.getConnectionPool().getStatementCacheHits() >= 4);
+            assertEquals(5, db.getTasks().size());
+        } finally {
+            try { Files.deleteIfExists(tmp); } catch (Exception ignored) {}
+        }
+    }
+
+    @Test
+    @DisplayName("Capacity must be positive")
+    public void capacityValidated() {
+        assertThrows(IllegalArgumentException.class, () -> new StatementCache(null, 0, new LongAdder(), new LongAdder()));
+    }
+}
@@ -0,0 +1,123 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TaskCache tests")
+public class TaskCacheTest {
+
+    private static Task task(int id, String category) {
+        return new Task(id, "T" + id, "", category, TaskStatus.NOT_STARTED, "");
+    }
+
+    @Test
+    @DisplayName("Hits, misses and load metrics")
+    public void hitsAndMisses() {
+        TaskCache cache = new TaskCache(10, 100);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(2, cache.getCategoryTasks("A", () -> {
+                loads.incrementAndGet();
+                return List.of(task(1, "A"), task(2, "A"));
+            }).size());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.75, cache.getHitRatio(), 1e-9);
+        assertEquals(1, cache.getLoads());
+        assertTrue(cache.getTotalLoadNanos() > 0);
+        // unknown ids are not cached
+        assertNull(cache.getTask(99, () -> null));
+        assertNull(cache.getTask(99, () -> null));
+        assertEquals(0, cache.getCachedTasks());
+    }
+
+    @Test
+    @DisplayName("Tasks are evicted by count, category lists by weight")
+    public void eviction() {
+        TaskCache cache = new TaskCache(2, 5);
+        cache.getTask(1, () -> task(1, "A"));
+        cache.getTask(2, () -> task(2, "A"));
+        cache.getTask(1, () -> fail("should be cached"));
+        cache.getTask(3, () -> task(3, "A"));
+        // 2 was least recently used
+        assertEquals(2, cache.getCachedTasks());
+        assertSame(null, cache.getTask(2, () -> null));
+        assertEquals(1, cache.getEvictions());
+
+        cache.getCategoryTasks("A", () -> List.of(task(1, "A"), task(2, "A"), task(3, "A")));
+        cache.getCategoryTasks("B", () -> List.of(task(4, "B"), task(5, "B")));
+        assertEquals(5, cache.getCachedCategoryWeight());
+        cache.getCategoryTasks("C", () -> List.of(task(6, "C")));
+        // A (weight 3) made room for C
+        assertEquals(3, cache.getCachedCategoryWeight());
+        assertEquals(2, cache.getEvictions());
+        // a list bigger than the whole budget is returned but not cached
+        assertEquals(6, cache.getCategoryTasks("D", () -> List.of(task(7, "D"), task(8, "D"), task(9, "D"), task(10, "D"), task(11, "D"), task(12, "D"))).size());
+        assertEquals(3, cache.getCachedCategoryWeight());
+    }
+
+    @Test
+    @DisplayName("Writes patch cached entries")
+    public void writeThrough() {
+        TaskCache cache = new TaskCache(10, 100);
+        cache.getCategoryTasks("A", () -> List.of(task(1, "A"), task(2, "A")));
+        cache.getCategoryTasks("B", () -> List.of(task(3, "B")));
+
+        cache.created(task(4, "A"));
+        cache.updated(new Task(1, "moved", "", "B", TaskStatus.DONE, ""));
+        cache.deleted(2);
+
+        List<Task> a = cache.getCategoryTasks("A", () -> fail("should be cached"));
+        List<Task> b = cache.getCategoryTasks("B", () -> fail("should be cached"));
+        assertEquals(List.of(4), a.stream().map(Task::getId).toList());
+        assertEquals(List.of(3, 1), b.stream().map(Task::getId).toList());
+        assertEquals("moved", cache.getTask(1, () -> fail("should be cached")).getName());
+        assertEquals(0, cache.getMisses() - 2);
+    }
+
+    @Test
+    @DisplayName("A load racing with a write is not cached")
+    public void staleLoadNotCached() {
+        TaskCache cache = new TaskCache(10, 100);
+        cache.getTask(1, () -> {
+            cache.updated(task(5, "A"));
+            return task(1, "stale");
+        });
+        assertEquals(1, cache.getCachedTasks());
+        assertNull(cache.getTask(1, () -> null));
+    }
+
+    @Test
+    @DisplayName("TaskDao serves category reads from the cache and writes through")
+    public void daoWriteThrough() throws Exception {
+        Path file = Files.createTempFile("taskcache-", ".db");
+        try (Db db = new Db("jdbc:sqlite:" + file.toAbsolutePath())) {
+            db.addCategory(new Category("CatA", "desc"));
+            TaskDao dao = new TaskDao(db, new TaskCache(100, 1000));
+            int id = dao.createTask(task(0, "CatA"));
+            assertEquals(1, dao.getTasksByCategory("CatA").size());
+            dao.createTasks(List.of(task(0, "CatA"), task(0, "CatA")));
+            dao.updateTask(new Task(id, "renamed", "", "CatA", TaskStatus.DONE, ""));
+            List<Task> cached = dao.getTasksByCategory("CatA");
+            assertEquals(3, cached.size());
+            assertEquals(1, dao.getCache().getMisses());
+            // the cached list matches what SQLite has
+            assertEquals(db.getTasks("CatA").stream().map(Task::getName).sorted().toList(),
+                    cached.stream().map(Task::getName).sorted().toList());
+            dao.deleteTask(id);
+            assertNull(dao.getTask(id));
+            assertEquals(2, dao.getTasksByCategory("CatA").size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -72,9 +73,9 @@ public class TaskDaoTest {
             @Override
             public int createTask(Task task) throws SQLException { throw new SQLException("insert fail"); }
             @Override
-            public void updateTask(Task task) throws SQLException { throw new SQLException("update fail"); }
+            public boolean updateTask(Task task) throws SQLException { throw new SQLException("update fail"); }
             @Override
-            public void deleteTask(Task task) throws SQLException { throw new SQLException("delete fail"); }
+            public boolean deleteTask(Task task) throws SQLException { throw new SQLException("delete fail"); }
         }
 
         Db fdb = new FailingDb();
@@ -179,7 +180,7 @@ public class TaskDaoTest {
         class CapturingDb extends Db {
             public CapturingDb() throws SQLException { super(url); }
             @Override
-            public void deleteTask(Task task) throws SQLException { captured[0] = task; super.deleteTask(task); }
+            public boolean deleteTask(Task task) throws SQLException { captured[0] = task; return super.deleteTask(task); }
         }
 
         Db cdb = new CapturingDb();
@@ -191,4 +192,228 @@ public class TaskDaoTest {
         assertEquals(id, captured[0].getId());
         try { Files.deleteIfExists(tmp); } catch (Exception ignored) {}
     }
+
+    @Test
+    @DisplayName("Bulk create, update and delete through TaskDao")
+    public void bulkOperations() {
+        int[] ids = dao.createTasks(List.of(
+                new Task(0, "B1", "c", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "B2", "c", "CatA", TaskStatus.NOT_STARTED, "")));
+        assertEquals(2, ids.length);
+        assertTrue(ids[1] > ids[0]);
+
+        dao.updateTasks(List.of(new Task(ids[0], "B1x", "c", "CatA", TaskStatus.DONE, "")));
+        assertTrue(dao.getAllTasks().stream().anyMatch(t -> t.getId() == ids[0] && "B1x".equals(t.getName())));
+
+        dao.deleteTasks(ids);
+        assertTrue(dao.getAllTasks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Bulk write failure is wrapped and nothing is inserted")
+    public void bulkFailureWrapped() {
+        RuntimeException rex = assertThrows(RuntimeException.class, () -> dao.createTasks(List.of(
+                new Task(0, "ok", "c", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, null, "c", "CatA", TaskStatus.NOT_STARTED, ""))));
+        assertTrue(rex.getCause() instanceof SQLException);
+        assertTrue(dao.getAllTasks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Paged and streamed reads through TaskDao")
+    public void pagedAndStreamedReads() {
+        for (int i = 0; i < 5; i++) dao.createTask(new Task(0, "S" + i, "c", "CatA", TaskStatus.NOT_STARTED, ""));
+        List<Task> page = dao.getTasksAfter(0, 3);
+        assertEquals(3, page.size());
+        assertEquals(2, dao.getTasksAfter(page.get(2).getId(), 3).size());
+        assertEquals(5, dao.streamAllTasks(2).count());
+        assertEquals(5, dao.streamAllTasks().filter(t -> t.getName().startsWith("S")).count());
+    }
+
+    @Test
+    @DisplayName("Full-text search follows inserts, updates and deletes")
+    public void fullTextSearch() {
+        int a = dao.createTask(new Task(0, "Napraw bazę danych", "indeks na tabeli", "CatA", TaskStatus.NOT_STARTED, ""));
+        int b = dao.createTask(new Task(0, "Baza danych", "baza baza baza", "CatA", TaskStatus.NOT_STARTED, ""));
+        dao.createTask(new Task(0, "Front end", "przyciski", "CatA", TaskStatus.NOT_STARTED, ""));
+
+        // prefix, case and accent insensitive; denser match ranks first
+        assertArrayEquals(new int[]{b, a}, dao.searchTaskIds("BAZ", 10));
+        assertArrayEquals(new int[]{a}, dao.searchTaskIds("napr baze", 10));
+        assertEquals(3, dao.searchTaskIds("cata", 10).length);
+        assertEquals(1, dao.searchTaskIds("baza", 1).length);
+        // FTS syntax in user input is treated as plain words
+        assertArrayEquals(new int[]{a}, dao.searchTaskIds("\"napraw\" ^(", 10));
+        assertEquals(0, dao.searchTaskIds("  -*  ", 10).length);
+
+        dao.updateTask(new Task(a, "Przegląd kodu", "", "CatA", TaskStatus.DONE, ""));
+        assertArrayEquals(new int[]{b}, dao.searchTaskIds("baz", 10));
+        assertArrayEquals(new int[]{a}, dao.searchTaskIds("przeglad", 10));
+
+        dao.deleteTask(b);
+        assertEquals(0, dao.searchTaskIds("baz", 10).length);
+
+        List<Task> found = dao.searchTasks("przegl", 10);
+        assertEquals(1, found.size());
+        assertEquals("Przegląd kodu", found.get(0).getName());
+    }
+
+    @Test
+    @DisplayName("Tasks by id keep the requested order and skip unknown ids")
+    public void tasksByIds() {
+        int[] ids = dao.createTasks(List.of(
+                new Task(0, "I1", "c", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "I2", "c", "CatA", TaskStatus.NOT_STARTED, ""),
+                new Task(0, "I3", "c", "CatA", TaskStatus.NOT_STARTED, "")));
+        List<Task> tasks = dao.getTasksByIds(new int[]{ids[2], 999_999, ids[0]});
+        assertEquals(List.of("I3", "I1"), tasks.stream().map(Task::getName).toList());
+        assertTrue(dao.getTasksByIds(new int[0]).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Due date range, overdue and next-due queries follow writes")
+    public void dueDateQueries() throws Exception {
+        LocalDate today = LocalDate.of(2026, 10, 14); // a Wednesday
+        int old = dao.createTask(new Task(0, "old", "", "CatA", TaskStatus.NOT_STARTED, "2026-10-01"));
+        int doneOld = dao.createTask(new Task(0, "doneOld", "", "CatA", TaskStatus.DONE, "2026-10-02"));
+        int monday = dao.createTask(new Task(0, "monday", "", "CatA", TaskStatus.IN_PROGRESS, "2026-10-12"));
+        int sunday = dao.createTask(new Task(0, "sunday", "", "CatA", TaskStatus.NOT_STARTED, "2026-10-18"));
+        int later = dao.createTask(new Task(0, "later", "", "CatA", TaskStatus.NOT_STARTED, "2026-11-01"));
+        dao.createTask(new Task(0, "undated", "", "CatA", TaskStatus.NOT_STARTED, ""));
+
+        assertEquals(List.of(monday, sunday), ids(dao.getTasksDueThisWeek(today)));
+        assertEquals(List.of(old, monday), ids(dao.getOverdueTasks(today, 10)));
+        assertEquals(List.of(sunday, later), ids(dao.getNextDueTasks(today, 10)));
+        assertEquals(List.of(sunday), ids(dao.getNextDueTasks(today, 1)));
+        assertEquals(List.of(old, doneOld), ids(dao.getTasksDueBetween(LocalDate.of(2026, 10, 1), LocalDate.of(2026, 10, 2), 10)));
+
+        // updates and deletes after the index is loaded
+        dao.updateTask(new Task(old, "old", "", "CatA", TaskStatus.DONE, "2026-10-01"));
+        dao.updateTask(new Task(later, "later", "", "CatA", TaskStatus.NOT_STARTED, "2026-10-16"));
+        dao.deleteTask(monday);
+        int created = dao.createTask(new Task(0, "created", "", "CatA", TaskStatus.NOT_STARTED, "2026-10-13"));
+        assertEquals(List.of(created), ids(dao.getOverdueTasks(today, 10)));
+        assertEquals(List.of(created, later, sunday), ids(dao.getTasksDueThisWeek(today)));
+
+        // the SQL dueDay index gives the same answer
+        assertEquals(List.of(created, later, sunday), ids(db.getTasksDueBetween(LocalDate.of(2026, 10, 12), LocalDate.of(2026, 10, 18), 10)));
+    }
+
+    @Test
+    @DisplayName("Per-category and per-status counts follow writes and match a recount")
+    public void statsCounters() throws Exception {
+        db.addCategory(new Category("CatB", "desc"));
+        int a = dao.createTask(new Task(0, "a", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        int b = dao.createTask(new Task(0, "b", "", "CatA", TaskStatus.IN_PROGRESS, ""));
+        dao.createTasks(List.of(
+                new Task(0, "c", "", "CatB", TaskStatus.IN_PROGRESS, ""),
+                new Task(0, "d", "", null, null, "")));
+        TaskStats stats = dao.getStats();
+        assertEquals(4, stats.total());
+        assertEquals(1, stats.count("CatA", TaskStatus.IN_PROGRESS));
+        assertEquals(2, stats.count(TaskStatus.IN_PROGRESS));
+        assertEquals(1, stats.count(null, TaskStatus.NOT_STARTED));
+
+        dao.updateTask(new Task(a, "a", "", "CatB", TaskStatus.DONE, ""));
+        dao.updateTask(new Task(999_999, "ghost", "", "CatA", TaskStatus.DONE, ""));
+        dao.deleteTask(b);
+        dao.deleteTask(b);
+        assertEquals(3, stats.total());
+        assertEquals(0, stats.count("CatA"));
+        assertEquals(1, stats.count("CatB", TaskStatus.DONE));
+        assertEquals(1, stats.count(TaskStatus.DONE));
+
+        // a fresh DAO rebuilds the same counts from the database
+        assertEquals(stats.snapshot(), new TaskDao(db).getStats().snapshot());
+    }
+
+    @Test
+    @DisplayName("Writes to unknown ids leave the cache, due index and counters alone")
+    public void unknownIds() throws Exception {
+        int id = dao.createTask(new Task(0, "a", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        // before the counters are loaded, and again once they are
+        dao.updateTask(new Task(999_999, "ghost", "", "CatA", TaskStatus.DONE, "2026-05-01"));
+        assertNull(dao.getTask(999_999));
+        assertTrue(dao.getTasksDueBetween(LocalDate.of(2026, 5, 1), LocalDate.of(2026, 5, 1), 10).isEmpty());
+        dao.deleteTask(999_999);
+        assertEquals(1, dao.getStats().total());
+        dao.updateTask(new Task(999_999, "ghost", "", "CatA", TaskStatus.DONE, ""));
+        dao.deleteTask(999_999);
+        assertEquals(1, dao.getStats().total());
+
+        // in write-behind mode a queued delete makes the id unknown
+        dao.enableWriteBehind(60_000, 100);
+        dao.deleteTask(id);
+        dao.deleteTask(id);
+        dao.updateTask(new Task(id, "back", "", "CatA", TaskStatus.DONE, ""));
+        assertNull(dao.getTask(id));
+        dao.close();
+        assertNull(db.getTask(id));
+        assertEquals(0, dao.getStats().total());
+        assertEquals(dao.getStats().snapshot(), new TaskDao(db).getStats().snapshot());
+    }
+
+    @Test
+    @DisplayName("Write-behind mode commits queued updates and deletes in groups")
+    public void writeBehind() throws Exception {
+        int a = dao.createTask(new Task(0, "a", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        int b = dao.createTask(new Task(0, "b", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        TaskStats stats = dao.getStats();
+        dao.enableWriteBehind(60_000, 100);
+        for (TaskStatus s : List.of(TaskStatus.IN_PROGRESS, TaskStatus.DONE, TaskStatus.IN_PROGRESS, TaskStatus.DONE)) {
+            dao.updateTask(new Task(a, "a", "", "CatA", s, ""));
+        }
+        dao.deleteTask(b);
+
+        // the DAO sees the queued state, the database does not yet
+        assertEquals(TaskStatus.DONE, dao.getTask(a).getStatus());
+        assertNull(dao.getTask(b));
+        assertEquals(1, stats.total());
+        assertEquals(TaskStatus.NOT_STARTED, db.getTask(a).getStatus());
+        assertNotNull(db.getTask(b));
+
+        dao.flush();
+        assertEquals(TaskStatus.DONE, db.getTask(a).getStatus());
+        assertNull(db.getTask(b));
+        assertEquals(1, dao.getWriteBehind().getGroups());
+        assertEquals(3, dao.getWriteBehind().getCoalesced());
+
+        // close commits what is left and switches back to synchronous writes
+        dao.updateTask(new Task(a, "renamed", "", "CatA", TaskStatus.DONE, ""));
+        dao.close();
+        assertNull(dao.getWriteBehind());
+        assertEquals("renamed", db.getTask(a).getName());
+        dao.updateTask(new Task(a, "sync", "", "CatA", TaskStatus.DONE, ""));
+        assertEquals("sync", db.getTask(a).getName());
+    }
+
+    @Test
+    @DisplayName("A write-behind change that cannot be committed is dropped without holding back the rest")
+    public void writeBehindDrop() throws Exception {
+        int a = dao.createTask(new Task(0, "a", "", "CatA", TaskStatus.NOT_STARTED, "2026-05-01"));
+        int b = dao.createTask(new Task(0, "b", "", "CatA", TaskStatus.NOT_STARTED, ""));
+        TaskStats stats = dao.getStats();
+        dao.enableWriteBehind(60_000, 100);
+        dao.updateTask(new Task(a, null, "", "CatA", TaskStatus.DONE, ""));
+        dao.updateTask(new Task(b, "b2", "", "CatA", TaskStatus.DONE, ""));
+        assertEquals(2, stats.count("CatA", TaskStatus.DONE));
+
+        assertThrows(RuntimeException.class, dao::flush);
+        assertEquals(1, dao.getWriteBehind().getDropped());
+        assertNotNull(dao.getWriteBehind().getFailure());
+        assertEquals("b2", db.getTask(b).getName());
+        // the DAO is back to the committed row
+        assertEquals("a", dao.getTask(a).getName());
+        assertEquals(List.of(a), ids(dao.getTasksDueBetween(LocalDate.of(2026, 5, 1), LocalDate.of(2026, 5, 1), 10)));
+        assertEquals(new TaskDao(db).getStats().snapshot(), stats.snapshot());
+
+        // later changes go through, and close does not throw
+        dao.updateTask(new Task(a, "a2", "", "CatA", TaskStatus.DONE, ""));
+        dao.close();
+        assertEquals("a2", db.getTask(a).getName());
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
 }
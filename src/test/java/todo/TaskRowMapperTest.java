@@ -0,0 +1,60 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TaskRowMapper tests")
+public class TaskRowMapperTest {
+    private Path tmpDbFile;
+    private Db db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDbFile = Files.createTempFile("mapper-", ".db");
+        db = new Db("jdbc:sqlite:" + tmpDbFile.toAbsolutePath());
+        db.addCategory(new Category("CatA", "desc"));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        db.close();
+        try { Files.deleteIfExists(tmpDbFile); } catch (Exception ignored) {}
+    }
+
+    @Test
+    @DisplayName("Maps every column and shares repeated category and due date strings")
+    public void mapsAndShares() throws Exception {
+        db.createTasks(List.of(
+                new Task(0, "a", "c1", "CatA", TaskStatus.DONE, "2026-01-01"),
+                new Task(0, "b", null, "CatA", TaskStatus.ABANDONED, "2026-01-01"),
+                new Task(0, "c", "c3", null, null, null)));
+        List<Task> tasks = new ArrayList<>();
+        try (ConnectionPool.Lease lease = db.getConnectionPool().read();
+             ResultSet res = lease.prepare("SELECT * FROM Tasks ORDER BY id").executeQuery()) {
+            TaskRowMapper mapper = new TaskRowMapper(res);
+            while (res.next()) tasks.add(mapper.map(res));
+        }
+        assertEquals(3, tasks.size());
+        Task a = tasks.get(0), b = tasks.get(1), c = tasks.get(2);
+        assertEquals("a", a.getName());
+        assertEquals("c1", a.getContent());
+        assertEquals(TaskStatus.DONE, a.getStatus());
+        assertEquals(TaskStatus.ABANDONED, b.getStatus());
+        assertNull(b.getContent());
+        assertSame(a.getCategoryName(), b.getCategoryName());
+        assertSame(a.getDue(), b.getDue());
+        assertNull(c.getCategoryName());
+        assertNull(c.getDue());
+        assertEquals(TaskStatus.NOT_STARTED, c.getStatus());
+    }
+}
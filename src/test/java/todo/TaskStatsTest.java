@@ -0,0 +1,99 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TaskStats tests")
+public class TaskStatsTest {
+
+    @Test
+    @DisplayName("Counters move with creates, updates and deletes")
+    public void incremental() {
+        TaskStats stats = new TaskStats();
+        Task a = new Task(1, "a", "", "CatA", TaskStatus.NOT_STARTED, "");
+        Task b = new Task(2, "b", "", "CatA", null, "");
+        // writes before the first load are ignored; the load will count them
+        stats.created(a);
+        assertEquals(0, stats.total());
+        stats.ensureLoaded(() -> {});
+        assertTrue(stats.isLoaded());
+        stats.created(a);
+        stats.created(b);
+        // a missing status counts as NOT_STARTED
+        assertEquals(2, stats.count("CatA", TaskStatus.NOT_STARTED));
+        assertEquals(2, stats.count(TaskStatus.NOT_STARTED));
+
+        Task aDone = new Task(1, "a", "", "CatB", TaskStatus.DONE, "");
+        stats.updated(a, aDone);
+        assertEquals(1, stats.count("CatA"));
+        assertEquals(1, stats.count("CatB", TaskStatus.DONE));
+        assertEquals(2, stats.total());
+
+        stats.deleted(b);
+        assertEquals(0, stats.count("CatA"));
+        assertEquals(Map.of("CatB", Map.of(TaskStatus.DONE, 1L)), stats.snapshot());
+    }
+
+    @Test
+    @DisplayName("Reload replaces all counts with the loaded groups")
+    public void reload() {
+        TaskStats stats = new TaskStats();
+        stats.created(new Task(1, "a", "", "Old", TaskStatus.DONE, ""));
+        stats.reload(() -> {
+            stats.add("CatA", TaskStatus.IN_PROGRESS, 5);
+            stats.add(null, TaskStatus.NOT_STARTED, 2);
+        });
+        assertEquals(7, stats.total());
+        assertEquals(0, stats.count("Old"));
+        assertEquals(5, stats.count("CatA", TaskStatus.IN_PROGRESS));
+        assertEquals(2, stats.count((String) null));
+        assertEquals(0, stats.count(TaskStatus.DONE));
+    }
+
+    @Test
+    @DisplayName("A load that a write ran across is thrown away and run again")
+    public void loadOverlappingWrite() {
+        TaskStats stats = new TaskStats();
+        stats.ensureLoaded(() -> {});
+        Task a = new Task(1, "a", "", "CatA", TaskStatus.NOT_STARTED, "");
+        AtomicInteger loads = new AtomicInteger();
+        stats.reload(() -> {
+            // the first run sees the row, and the write's own update lands while it runs
+            if (loads.incrementAndGet() == 1) {
+                stats.writeStarted();
+                stats.created(a);
+                stats.writeFinished();
+            }
+            stats.add("CatA", TaskStatus.NOT_STARTED, 1);
+        });
+        assertEquals(2, loads.get());
+        assertEquals(1, stats.total());
+    }
+
+    @Test
+    @DisplayName("A load waits for writes in flight and readers keep the old counts meanwhile")
+    public void loadWaitsForWrites() throws Exception {
+        TaskStats stats = new TaskStats();
+        stats.reload(() -> stats.add("CatA", TaskStatus.DONE, 3));
+        stats.writeStarted();
+        CountDownLatch loaded = new CountDownLatch(1);
+        Thread loader = Thread.ofVirtual().start(() -> {
+            stats.reload(() -> stats.add("CatA", TaskStatus.DONE, 4));
+            loaded.countDown();
+        });
+        assertFalse(loaded.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(3, stats.total());
+        stats.created(new Task(4, "d", "", "CatA", TaskStatus.DONE, ""));
+        stats.writeFinished();
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        loader.join();
+        assertEquals(4, stats.total());
+    }
+}
@@ -0,0 +1,105 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TaskStore tests")
+public class TaskStoreTest {
+
+    @Test
+    @DisplayName("Round-trips every field, including nulls, empty and non-ISO due values")
+    public void roundTrip() {
+        TaskStore store = TaskStore.of(Stream.of(
+                new Task(3, "c", "ążź", "CatA", TaskStatus.DONE, "2026-01-01"),
+                new Task(1, "a", null, null, null, null),
+                new Task(2, "", "", "CatB", TaskStatus.IN_PROGRESS, ""),
+                new Task(4, "d", "x", "CatA", TaskStatus.ABANDONED, "next week")));
+        assertEquals(4, store.size());
+        assertEquals(1, store.idAt(0));
+        assertEquals(4, store.idAt(3));
+
+        Task a = store.getById(1);
+        assertNull(a.getContent());
+        assertNull(a.getCategoryName());
+        assertNull(a.getStatus());
+        assertNull(a.getDue());
+
+        Task b = store.getById(2);
+        assertEquals("", b.getName());
+        assertEquals("", b.getContent());
+        assertEquals("", b.getDue());
+
+        Task c = store.getById(3);
+        assertEquals("ążź", c.getContent());
+        assertEquals(TaskStatus.DONE, c.getStatus());
+        assertEquals("2026-01-01", c.getDue());
+        assertEquals(LocalDate.of(2026, 1, 1).toEpochDay(), store.dueDayAt(store.rowOf(3)));
+
+        assertEquals("next week", store.getById(4).getDue());
+        assertEquals(Integer.MIN_VALUE, store.dueDayAt(store.rowOf(4)));
+        assertEquals(store.categoryCodeAt(store.rowOf(3)), store.categoryCodeOf("CatA"));
+        assertEquals(-1, store.categoryCodeOf("Missing"));
+        assertNull(store.getById(5));
+    }
+
+    @Test
+    @DisplayName("Put replaces by id and remove keeps rows ordered")
+    public void replaceAndRemove() {
+        TaskStore store = new TaskStore();
+        for (int id = 1; id <= 100; id++) {
+            store.put(new Task(id, "n" + id, "c" + id, "Cat", TaskStatus.NOT_STARTED, null));
+        }
+        store.put(new Task(50, "renamed", "c50", "Other", TaskStatus.DONE, "2026-02-03"));
+        assertEquals(100, store.size());
+        assertEquals("renamed", store.getById(50).getName());
+        assertEquals("Other", store.getById(50).getCategoryName());
+
+        assertTrue(store.remove(1));
+        assertFalse(store.remove(1));
+        assertEquals(99, store.size());
+        assertEquals(-1, store.rowOf(1));
+        assertEquals(2, store.idAt(0));
+
+        List<Task> view = store.asList();
+        assertEquals(99, view.size());
+        assertEquals("n100", view.get(98).getName());
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(99));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(store.get(0)));
+    }
+
+    @Test
+    @DisplayName("Text survives compaction after heavy churn")
+    public void compaction() {
+        TaskStore store = new TaskStore();
+        String big = "x".repeat(10_000);
+        for (int round = 0; round < 300; round++) {
+            store.put(new Task(1, big + round, big, "Cat", TaskStatus.NOT_STARTED, null));
+            store.put(new Task(2, "tmp", big, "Cat", TaskStatus.NOT_STARTED, null));
+            store.remove(2);
+        }
+        assertEquals(1, store.size());
+        assertEquals(big + 299, store.getById(1).getName());
+        assertEquals(big, store.getById(1).getContent());
+        assertTrue(store.memoryBytes() < 8L << 20);
+    }
+
+    @Test
+    @DisplayName("Replacing rows through put does not grow the text pool without bound")
+    public void compactionOnUpdate() {
+        TaskStore store = new TaskStore();
+        String big = "x".repeat(10_000);
+        for (int round = 0; round < 1000; round++) {
+            store.put(new Task(1 + round % 3, big + round, big, "Cat", TaskStatus.NOT_STARTED, null));
+        }
+        assertEquals(3, store.size());
+        assertEquals(big + 999, store.getById(1).getName());
+        assertEquals(big, store.getById(3).getContent());
+        assertTrue(store.memoryBytes() < 8L << 20);
+    }
+}
@@ -0,0 +1,116 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TaskTransfer tests")
+public class TaskTransferTest {
+    private Path tmpDir;
+    private Db source;
+    private Db target;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("transfer-");
+        source = new Db("jdbc:sqlite:" + tmpDir.resolve("source.db"));
+        target = new Db("jdbc:sqlite:" + tmpDir.resolve("target.db"));
+        source.addCategory(new Category("CatA", "desc"));
+        source.createTasks(List.of(
+                new Task(0, "plain", "text", "CatA", TaskStatus.IN_PROGRESS, "2026-01-02"),
+                new Task(0, "comma, \"quote\"", "line1\nline2\r\n\ttab \\ ążź 👍", null, TaskStatus.DONE, ""),
+                new Task(0, "", null, "CatA", null, null)));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        source.close();
+        target.close();
+        try (var files = Files.list(tmpDir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(tmpDir);
+    }
+
+    @Test
+    @DisplayName("CSV export and import round-trip every field")
+    public void csvRoundTrip() throws Exception {
+        roundTrip(tmpDir.resolve("tasks.csv"), TaskTransfer.Format.CSV);
+    }
+
+    @Test
+    @DisplayName("JSON Lines export and import round-trip every field")
+    public void jsonLinesRoundTrip() throws Exception {
+        roundTrip(tmpDir.resolve("tasks.jsonl"), TaskTransfer.Format.JSON_LINES);
+    }
+
+    private void roundTrip(Path file, TaskTransfer.Format format) throws Exception {
+        List<TaskTransfer.Progress> progress = new ArrayList<>();
+        assertEquals(3, new TaskTransfer(new TaskDao(source), 2, 1, progress::add).export(file, format));
+        assertEquals(4, progress.size());
+        assertTrue(progress.get(3).done());
+        assertEquals(Files.size(file), progress.get(3).bytes());
+
+        assertEquals(3, new TaskTransfer(new TaskDao(target), 2, 100, null).importFile(file, format));
+        List<Task> expected = sorted(source.getTasks());
+        List<Task> actual = sorted(target.getTasks());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Task e = expected.get(i), a = actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getContent(), a.getContent());
+            assertEquals(e.getCategoryName(), a.getCategoryName());
+            assertEquals(e.getStatus(), a.getStatus());
+            assertEquals(e.getDue(), a.getDue());
+        }
+    }
+
+    @Test
+    @DisplayName("Malformed input fails with its line number")
+    public void malformedInput() throws Exception {
+        Path csv = tmpDir.resolve("bad.csv");
+        Files.writeString(csv, "id,name,content,categoryName,status,dueDate\n1,a,b,c,done,\n2,\"open", StandardCharsets.UTF_8);
+        TaskTransfer transfer = new TaskTransfer(new TaskDao(target), null);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> transfer.importFile(csv, TaskTransfer.Format.CSV));
+        assertTrue(ex.getMessage().startsWith("Line 3"), ex.getMessage());
+
+        Path jsonl = tmpDir.resolve("bad.jsonl");
+        Files.writeString(jsonl, "{\"name\":\"ok\"}\n\n{\"name\" \"x\"}\n", StandardCharsets.UTF_8);
+        ex = assertThrows(IllegalArgumentException.class, () -> transfer.importFile(jsonl, TaskTransfer.Format.JSON_LINES));
+        assertTrue(ex.getMessage().startsWith("Line 3"), ex.getMessage());
+
+        Files.writeString(jsonl, "{\"name\":\"a\\u00zz\"}\n", StandardCharsets.UTF_8);
+        ex = assertThrows(IllegalArgumentException.class, () -> transfer.importFile(jsonl, TaskTransfer.Format.JSON_LINES));
+        assertEquals("Line 1: bad escape", ex.getMessage());
+
+        // a truncated number must not swallow the next record
+        Files.writeString(jsonl, "{\"id\":1\n{\"name\":\"b\"}\n", StandardCharsets.UTF_8);
+        ex = assertThrows(IllegalArgumentException.class, () -> transfer.importFile(jsonl, TaskTransfer.Format.JSON_LINES));
+        assertTrue(ex.getMessage().startsWith("Line 1"), ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Blank CSV lines, a trailing one included, are skipped")
+    public void blankCsvLines() throws Exception {
+        Path csv = tmpDir.resolve("blank.csv");
+        Files.writeString(csv, "id,name,content,categoryName,status,dueDate\n1,a,b,,,\n\r\n2,c,d,,,\n\n", StandardCharsets.UTF_8);
+        assertEquals(2, new TaskTransfer(new TaskDao(target), null).importFile(csv, TaskTransfer.Format.CSV));
+        assertEquals(List.of("a", "c"), target.getTasks().stream().map(Task::getName).toList());
+    }
+
+    private static List<Task> sorted(List<Task> tasks) {
+        List<Task> copy = new ArrayList<>(tasks);
+        copy.sort(Comparator.comparing(Task::getName));
+        return copy;
+    }
+}
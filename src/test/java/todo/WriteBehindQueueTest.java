@@ -0,0 +1,149 @@
+package todo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("WriteBehindQueue tests")
+public class WriteBehindQueueTest {
+
+    // records every group the queue commits
+    private static class RecordingSink implements WriteBehindQueue.Sink {
+        final List<List<Task>> updates = new ArrayList<>();
+        final List<int[]> deletes = new ArrayList<>();
+
+        @Override
+        public synchronized void write(List<Task> u, int[] d) {
+            updates.add(u);
+            deletes.add(d);
+        }
+
+        synchronized int groups() {
+            return updates.size();
+        }
+    }
+
+    private static Task task(int id, String name) {
+        return new Task(id, name, "", null, TaskStatus.NOT_STARTED, "");
+    }
+
+    @Test
+    @DisplayName("Repeated changes to one id are coalesced into one group")
+    public void coalesces() {
+        RecordingSink sink = new RecordingSink();
+        try (WriteBehindQueue queue = new WriteBehindQueue(sink, 10_000, 100)) {
+            queue.update(task(1, "a"));
+            queue.update(task(1, "b"));
+            queue.update(task(2, "x"));
+            queue.delete(3);
+            queue.update(task(3, "after delete"));
+            queue.update(task(4, "before delete"));
+            queue.delete(4);
+            assertEquals(4, queue.pendingCount());
+            assertEquals("b", queue.lookup(1, id -> null).getName());
+            assertNull(queue.lookup(3, id -> task(id, "db")));
+            assertEquals("db", queue.lookup(5, id -> task(id, "db")).getName());
+
+            queue.flush();
+            assertEquals(1, sink.groups());
+            assertEquals(List.of("b", "x"), sink.updates.get(0).stream().map(Task::getName).toList());
+            assertArrayEquals(new int[]{3, 4}, sink.deletes.get(0));
+            assertEquals(7, queue.getEnqueued());
+            assertEquals(3, queue.getCoalesced());
+            assertEquals(4, queue.getWritten());
+            assertEquals(0, queue.pendingCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Writer commits on its own after the flush latency, and on close")
+    public void flushLatencyAndClose() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        WriteBehindQueue queue = new WriteBehindQueue(sink, 20, 100);
+        queue.update(task(1, "a"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sink.groups() == 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(1, sink.groups());
+
+        WriteBehindQueue slow = new WriteBehindQueue(sink, 60_000, 100);
+        slow.update(task(2, "b"));
+        slow.close();
+        assertEquals(2, sink.groups());
+        assertThrows(IllegalStateException.class, () -> slow.update(task(3, "c")));
+        queue.close();
+    }
+
+    @Test
+    @DisplayName("A full queue makes the writer commit instead of growing")
+    public void boundedCapacity() {
+        RecordingSink sink = new RecordingSink();
+        try (WriteBehindQueue queue = new WriteBehindQueue(sink, 60_000, 2)) {
+            for (int i = 1; i <= 7; i++) {
+                queue.update(task(i, "t" + i));
+                assertTrue(queue.pendingCount() <= 2);
+            }
+            queue.flush();
+            assertEquals(7, queue.getWritten());
+            assertTrue(sink.groups() >= 3);
+        }
+    }
+
+    @Test
+    @DisplayName("A failed group is committed change by change and only the failing change is dropped")
+    public void failedGroupFallsBackToRows() {
+        List<Task> written = new ArrayList<>();
+        List<Integer> dropped = new ArrayList<>();
+        WriteBehindQueue.Sink sink = new WriteBehindQueue.Sink() {
+            @Override
+            public synchronized void write(List<Task> updates, int[] deletes) throws SQLException {
+                for (Task t : updates) {
+                    if (t.getName() == null) throw new SQLException("NOT NULL constraint failed: Tasks.name");
+                }
+                written.addAll(updates);
+            }
+
+            @Override
+            public synchronized void dropped(int id, Task update, boolean superseded, Exception error) {
+                dropped.add(id);
+            }
+        };
+        try (WriteBehindQueue queue = new WriteBehindQueue(sink, 60_000, 100)) {
+            queue.update(task(1, "a"));
+            queue.update(task(2, null));
+            queue.update(task(3, "c"));
+            RuntimeException ex = assertThrows(RuntimeException.class, queue::flush);
+            assertInstanceOf(SQLException.class, ex.getCause());
+            assertEquals(List.of(2), dropped);
+            assertEquals(1, queue.getDropped());
+            assertEquals(2, queue.getWritten());
+            assertEquals(0, queue.pendingCount());
+            assertEquals("db", queue.lookup(2, id -> task(id, "db")).getName());
+
+            // the dropped change is not retried, so later commits are not held back
+            queue.update(task(4, "d"));
+            queue.flush();
+            synchronized (sink) {
+                assertEquals(List.of("a", "c", "d"), written.stream().map(Task::getName).toList());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Close commits what it can and drops the rest")
+    public void closeDropsFailingChanges() {
+        WriteBehindQueue queue = new WriteBehindQueue((u, d) -> {
+            throw new SQLException("read-only");
+        }, 60_000, 100);
+        queue.update(task(1, "a"));
+        queue.delete(2);
+        queue.close();
+        assertEquals(2, queue.getDropped());
+        assertInstanceOf(SQLException.class, queue.getFailure());
+    }
+}